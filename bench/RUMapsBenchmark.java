@@ -0,0 +1,187 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import rumaps.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the RUMaps algorithms, run on the campus networks and on generated grids.
+ *
+ * The network parameter is either a .in file or a network generated by NetworkGenerator into a temporary file on
+ * setup: "grid:k" and "hierarchical:k" for k x k grids, "geometric:n" for n random intersections.
+ * Queries are drawn from a fixed seed, so runs are comparable across engine changes; see bench/README.md.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class RUMapsBenchmark {
+    private static final int SEED = 2024;
+    private static final int QUERIES = 256;
+
+    @Param({"Busch.in", "AllCampuses.in", "grid:100", "hierarchical:100"})
+    public String network;
+
+    private String file;
+    private RUMaps rumaps;
+    private Intersection[] intersections;
+    private Block[] blocks;
+    private Intersection[][] queries;
+    private ArrayList<ArrayList<Intersection>> paths;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        file = resolve(network);
+        StdRandom.setSeed(SEED);
+        rumaps = new RUMaps(file);
+        intersections = rumaps.getRutgers().getIntersections();
+
+        ArrayList<Block> all = new ArrayList<>();
+        for (Block head : rumaps.getRutgers().getAdjacencyList()) {
+            for (Block ptr = head; ptr != null; ptr = ptr.getNext()) all.add(ptr);
+        }
+        blocks = all.toArray(new Block[0]);
+
+        Random random = new Random(SEED);
+        queries = new Intersection[QUERIES][];
+        paths = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = new Intersection[] {intersections[random.nextInt(intersections.length)], intersections[random.nextInt(intersections.length)]};
+            paths.add(rumaps.fastestPath(queries[i][0], queries[i][1], (RouteConstraints) null));
+        }
+    }
+
+    /**
+     * An emptied network and freshly parsed blocks for every call of initializeIntersections. It is a separate state
+     * so the per-invocation setup only runs for that benchmark.
+     */
+    @State(Scope.Thread)
+    public static class EmptyNetwork {
+        RUMaps rumaps;
+        ArrayList<Block> blocks;
+
+        @Setup(Level.Trial)
+        public void load(RUMapsBenchmark benchmark) {
+            StdRandom.setSeed(SEED);
+            rumaps = new RUMaps(benchmark.file);
+        }
+
+        /**
+         * Empties the network of the map through its public setters and parses the blocks again.
+         */
+        @Setup(Level.Invocation)
+        public void parse(RUMapsBenchmark benchmark) {
+            StdIn.setFile(benchmark.file);
+            int numIntersections = StdIn.readInt();
+            int numStreets = StdIn.readInt();
+            StdIn.readLine();
+            Network network = rumaps.getRutgers();
+            network.setIntersections(new Intersection[numIntersections]);
+            network.setAdj(new Block[numIntersections]);
+            network.setNextIndex(0);
+            blocks = rumaps.initializeBlocks(numStreets);
+        }
+    }
+
+    private Intersection[] nextQuery() {
+        next = (next + 1) & (QUERIES - 1);
+        return queries[next];
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public RUMaps loadNetwork() {
+        StdRandom.setSeed(SEED);
+        return new RUMaps(file);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public Network initializeIntersections(EmptyNetwork empty) {
+        empty.rumaps.initializeIntersections(empty.blocks);
+        return empty.rumaps.getRutgers();
+    }
+
+    @Benchmark
+    public double blockLength() {
+        double total = 0.0;
+        for (Block block : blocks) total += rumaps.blockLength(block);
+        return total;
+    }
+
+    @Benchmark
+    public ArrayList<Intersection> reachableIntersections() {
+        return rumaps.reachableIntersections(nextQuery()[0]);
+    }
+
+    @Benchmark
+    public ArrayList<Intersection> minimizeIntersections() {
+        Intersection[] query = nextQuery();
+        return rumaps.minimizeIntersections(query[0], query[1]);
+    }
+
+    @Benchmark
+    public ArrayList<Intersection> minimizeIntersectionsBidirectional() {
+        Intersection[] query = nextQuery();
+        return rumaps.minimizeIntersections(query[0], query[1], null, true);
+    }
+
+    @Benchmark
+    public ArrayList<Intersection> fastestPath() {
+        Intersection[] query = nextQuery();
+        return rumaps.fastestPath(query[0], query[1]);
+    }
+
+    @Benchmark
+    public ArrayList<Intersection> fastestPathEngine() {
+        Intersection[] query = nextQuery();
+        return rumaps.fastestPath(query[0], query[1], (RouteConstraints) null);
+    }
+
+    @Benchmark
+    public void pathInformation(Blackhole blackhole) {
+        next = (next + 1) & (QUERIES - 1);
+        if (paths.get(next).size() > 1) blackhole.consume(rumaps.pathInformation(paths.get(next)));
+    }
+
+    /**
+     * @return the path of the network file for a network parameter, generating it first if needed
+     */
+    static String resolve(String network) throws IOException {
+        int colon = network.indexOf(':');
+        if (colon == -1) return network;
+        String type = network.substring(0, colon);
+        int size = Integer.parseInt(network.substring(colon + 1));
+        File file = File.createTempFile("rumaps-" + type + "-" + size + "-", ".in");
+        file.deleteOnExit();
+
+        StdRandom.setSeed(SEED);
+        switch (type) {
+            case "grid":         NetworkGenerator.grid(size, size, 0, file); break;
+            case "geometric":    NetworkGenerator.randomGeometric(size, 3.5, file); break;
+            case "hierarchical": NetworkGenerator.hierarchical(size, size, file); break;
+            default: throw new IllegalArgumentException("Unknown network type: " + type);
+        }
+        return file.getPath();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(RUMapsBenchmark.class.getSimpleName() + (args.length > 0 ? "\\." + args[0] : ""))
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,128 @@
+package rumaps;
+
+import jdk.jfr.*;
+
+/**
+ * The JfrRoutingEvents class defines the flight recorder events that RoutingEvents emits. It is the only class of
+ * RUMaps that uses jdk.jfr, so it lives in its own source directory and needs Java 11 or later to compile:
+ *
+ *     javac -cp bin -d bin jfr/rumaps/*.java
+ *
+ * RoutingEvents loads it by name; when it is not on the class path, RUMaps runs without events.
+ */
+final class JfrRoutingEvents implements RoutingEvents.Recorder {
+    private static final EventType LOAD = EventType.getEventType(NetworkLoad.class);
+    private static final EventType QUERY = EventType.getEventType(Query.class);
+    private static final EventType PAINT = EventType.getEventType(Paint.class);
+
+    @Name("rumaps.NetworkLoad")
+    @Label("Network Load Phase")
+    @Category("RUMaps")
+    @Description("A phase of loading a network file: parse, dedup or weighting")
+    static final class NetworkLoad extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Items")
+        @Description("Blocks parsed, intersections deduplicated or blocks weighted")
+        int items;
+    }
+
+    @Name("rumaps.Query")
+    @Label("Routing Query")
+    @Category("RUMaps")
+    @Description("One routing query, recorded by RoutingMetrics.begin() and Query.end()")
+    static final class Query extends Event {
+        @Label("Algorithm")
+        String algorithm;
+
+        @Label("Start")
+        @Description("Vertex index of the start intersection, -1 if unknown")
+        int start;
+
+        @Label("End")
+        @Description("Vertex index of the end intersection, -1 if the query has none")
+        int end;
+
+        @Label("Settled")
+        long settled;
+
+        @Label("Relaxed")
+        long relaxed;
+
+        @Label("Pushes")
+        long pushes;
+    }
+
+    @Name("rumaps.Paint")
+    @Label("Map Paint")
+    @Category("RUMaps")
+    @Description("One MapPanel.paintComponent pass")
+    static final class Paint extends Event {
+        @Label("Blocks Drawn")
+        int blocksDrawn;
+
+        @Label("Intersections Drawn")
+        int intersectionsDrawn;
+    }
+
+    @Override
+    public Object beginLoad(String phase) {
+        if (!LOAD.isEnabled()) return null;
+        NetworkLoad event = new NetworkLoad();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endLoad(Object event, int items) {
+        NetworkLoad load = (NetworkLoad) event;
+        load.items = items;
+        load.commit();
+    }
+
+    @Override
+    public boolean isQueryEnabled() {
+        return QUERY.isEnabled();
+    }
+
+    @Override
+    public Object beginQuery(String algorithm, int start, int end) {
+        if (!QUERY.isEnabled()) return null;
+        Query event = new Query();
+        event.algorithm = algorithm;
+        event.start = start;
+        event.end = end;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endQuery(Object event, long settled, long relaxed, long pushes) {
+        Query query = (Query) event;
+        query.end();
+        if (query.shouldCommit()) {
+            query.settled = settled;
+            query.relaxed = relaxed;
+            query.pushes = pushes;
+            query.commit();
+        }
+    }
+
+    @Override
+    public Object beginPaint() {
+        if (!PAINT.isEnabled()) return null;
+        Paint event = new Paint();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endPaint(Object event, int blocksDrawn, int intersectionsDrawn) {
+        Paint paint = (Paint) event;
+        paint.blocksDrawn = blocksDrawn;
+        paint.intersectionsDrawn = intersectionsDrawn;
+        paint.commit();
+    }
+}
@@ -0,0 +1,250 @@
+package rumaps;
+
+import java.util.*;
+
+/**
+ * The AlternativeRoutes class generates second and third (and further) choices for a route, using the same
+ * traffic cost model as RUMaps.fastestPath. It offers two generators:
+ *
+ * - kShortestPaths - Yen's algorithm for the k loopless paths of least traffic. Each spur search is an A* search
+ *   guided by exact costs to the target (one reverse search per query), and spur nodes whose root cost plus lower
+ *   bound cannot beat the candidates already found are skipped without searching.
+ * - penaltyAlternatives - the penalty method: after each path is found the traffic of its blocks is inflated and the
+ *   search is repeated, which pushes the next path onto different streets. Paths that are too slow compared to the
+ *   fastest path, or that share too much of their traffic with accepted paths, are rejected. This is much faster
+ *   than Yen's algorithm and tends to give more useful (more different) routes.
+ *
+ * One forward and one reverse engine are reused for every search of a query, so generating three alternatives
+ * costs a small multiple of a single fastest path query. The engines and the penalty and blocking arrays are kept
+ * for the next query and reset over the edges a query touched, so an instance can answer any number of queries on
+ * its graph. An AlternativeRoutes is not thread-safe; give each thread its own.
+ */
+public class AlternativeRoutes {
+    public static final double DEFAULT_PENALTY_FACTOR = 1.5;
+    public static final double DEFAULT_MAX_STRETCH = 1.5;
+    public static final double DEFAULT_MAX_OVERLAP = 0.7;
+
+    private final RoutingGraph graph;
+    private final FastestPathEngine engine;
+    private final FastestPathEngine reverseEngine;
+
+    private final long[] blockedEdges;
+    private final long[] blockedVertices;
+    // The penalty factor of each edge and the edges of accepted routes; all 1.0 and clear between queries
+    private final double[] penalty;
+    private final long[] used;
+
+    private static class Candidate implements Comparable<Candidate> {
+        final int[] edges;
+        final double cost;
+
+        Candidate(int[] edges, double cost) {
+            this.edges = edges;
+            this.cost = cost;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return Double.compare(cost, other.cost);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Candidate && Arrays.equals(edges, ((Candidate) obj).edges);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(edges);
+        }
+    }
+
+    public AlternativeRoutes(RoutingGraph graph) {
+        this.graph = graph;
+        this.engine = new FastestPathEngine(graph);
+        this.reverseEngine = new FastestPathEngine(graph);
+        this.blockedEdges = Bits.create(graph.edgeCount());
+        this.blockedVertices = Bits.create(graph.size());
+        this.penalty = new double[graph.edgeCount()];
+        Arrays.fill(penalty, 1.0);
+        this.used = Bits.create(graph.edgeCount());
+    }
+
+    public RoutingGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Finds up to k loopless paths of least traffic from start to end, using Yen's algorithm.
+     *
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @param k the number of paths wanted
+     * @return the paths in increasing order of traffic (the first is the fastest path), or an empty list if no path exists
+     */
+    public ArrayList<ArrayList<Intersection>> kShortestPaths(Intersection start, Intersection end, int k) {
+        int s = graph.indexOf(start);
+        int t = graph.indexOf(end);
+        ArrayList<ArrayList<Intersection>> result = new ArrayList<>();
+        if (s == -1 || t == -1 || k < 1) return result;
+
+        double[] lowerBound = reverseEngine.distancesTo(t);
+        if (lowerBound[s] == Double.POSITIVE_INFINITY) return result;
+
+        engine.search(s, t, null, null, lowerBound, null);
+        ArrayList<Candidate> accepted = new ArrayList<>();
+        accepted.add(new Candidate(engine.edgePath(t), engine.distance(t)));
+
+        ArrayList<Candidate> candidates = new ArrayList<>();  // sorted by cost
+        HashSet<Candidate> seen = new HashSet<>(accepted);
+
+        while (accepted.size() < k) {
+            int[] previous = accepted.get(accepted.size() - 1).edges;
+            int needed = k - accepted.size();
+            double rootCost = 0.0;
+            int spur = s;
+
+            for (int i = 0; i < previous.length; i++) {
+                double bound = candidates.size() >= needed ? candidates.get(needed - 1).cost : Double.POSITIVE_INFINITY;
+                if (rootCost + lowerBound[spur] < bound) {
+                    // Block the next edge of every accepted path sharing this root, and the root itself
+                    for (Candidate path : accepted) {
+                        if (path.edges.length > i && sameRoot(path.edges, previous, i)) {
+                            Bits.set(blockedEdges, path.edges[i]);
+                        }
+                    }
+                    Bits.set(blockedVertices, s);
+                    for (int j = 0; j < i; j++) {
+                        Bits.set(blockedVertices, graph.target(previous[j]));
+                    }
+                    Bits.clear(blockedVertices, spur);
+
+                    if (engine.search(spur, t, blockedEdges, blockedVertices, lowerBound, null)) {
+                        int[] spurEdges = engine.edgePath(t);
+                        int[] edges = Arrays.copyOf(previous, i + spurEdges.length);
+                        System.arraycopy(spurEdges, 0, edges, i, spurEdges.length);
+                        Candidate candidate = new Candidate(edges, rootCost + engine.distance(t));
+                        if (seen.add(candidate)) {
+                            int at = Collections.binarySearch(candidates, candidate);
+                            candidates.add(at < 0 ? -at - 1 : at, candidate);
+                        }
+                    }
+                    Arrays.fill(blockedEdges, 0L);
+                    Arrays.fill(blockedVertices, 0L);
+                }
+                rootCost += graph.traffic(previous[i]);
+                spur = graph.target(previous[i]);
+            }
+
+            if (candidates.isEmpty()) break;
+            accepted.add(candidates.remove(0));
+        }
+
+        for (Candidate path : accepted) {
+            result.add(FastestPathEngine.toIntersections(graph, s, path.edges));
+        }
+        return result;
+    }
+
+    private static boolean sameRoot(int[] a, int[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finds up to k alternative routes from start to end with the penalty method, using the default parameters.
+     *
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @param k the number of routes wanted, including the fastest path
+     * @return the routes (the first is the fastest path), or an empty list if no path exists
+     */
+    public ArrayList<ArrayList<Intersection>> penaltyAlternatives(Intersection start, Intersection end, int k) {
+        ArrayList<ArrayList<Intersection>> result = new ArrayList<>();
+        for (Route route : penaltyAlternatives(start, end, k, DEFAULT_PENALTY_FACTOR, DEFAULT_MAX_STRETCH, DEFAULT_MAX_OVERLAP)) {
+            result.add(route.getPath());
+        }
+        return result;
+    }
+
+    /**
+     * Finds up to k alternative routes from start to end with the penalty method.
+     *
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @param k the number of routes wanted, including the fastest path
+     * @param penaltyFactor the factor applied to the traffic of every block of a route once it has been found
+     * @param maxStretch the largest accepted ratio of a route's traffic to the fastest path's traffic
+     * @param maxOverlap the largest accepted fraction of a route's traffic on blocks of already accepted routes
+     * @return the routes with the blocks they take (the first is the fastest path), or an empty list if no path exists
+     */
+    public ArrayList<Route> penaltyAlternatives(Intersection start, Intersection end, int k,
+                                                double penaltyFactor, double maxStretch, double maxOverlap) {
+        int s = graph.indexOf(start);
+        int t = graph.indexOf(end);
+        ArrayList<Route> result = new ArrayList<>();
+        if (s == -1 || t == -1 || k < 1) return result;
+
+        // Penalties only ever increase costs, so the unpenalized costs stay valid lower bounds
+        double[] lowerBound = reverseEngine.distancesTo(t);
+        if (lowerBound[s] == Double.POSITIVE_INFINITY) return result;
+
+        ArrayList<Candidate> accepted = new ArrayList<>();
+        // Every path found, accepted or not; its edges are the only ones penalized
+        HashSet<Candidate> seen = new HashSet<>();
+        double fastest = lowerBound[s];
+
+        try {
+            for (int attempt = 0; attempt < 4 * k && accepted.size() < k; attempt++) {
+                if (!engine.search(s, t, null, null, lowerBound, penalty)) break;
+                int[] edges = engine.edgePath(t);
+                double cost = 0.0;
+                for (int e : edges) {
+                    cost += graph.traffic(e);
+                }
+                if (cost > maxStretch * fastest) break;
+
+                Candidate candidate = new Candidate(edges, cost);
+                if (seen.add(candidate) && overlap(candidate, accepted) <= maxOverlap) {
+                    accepted.add(candidate);
+                    for (int e : edges) {
+                        Bits.set(used, e);
+                        Bits.set(used, graph.twin(e));
+                    }
+                }
+                for (int e : edges) {
+                    penalty[e] *= penaltyFactor;
+                    penalty[graph.twin(e)] *= penaltyFactor;
+                }
+            }
+        } finally {
+            for (Candidate path : seen) {
+                for (int e : path.edges) {
+                    penalty[e] = 1.0;
+                    penalty[graph.twin(e)] = 1.0;
+                    Bits.clear(used, e);
+                    Bits.clear(used, graph.twin(e));
+                }
+            }
+        }
+
+        for (Candidate path : accepted) {
+            result.add(new Route(graph, s, path.edges));
+        }
+        return result;
+    }
+
+    /**
+     * @return the fraction of the candidate's traffic on blocks used by accepted routes
+     */
+    private double overlap(Candidate candidate, ArrayList<Candidate> accepted) {
+        if (accepted.isEmpty() || candidate.cost == 0.0) return 0.0;
+        double shared = 0.0;
+        for (int e : candidate.edges) {
+            if (Bits.get(used, e)) shared += graph.traffic(e);
+        }
+        return shared / candidate.cost;
+    }
+}
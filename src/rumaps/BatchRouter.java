@@ -0,0 +1,274 @@
+package rumaps;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The BatchRouter class answers large numbers of fastest path queries for offline jobs.
+ *
+ * Queries are read from a stream in batches of batchSize. Within a batch:
+ * - queries are grouped by starting intersection, and each group with more than one query shares a single
+ *   one-to-many search from its start (a group of one runs a point-to-point search that stops at its end)
+ * - groups are spread over a fork-join pool, each worker thread reusing its own FastestPathEngine
+ *
+ * Results are handed to the caller through a bounded queue, so a slow consumer blocks the workers instead of
+ * letting results pile up (backpressure). In ordered mode results come out in query order, one batch at a time;
+ * in unordered mode each group's results come out as soon as it is done. Workers wait for room in the queue through
+ * ForkJoinPool.managedBlock, so the pool (by default the common pool, which the rest of the JVM shares) can start
+ * a spare thread instead of losing its workers to a slow consumer.
+ */
+public class BatchRouter {
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+
+    private static final Result END = new Result(null, null, 0.0);
+
+    private final RoutingGraph graph;
+    private final long[] blockedEdges;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<FastestPathEngine> engines;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+    public BatchRouter(RoutingGraph graph) {
+        this(graph, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param graph the graph to route on
+     * @param constraints the blocks every query has to avoid, or null for none
+     * @param pool the pool the searches run on
+     */
+    public BatchRouter(RoutingGraph graph, RouteConstraints constraints, ForkJoinPool pool) {
+        this.graph = graph;
+        this.blockedEdges = constraints == null ? null : constraints.blockedEdges(graph);
+        this.pool = pool;
+        this.engines = ThreadLocal.withInitial(() -> new FastestPathEngine(graph));
+    }
+
+    public BatchRouter setBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public BatchRouter setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * A fastest path query. The id is chosen by the caller and copied to the result.
+     */
+    public static final class Query {
+        private final long id;
+        private final Intersection start;
+        private final Intersection end;
+
+        public Query(long id, Intersection start, Intersection end) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public Intersection getStart() {
+            return start;
+        }
+
+        public Intersection getEnd() {
+            return end;
+        }
+    }
+
+    /**
+     * The answer to a query: the fastest path and its total traffic.
+     * The path is empty if the end cannot be reached or an endpoint is not in the network.
+     */
+    public static final class Result {
+        private final Query query;
+        private final ArrayList<Intersection> path;
+        private final double traffic;
+
+        Result(Query query, ArrayList<Intersection> path, double traffic) {
+            this.query = query;
+            this.path = path;
+            this.traffic = traffic;
+        }
+
+        public Query getQuery() {
+            return query;
+        }
+
+        public ArrayList<Intersection> getPath() {
+            return path;
+        }
+
+        public double getTraffic() {
+            return traffic;
+        }
+
+        public boolean isReachable() {
+            return !path.isEmpty();
+        }
+    }
+
+    /**
+     * Answers every query of a stream. The queries are consumed on a background thread as the results are read.
+     * Close the returned stream to stop early.
+     *
+     * @param queries the queries
+     * @param ordered true to get results in query order
+     * @return the results, lazily
+     */
+    public Stream<Result> route(Stream<Query> queries, boolean ordered) {
+        BlockingQueue<Result> results = new ArrayBlockingQueue<>(queueCapacity);
+        Throwable[] failure = new Throwable[1];
+        AtomicBoolean closed = new AtomicBoolean();
+
+        Thread producer = new Thread(() -> {
+            try {
+                Iterator<Query> it = queries.iterator();
+                Query[] batch = new Query[batchSize];
+                while (it.hasNext()) {
+                    int count = 0;
+                    while (count < batchSize && it.hasNext()) batch[count++] = it.next();
+                    runBatch(Arrays.copyOf(batch, count), ordered, results, closed);
+                }
+            } catch (InterruptedException | CancellationException e) {
+                return;
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+            try {
+                put(results, END, closed);
+            } catch (CancellationException e) {
+                // the consumer has closed the stream
+            }
+        }, "BatchRouter");
+        producer.setDaemon(true);
+        producer.start();
+
+        Iterator<Result> iterator = new Iterator<Result>() {
+            private Result next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = results.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new CancellationException("Interrupted while waiting for batch results");
+                    }
+                }
+                if (next == END) {
+                    if (failure[0] != null) throw new CompletionException(failure[0]);
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public Result next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Result result = next;
+                next = null;
+                return result;
+            }
+        };
+        Spliterator<Result> spliterator = Spliterators.spliteratorUnknownSize(iterator, ordered ? Spliterator.ORDERED | Spliterator.NONNULL : Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            closed.set(true);
+            producer.interrupt();
+            queries.close();
+        });
+    }
+
+    /**
+     * Answers a list of queries.
+     * @return the results in query order
+     */
+    public ArrayList<Result> routeAll(List<Query> queries) {
+        ArrayList<Result> all = new ArrayList<>(queries.size());
+        try (Stream<Result> results = route(queries.stream(), true)) {
+            results.forEach(all::add);
+        }
+        return all;
+    }
+
+    private void runBatch(Query[] batch, boolean ordered, BlockingQueue<Result> results, AtomicBoolean closed) throws InterruptedException {
+        // group the queries by source vertex; unknown starts get their own group and an empty result
+        LinkedHashMap<Integer, ArrayList<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < batch.length; i++) {
+            int s = graph.indexOf(batch[i].getStart());
+            groups.computeIfAbsent(s == -1 ? -1 - i : s, k -> new ArrayList<>()).add(i);
+        }
+
+        Result[] answered = new Result[batch.length];
+        List<Map.Entry<Integer, ArrayList<Integer>>> work = new ArrayList<>(groups.entrySet());
+        try {
+            pool.submit(() -> work.parallelStream().forEach(group -> {
+                FastestPathEngine engine = engines.get();
+                ArrayList<Integer> members = group.getValue();
+                int source = group.getKey();
+                if (source >= 0) {
+                    int target = members.size() == 1 ? graph.indexOf(batch[members.get(0)].getEnd()) : -1;
+                    engine.search(source, target, blockedEdges, null, null, null);
+                }
+                for (int i : members) {
+                    answered[i] = answer(engine, source, batch[i]);
+                    if (!ordered) put(results, answered[i], closed);
+                }
+            })).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) throw (CancellationException) e.getCause();
+            throw new CompletionException(e.getCause());
+        }
+        if (ordered) {
+            for (Result result : answered) put(results, result, closed);
+        }
+    }
+
+    private Result answer(FastestPathEngine engine, int source, Query query) {
+        int t = graph.indexOf(query.getEnd());
+        if (source < 0 || t == -1 || engine.distance(t) == Double.POSITIVE_INFINITY) {
+            return new Result(query, new ArrayList<>(), 0.0);
+        }
+        return new Result(query, FastestPathEngine.toIntersections(graph, source, engine.edgePath(t)), engine.distance(t));
+    }
+
+    /**
+     * Waits for room in the result queue, giving up once the consumer has closed the stream.
+     * On a fork-join worker the pool is told that the worker is blocked while it waits.
+     */
+    private static void put(BlockingQueue<Result> results, Result result, AtomicBoolean closed) {
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                private boolean done;
+
+                @Override
+                public boolean block() throws InterruptedException {
+                    done = results.offer(result, 50, TimeUnit.MILLISECONDS);
+                    if (!done && closed.get()) throw new CancellationException("Batch routing was cancelled");
+                    return done;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return done || (done = results.offer(result));
+                }
+            });
+        } catch (InterruptedException e) {
+            throw new CancellationException("Batch routing was cancelled");
+        }
+    }
+}
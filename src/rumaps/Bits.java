@@ -0,0 +1,37 @@
+package rumaps;
+
+/**
+ * Static helpers for bitsets stored in long arrays, used by the routing engines for
+ * visited sets and per-query masks over vertex and edge indices.
+ */
+public final class Bits {
+
+    private Bits() { }
+
+    /**
+     * @param n the number of bits
+     * @return a zeroed bitset that can hold n bits
+     */
+    public static long[] create(int n) {
+        return new long[(n + 63) >>> 6];
+    }
+
+    public static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    public static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    public static void clear(long[] bits, int i) {
+        bits[i >>> 6] &= ~(1L << i);
+    }
+
+    /**
+     * @return true if the bitset is null or bit i is not set; null stands for an empty mask
+     */
+    public static boolean isClear(long[] bits, int i) {
+        return bits == null || (bits[i >>> 6] & (1L << i)) == 0;
+    }
+}
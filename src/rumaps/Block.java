@@ -2,6 +2,7 @@ package rumaps;
 
 import java.awt.geom.Path2D;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The Block class is used to represent a street block in the map and stores information such as the start point, end point, length, traffic factor, traffic, street name, and block number.
@@ -37,6 +38,9 @@ public class Block {
 
     private Block next; // for linked list implementation
 
+    // the traffic epoch of the network the block was added to, bumped whenever its length, traffic factor or traffic changes
+    private AtomicLong trafficEpoch;
+
     /**
      * Constructor for Block class
      * 
@@ -140,6 +144,7 @@ public class Block {
 
     public void setLength(double length) {
         this.length = length;
+        weightsChanged();
     }
 
     public double getLength() {
@@ -148,6 +153,7 @@ public class Block {
 
     public void setTrafficFactor(double trafficFactor) {
         this.trafficFactor = trafficFactor;
+        weightsChanged();
     }
 
     public double getTrafficFactor() {
@@ -156,12 +162,25 @@ public class Block {
 
     public void setTraffic(double traffic) {
         this.traffic = traffic;
+        weightsChanged();
     }
 
     public double getTraffic() {
         return traffic;
     }
 
+    /**
+     * Makes every later change to the length, traffic factor or traffic of this block bump a network's traffic epoch.
+     * @param trafficEpoch the traffic epoch of the network the block is added to
+     */
+    void setTrafficEpoch(AtomicLong trafficEpoch) {
+        this.trafficEpoch = trafficEpoch;
+    }
+
+    private void weightsChanged() {
+        if (trafficEpoch != null) trafficEpoch.incrementAndGet();
+    }
+
     /* Nominal Attributes */
     public void setStreetName(String streetName) {
         this.streetName = streetName;
@@ -0,0 +1,177 @@
+package rumaps;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ConnectedComponents class labels the connected components of a Network with a union-find structure
+ * (union by size, path halving) over intersection indices.
+ *
+ * The Network keeps it up to date as blocks are added, so connectivity questions are answered in constant time
+ * without searching. Components only change while the network is built, so queries do not touch the union-find
+ * structure: the first query after a change flattens it into one label per intersection, and from then on queries
+ * read the labels without locking, from any number of threads. The list of intersections of each component is
+ * built on first request and kept with the labels.
+ */
+public class ConnectedComponents {
+    private final int[] parent;
+    private final int[] size;
+    private int count;
+
+    // The flattened components, null after a union until the next query flattens them again
+    private volatile Labels labels;
+
+    /**
+     * Creates n singleton components, one per intersection index.
+     * @param n the number of intersection slots
+     */
+    public ConnectedComponents(int n) {
+        parent = new int[n];
+        size = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+        count = n;
+    }
+
+    /**
+     * Labels the components of every edge currently in a network.
+     * @param network the network
+     * @return the components
+     */
+    public static ConnectedComponents of(Network network) {
+        Intersection[] intersections = network.getIntersections();
+        ConnectedComponents components = new ConnectedComponents(intersections.length);
+        Block[] adj = network.getAdjacencyList();
+        for (int i = 0; i < adj.length; i++) {
+            for (Block ptr = adj[i]; ptr != null; ptr = ptr.getNext()) {
+                components.union(network, ptr);
+            }
+        }
+        return components;
+    }
+
+    /**
+     * @param v an intersection index
+     * @return the component label of v: the index of the representative intersection of its component
+     */
+    public int find(int v) {
+        return labels().label[v];
+    }
+
+    /**
+     * Merges the components of two intersection indices.
+     * @return true if they were in different components
+     */
+    public synchronized boolean union(int a, int b) {
+        int rootA = root(a);
+        int rootB = root(b);
+        if (rootA == rootB) return false;
+        if (size[rootA] < size[rootB]) {
+            int tmp = rootA;
+            rootA = rootB;
+            rootB = tmp;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        count--;
+        labels = null;
+        return true;
+    }
+
+    /**
+     * Merges the components of the two endpoints of a block of the network.
+     */
+    void union(Network network, Block block) {
+        if (block.getFirstEndpoint() == null || block.getLastEndpoint() == null) return;
+        int a = network.findIntersection(block.getFirstEndpoint().getCoordinate());
+        int b = network.findIntersection(block.getLastEndpoint().getCoordinate());
+        if (a != -1 && b != -1) union(a, b);
+    }
+
+    public boolean connected(int a, int b) {
+        Labels current = labels();
+        return current.label[a] == current.label[b];
+    }
+
+    /**
+     * @return the number of components, counting every empty intersection slot as its own component
+     */
+    public int count() {
+        return labels().count;
+    }
+
+    /**
+     * @return the number of intersection slots in the component of v
+     */
+    public int componentSize(int v) {
+        Labels current = labels();
+        return current.size[current.label[v]];
+    }
+
+    /**
+     * Returns the intersections in the component of v, in index order.
+     * @param v an intersection index
+     * @param intersections the intersections array of the network
+     * @return an unmodifiable cached list
+     */
+    public List<Intersection> members(int v, Intersection[] intersections) {
+        Labels current = labels();
+        int root = current.label[v];
+        return current.members.computeIfAbsent(root, r -> {
+            ArrayList<Intersection> list = new ArrayList<>(current.size[r]);
+            for (int i = 0; i < current.label.length; i++) {
+                if (intersections[i] != null && current.label[i] == r) list.add(intersections[i]);
+            }
+            return Collections.unmodifiableList(list);
+        });
+    }
+
+    /**
+     * Finds the root of v in the union-find structure, halving the path on the way. Only called under the lock.
+     */
+    private int root(int v) {
+        while (parent[v] != v) {
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    /**
+     * @return the current labels, flattening the union-find structure if a union has changed it since
+     */
+    private Labels labels() {
+        Labels current = labels;
+        return current != null ? current : flatten();
+    }
+
+    private synchronized Labels flatten() {
+        if (labels != null) return labels;
+        int[] label = new int[parent.length];
+        for (int i = 0; i < parent.length; i++) {
+            label[i] = root(i);
+        }
+        Labels current = new Labels(label, size.clone(), count);
+        labels = current;
+        return current;
+    }
+
+    /**
+     * The components at one point in time: the root of every intersection index, the size of every root and the
+     * number of components. Never changed once built.
+     */
+    private static final class Labels {
+        final int[] label;
+        final int[] size;
+        final int count;
+        final ConcurrentHashMap<Integer, List<Intersection>> members = new ConcurrentHashMap<>();
+
+        Labels(int[] label, int[] size, int count) {
+            this.label = label;
+            this.size = size;
+            this.count = count;
+        }
+    }
+}
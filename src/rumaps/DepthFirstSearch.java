@@ -0,0 +1,87 @@
+package rumaps;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * The DepthFirstSearch class is an iterative depth-first traversal over a RoutingGraph.
+ *
+ * It keeps an explicit stack of (vertex, next edge) pairs instead of recursing, so its depth is bounded only by
+ * the heap, and marks visited vertices in a long[] bitset. Vertices are visited in exactly the order a recursive
+ * DFS that tries the edges of each vertex in adjacency list order would visit them, which is the order
+ * RUMaps.reachableIntersections has always returned.
+ *
+ * Visited vertices are streamed to a consumer as they are discovered, so callers that only need to count, filter
+ * or write them out never build a list. The stack and bitset are reused between traversals.
+ *
+ * A DepthFirstSearch is not thread-safe; give each thread its own.
+ */
+public class DepthFirstSearch {
+    private final RoutingGraph graph;
+    private final int[] stackVertex;
+    private final int[] stackEdge;
+    private final long[] visited;
+
+    public DepthFirstSearch(RoutingGraph graph) {
+        this.graph = graph;
+        this.stackVertex = new int[graph.size()];
+        this.stackEdge = new int[graph.size()];
+        this.visited = Bits.create(graph.size());
+    }
+
+    /**
+     * Visits every vertex reachable from source in DFS order.
+     *
+     * @param source the source vertex index
+     * @param blockedEdges edges that may not be used, or null
+     * @param visitor receives the index of each vertex as it is discovered
+     * @return the number of vertices visited
+     */
+    public int traverse(int source, long[] blockedEdges, IntConsumer visitor) {
+        Arrays.fill(visited, 0L);
+        int count = 1;
+        int top = 0;
+        stackVertex[0] = source;
+        stackEdge[0] = graph.firstEdge(source);
+        Bits.set(visited, source);
+        visitor.accept(source);
+
+        while (top >= 0) {
+            int v = stackVertex[top];
+            int e = stackEdge[top];
+            int end = graph.endEdge(v);
+            while (e < end && (!Bits.isClear(blockedEdges, e) || Bits.get(visited, graph.target(e)))) {
+                e++;
+            }
+            if (e == end) {
+                top--;
+                continue;
+            }
+            stackEdge[top] = e + 1;
+
+            int w = graph.target(e);
+            Bits.set(visited, w);
+            visitor.accept(w);
+            count++;
+            top++;
+            stackVertex[top] = w;
+            stackEdge[top] = graph.firstEdge(w);
+        }
+        return count;
+    }
+
+    /**
+     * Visits every intersection reachable from source in DFS order.
+     *
+     * @param source the intersection to start from
+     * @param blockedEdges edges that may not be used, or null
+     * @param visitor receives each intersection as it is discovered
+     * @return the number of intersections visited, 0 if source is not in the graph
+     */
+    public int traverse(Intersection source, long[] blockedEdges, Consumer<Intersection> visitor) {
+        int s = graph.indexOf(source);
+        if (s == -1) return 0;
+        return traverse(s, blockedEdges, v -> visitor.accept(graph.intersection(v)));
+    }
+}
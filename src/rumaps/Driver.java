@@ -3,9 +3,16 @@ package rumaps;
 import javax.swing.*;
 import java.awt.*;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 
 /**
  * **RUN THIS FILE TO RUN THE APPLICATION**
@@ -29,10 +36,33 @@ public class Driver {
     private final String[] imagePaths = {"assets/satellite.png", "assets/overlay.png"};
     private final double defaultOverlayTransparency = 0.125;
     private final String defaultStreetInfoString = "Hover over a block to see its street name and block number";
+    // One thread per path label, so the reachable, minimize intersections and fastest path queries run in parallel
+    private static final int ROUTE_THREADS = 3;
+    private static final String[] NO_PATH = {"N/A", null};
+    private static final String[] FAILED = {"failed", null};
+    private static final String COPY_TEXT = "rumaps.copyText";
 
     private JFrame window;
     private MapPanel mapPanel;
     private RUMaps rumaps;
+    // Results of the current map's queries, one cache per result type, replaced with the map
+    private RouteCache<List<Intersection>> reachableCache;
+    private RouteCache<Route> routeCache;
+    private RouteCache<ArrayList<Route>> alternativesCache;
+    private final ExecutorService routeExecutor = Executors.newFixedThreadPool(ROUTE_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "rumaps-route");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // The queries of the current selection, and a counter bumped by each new selection; results of queries started
+    // under an older generation are dropped. Both are only changed on the event dispatch thread.
+    private final List<Future<?>> routeQueries = new ArrayList<>();
+    private volatile long routeGeneration;
+    private boolean searchFrontierActivated;
+    // Alternative routes are only computed while they are shown
+    private boolean alternativesActivated;
+    private Intersection selectedStart;
+    private Intersection selectedEnd;
 
     private JLabel streetInfoLabel;
     private JLabel blockLengthLabel;
@@ -47,6 +77,9 @@ public class Driver {
     private JLabel fastestPathLabel;
     private JLabel dfsLabel;
 
+    // Totals of the paths shown, null until their query is done
+    private double[] minPathInfo;
+    private double[] fastPathInfo;
 
     private Driver() {
         StdRandom.setSeed(SEED);
@@ -98,7 +131,8 @@ public class Driver {
         JPanel container = new JPanel();
         container.setLayout(new BorderLayout());
 
-        rumaps = new RUMaps(mapPanel, networkPath);
+        rumaps = RUMaps.load(mapPanel, networkPath);
+        prepareRouting();
 
         JPanel streetInfo = makeStreetInfo();
         container.add(streetInfo, BorderLayout.NORTH);
@@ -163,6 +197,9 @@ public class Driver {
         dfsLabel = new JLabel();
         dfsLabel.setHorizontalAlignment(SwingConstants.CENTER); 
 
+        copyOnClick(dfsLabel);
+        copyOnClick(minIntersectionsLabel);
+        copyOnClick(fastestPathLabel);
         updatePathInfo(null, null);
         panel.add(dfsLabel);
 
@@ -178,6 +215,8 @@ public class Driver {
         parent.remove(mapPanel);
         
         mapPanel = newMapPanel;
+        selectedStart = null;
+        selectedEnd = null;
         GridBagConstraints gbc = new GridBagConstraints();
         gbc.gridx = 0;
         gbc.gridy = 0;
@@ -212,9 +251,13 @@ public class Driver {
                         return new Dimension(720, 677);
                     }
                 };
+                cancelRouteQueries();
+                mapPanel.showSearchTraces(null, null);
                 networkPath = COORDINATES_PATH;
-                rumaps = new RUMaps(newMapPanel, networkPath);
+                rumaps = RUMaps.load(newMapPanel, networkPath);
+                prepareRouting();
                 switchMap(newMapPanel);
+                traceSearches(searchFrontierActivated);
             }
         });
         
@@ -226,9 +269,13 @@ public class Driver {
                         return new Dimension(720, 677);
                     }
                 };
+                cancelRouteQueries();
+                mapPanel.showSearchTraces(null, null);
                 networkPath = BUSCH_PATH;
-                rumaps = new RUMaps(newMapPanel, networkPath);
+                rumaps = RUMaps.load(newMapPanel, networkPath);
+                prepareRouting();
                 switchMap(newMapPanel);
+                traceSearches(searchFrontierActivated);
             }
         });
 
@@ -240,7 +287,7 @@ public class Driver {
 
 
         JPanel panel = new JPanel();
-        panel.setLayout(new GridLayout(2,2));
+        panel.setLayout(new GridLayout(3,2));
 
         JCheckBox satellite = new JCheckBox("Satellite", true);
         JCheckBox network = new JCheckBox("Street Network", true);
@@ -248,6 +295,10 @@ public class Driver {
         minimize.setForeground(mapPanel.minimizeIntersectionPathColor);
         JCheckBox fast = new JCheckBox("Fastest Path", true);
         fast.setForeground(mapPanel.fastestPathColor);
+        JCheckBox alternatives = new JCheckBox("Alternative Routes", false);
+        alternatives.setForeground(mapPanel.alternativePathColors[0]);
+        JCheckBox frontier = new JCheckBox("Search Frontier", false);
+        frontier.setToolTipText("Animate the intersections each search explores");
         JPanel transparencyPanel = makeTransparencySlider();
 
         satellite.addActionListener(e -> {
@@ -261,11 +312,19 @@ public class Driver {
         network.addActionListener(e -> mapPanel.toggleNetworkVisuals(network.isSelected()));
         minimize.addActionListener(e -> mapPanel.toggleMinimizeIntersectionPath(minimize.isSelected()));
         fast.addActionListener(e -> mapPanel.toggleFastestPath(fast.isSelected()));
+        alternatives.addActionListener(e -> {
+            alternativesActivated = alternatives.isSelected();
+            mapPanel.toggleAlternativePaths(alternativesActivated);
+            if (alternativesActivated && selectedEnd != null) queryAlternativeRoutes(rumaps, alternativesCache, selectedStart, selectedEnd);
+        });
+        frontier.addActionListener(e -> traceSearches(frontier.isSelected()));
 
         panel.add(satellite);
         panel.add(network);
         panel.add(minimize);
         panel.add(fast);
+        panel.add(alternatives);
+        panel.add(frontier);
 
         containerPanel.add(panel);
         completePanel.add(containerPanel);
@@ -311,139 +370,193 @@ public class Driver {
         }
     }
 
+    /**
+     * Shows the routes between the selected intersections. The queries run on the route executor, one per algorithm,
+     * and each result is shown as soon as it is ready; until then its label reads "...".
+     * A new selection supersedes the queries of the previous one: those not started yet are cancelled, and the
+     * results of those already running are dropped (they still fill the route cache).
+     *
+     * @param start the selected start intersection, or null
+     * @param end the selected end intersection, or null
+     */
     public void updatePathInfo(Intersection start, Intersection end) {
-        if (start == null && end == null) {
+        cancelRouteQueries();
+        selectedStart = start;
+        selectedEnd = end;
+        minPathInfo = null;
+        fastPathInfo = null;
+        mapPanel.highlightMinimizeIntersectionPath(Route.NONE);
+        mapPanel.highlightedFastestPath(Route.NONE);
+        mapPanel.highlightAlternativeRoutes(new ArrayList<>());
+
+        if (end == null) {
             defaultBlockLengthValue = "N/A";
             defaultBlockTrafficFactorValue = "N/A";
             defaultBlockTrafficValue = "N/A";
             updateStreetInfo(null);
+        } else {
+            showPathTotals();
+        }
+        showPath(dfsLabel, "Reachable Intersections", start == null ? NO_PATH : null, mapPanel.minimizeIntersectionPathColor);
+        showPath(minIntersectionsLabel, "Minimize Intersections (BFS)", end == null ? NO_PATH : null, mapPanel.minimizeIntersectionPathColor);
+        showPath(fastestPathLabel, "Fastest Path", end == null ? NO_PATH : null, mapPanel.fastestPathColor);
+        if (start == null) return;
+
+        RUMaps maps = rumaps;
+        RouteCache<List<Intersection>> reachable = reachableCache;
+        RouteCache<Route> routes = routeCache;
+        // Traced searches skip the route cache, so that every selection animates
+        boolean traced = searchFrontierActivated;
+        submitRouteQuery(dfsLabel, "Reachable Intersections", publish -> {
+            String[] formatted = formatDFSPath(reachable.get(start, null, "reachable", null, () -> maps.reachableSet(start)));
+            publish.accept(() -> showPath(dfsLabel, "Reachable Intersections", formatted, mapPanel.minimizeIntersectionPathColor));
+        });
+        if (end == null) return;
+
+        submitRouteQuery(minIntersectionsLabel, "Minimize Intersections (BFS)", publish -> {
+            Route minRoute = traced ? maps.minimizeIntersectionsRoute(start, end, null, false)
+                : routes.get(start, end, "minimizeIntersections", null, () -> maps.minimizeIntersectionsRoute(start, end, null, false));
+            double[] info = minRoute.getInformation();
+            String[] formatted = formatRoute(minRoute);
+            publish.accept(() -> {
+                minPathInfo = info;
+                showPathTotals();
+                showPath(minIntersectionsLabel, "Minimize Intersections (BFS)", formatted, mapPanel.minimizeIntersectionPathColor);
+                mapPanel.highlightMinimizeIntersectionPath(minRoute);
+            });
+        });
+        submitRouteQuery(fastestPathLabel, "Fastest Path", publish -> {
+            Route fastRoute = traced ? maps.fastestRoute(start, end, null)
+                : routes.get(start, end, "fastestPath", null, () -> maps.fastestRoute(start, end, null));
+            double[] info = fastRoute.getInformation();
+            String[] formatted = formatRoute(fastRoute);
+            publish.accept(() -> {
+                fastPathInfo = info;
+                showPathTotals();
+                showPath(fastestPathLabel, "Fastest Path", formatted, mapPanel.fastestPathColor);
+                mapPanel.highlightedFastestPath(fastRoute);
+            });
+        });
+        if (alternativesActivated) queryAlternativeRoutes(maps, alternativesCache, start, end);
+    }
 
-            dfsLabel.setText("<html><b>Reachable Intersections (DFS):</b>  N/A");
-            dfsLabel.setToolTipText(null);
-
-
-            minIntersectionsLabel.setText("<html><b>Minimize Intersections (BFS):</b>  N/A");
-            minIntersectionsLabel.setToolTipText(null);
+    /**
+     * Computes the alternative routes of the current selection on the route executor and highlights them.
+     * Called for each selection while alternative routes are shown, and when they are turned on.
+     */
+    private void queryAlternativeRoutes(RUMaps maps, RouteCache<ArrayList<Route>> cache, Intersection start, Intersection end) {
+        submitRouteQuery(null, "Alternative Routes", publish -> {
+            // The first alternative is the fastest path itself, which is already highlighted
+            ArrayList<Route> alternatives = cache.get(start, end, "alternativeRoutes", null, () -> maps.alternativeRouteList(start, end, 3));
+            publish.accept(() -> mapPanel.highlightAlternativeRoutes(
+                alternatives.subList(Math.min(1, alternatives.size()), alternatives.size())));
+        });
+    }
 
-            fastestPathLabel.setText("<html><b>Fastest Path:</b>  N/A");
-            fastestPathLabel.setToolTipText(null);
+    /**
+     * Runs a route query on the route executor for the current selection.
+     * The query hands each result to its publisher, which shows it on the event dispatch thread unless the selection
+     * has changed by then. A query that fails shows "failed" on its label.
+     *
+     * @param label the label showing the result, or null if there is none
+     * @param title the title of the label
+     * @param query computes the result and passes the code that shows it to the publisher
+     */
+    private void submitRouteQuery(JLabel label, String title, Consumer<Consumer<Runnable>> query) {
+        long generation = routeGeneration;
+        Consumer<Runnable> publish = show -> SwingUtilities.invokeLater(() -> {
+            if (generation == routeGeneration) show.run();
+        });
+        routeQueries.add(routeExecutor.submit(() -> {
+            if (generation != routeGeneration) return;
+            try {
+                query.accept(publish);
+            } catch (RuntimeException e) {
+                System.err.println(title + " query failed: " + e);
+                if (label != null) publish.accept(() -> showPath(label, title, FAILED, null));
+            }
+        }));
+    }
 
+    /**
+     * Starts or stops recording the minimize intersections and fastest path searches of the current map, and
+     * animating them on the map panel.
+     */
+    private void traceSearches(boolean activate) {
+        searchFrontierActivated = activate;
+        SearchTrace minimizeIntersections = activate ? new SearchTrace() : null;
+        SearchTrace fastestPath = activate ? new SearchTrace() : null;
+        rumaps.setMinimizeIntersectionsTrace(minimizeIntersections);
+        rumaps.setFastestPathTrace(fastestPath);
+        mapPanel.showSearchTraces(minimizeIntersections, fastestPath);
+    }
 
-            mapPanel.highlightMinimizeIntersectionPath(new ArrayList<>());
-            mapPanel.highlightedFastestPath(new ArrayList<>());
-        } else if (start != null && end == null) {
-            defaultBlockLengthValue = "N/A";
-            defaultBlockTrafficFactorValue = "N/A";
-            defaultBlockTrafficValue = "N/A";
-            updateStreetInfo(null);
+    /**
+     * Creates the route caches of the current map, and builds its routing graph on the route executor so the first
+     * selection does not wait for it.
+     */
+    private void prepareRouting() {
+        reachableCache = new RouteCache<>(rumaps.getRutgers());
+        routeCache = new RouteCache<>(rumaps.getRutgers());
+        alternativesCache = new RouteCache<>(rumaps.getRutgers());
+        routeExecutor.execute(rumaps::getRoutingGraph);
+    }
 
-            ArrayList<Intersection> dfsPath = rumaps.reachableIntersections(start);
-            String[] formattedDfsPaths = formatDFSPath(dfsPath);
-            dfsLabel.setText("<html><b>Reachable Intersections (DFS):</b>  " + formattedDfsPaths[0]);
-            dfsLabel.setToolTipText(String.format("<html><span style=\"color:rgb(%s, %s, %s)\"> %s",
-                mapPanel.minimizeIntersectionPathColor.getRed(), mapPanel.minimizeIntersectionPathColor.getGreen(), 
-                mapPanel.minimizeIntersectionPathColor.getBlue(), formattedDfsPaths[1]));
-            dfsLabel.addMouseListener(new java.awt.event.MouseAdapter() {
-                    @Override
-                    public void mouseClicked(java.awt.event.MouseEvent e) {
-                        StringSelection stringSelection = new StringSelection(formattedDfsPaths[1].replace("<br>", "").replace("<em>", "").replace("<em/>", ""));
-                        Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
-                        clipboard.setContents(stringSelection, null); 
-                    }
-                });
-            minIntersectionsLabel.setText("<html><b>Minimize Intersections (BFS):</b>  N/A");
-            minIntersectionsLabel.setToolTipText(null);
+    /**
+     * Supersedes the route queries of the current selection.
+     */
+    private void cancelRouteQueries() {
+        routeGeneration++;
+        for (Future<?> query : routeQueries) query.cancel(false);
+        routeQueries.clear();
+    }
 
-            fastestPathLabel.setText("<html><b>Fastest Path:</b>  N/A");
-            fastestPathLabel.setToolTipText(null);
+    /**
+     * Shows a formatted path on a path label, and makes a click on the label copy the full path.
+     *
+     * @param formatted the short and full text from formatRoute or formatDFSPath, or null while it is being computed
+     */
+    private void showPath(JLabel label, String title, String[] formatted, Color color) {
+        label.setText("<html><b>" + title + ":</b>  " + (formatted == null ? "..." : formatted[0]));
+        String full = formatted == null ? null : formatted[1];
+        label.setToolTipText(full == null ? null : String.format("<html><span style=\"color:rgb(%s, %s, %s)\"> %s",
+            color.getRed(), color.getGreen(), color.getBlue(), full));
+        label.putClientProperty(COPY_TEXT, full == null ? null : full.replace("<br>", "").replace("<em>", "").replace("<em/>", ""));
+    }
 
+    private static void copyOnClick(JLabel label) {
+        label.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                Object text = label.getClientProperty(COPY_TEXT);
+                if (text == null) return;
+                Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+                clipboard.setContents(new StringSelection(text.toString()), null);
+            }
+        });
+    }
 
-            mapPanel.highlightMinimizeIntersectionPath(new ArrayList<>());
-            mapPanel.highlightedFastestPath(new ArrayList<>());
-        }
-        else {
-            ArrayList<Intersection> dfsPath = rumaps.reachableIntersections(start);
-            ArrayList<Intersection> minPath = rumaps.minimizeIntersections(start, end);
-            ArrayList<Intersection> fastPath = rumaps.fastestPath(start, end);
-
-            double[] minPathInfo = rumaps.pathInformation(minPath);
-            double[] fastPathInfo = rumaps.pathInformation(fastPath);
-            defaultBlockLengthValue = String.format(
-                "<span style=\"color:rgb(%s,%s,%s);\">%.2f</span>, <span style=\"color:rgb(%s,%s,%s);\">%.2f</span>", 
-                mapPanel.minimizeIntersectionPathColor.getRed(), mapPanel.minimizeIntersectionPathColor.getGreen(), 
-                mapPanel.minimizeIntersectionPathColor.getBlue(), minPathInfo[0], mapPanel.fastestPathColor.getRed(), 
-                mapPanel.fastestPathColor.getGreen(), mapPanel.fastestPathColor.getBlue(), fastPathInfo[0]);
-            defaultBlockTrafficFactorValue = String.format(
-                "<span style=\"color:rgb(%s,%s,%s);\">%.3f</span>, <span style=\"color:rgb(%s,%s,%s);\">%.3f</span>", 
-                mapPanel.minimizeIntersectionPathColor.getRed(), mapPanel.minimizeIntersectionPathColor.getGreen(), 
-                mapPanel.minimizeIntersectionPathColor.getBlue(), minPathInfo[1], mapPanel.fastestPathColor.getRed(), 
-                mapPanel.fastestPathColor.getGreen(), mapPanel.fastestPathColor.getBlue(), fastPathInfo[1]);
-            defaultBlockTrafficValue = String.format(
-                "<span style=\"color:rgb(%s,%s,%s);\">%.2f</span>, <span style=\"color:rgb(%s,%s,%s);\">%.2f</span>", 
-                mapPanel.minimizeIntersectionPathColor.getRed(), mapPanel.minimizeIntersectionPathColor.getGreen(), 
-                mapPanel.minimizeIntersectionPathColor.getBlue(), minPathInfo[2], mapPanel.fastestPathColor.getRed(), 
-                mapPanel.fastestPathColor.getGreen(), mapPanel.fastestPathColor.getBlue(), fastPathInfo[2]);
+    /**
+     * Shows the length, traffic factor and traffic of the minimize intersections and fastest paths as the block
+     * details while no block is hovered, with "..." for a path still being computed.
+     */
+    private void showPathTotals() {
+        defaultBlockLengthValue = pathTotals("%.2f", 0);
+        defaultBlockTrafficFactorValue = pathTotals("%.3f", 1);
+        defaultBlockTrafficValue = pathTotals("%.2f", 2);
+        updateStreetInfo(null);
+    }
 
-            updateStreetInfo(null);
+    private String pathTotals(String format, int field) {
+        return colored(mapPanel.minimizeIntersectionPathColor, minPathInfo == null ? "..." : String.format(format, minPathInfo[field]))
+            + ", " + colored(mapPanel.fastestPathColor, fastPathInfo == null ? "..." : String.format(format, fastPathInfo[field]));
+    }
 
-            String[] formattedDfsPaths = formatDFSPath(dfsPath);
-            String[] formattedMinPaths = formatPath(minPath);
-            String[] formattedFastPaths = formatPath(fastPath);
-
-            dfsLabel.setText("<html><b>Reachable Intersections (DFS):</b>  " + formattedDfsPaths[0]);
-            dfsLabel.setToolTipText(String.format("<html><span style=\"color:rgb(%s, %s, %s)\"> %s",
-                mapPanel.minimizeIntersectionPathColor.getRed(), mapPanel.minimizeIntersectionPathColor.getGreen(), 
-                mapPanel.minimizeIntersectionPathColor.getBlue(), formattedDfsPaths[1]));
-                if (dfsLabel.getMouseListeners().length > 0) {
-                    dfsLabel.removeMouseListener(dfsLabel.getMouseListeners()[0]);
-                }
-                dfsLabel.addMouseListener(new java.awt.event.MouseAdapter() {
-                    @Override
-                    public void mouseClicked(java.awt.event.MouseEvent e) {
-                        StringSelection stringSelection = new StringSelection(formattedDfsPaths[1].replace("<br>", "").replace("<em>", "").replace("<em/>", ""));
-                        Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
-                        clipboard.setContents(stringSelection, null);  
-                    }
-                });
-                minIntersectionsLabel.setText("<html><b>Minimize Intersections (BFS):</b>  " + formattedMinPaths[0]);
-                minIntersectionsLabel.setToolTipText(String.format("<html><span style=\"color:rgb(%s, %s, %s)\"> %s",
-                    mapPanel.minimizeIntersectionPathColor.getRed(), mapPanel.minimizeIntersectionPathColor.getGreen(), 
-                    mapPanel.minimizeIntersectionPathColor.getBlue(), formattedMinPaths[1]));
-                if (minIntersectionsLabel.getMouseListeners().length > 0) {
-                    minIntersectionsLabel.removeMouseListener(minIntersectionsLabel.getMouseListeners()[0]);
-                }
-                
-                minIntersectionsLabel.addMouseListener(new java.awt.event.MouseAdapter() {
-                    @Override
-                    public void mouseClicked(java.awt.event.MouseEvent e) {
-                        StringSelection stringSelection = new StringSelection(formattedMinPaths[1].replace("<br>", "").replace("<em>", "").replace("<em/>", ""));
-                        Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
-                        clipboard.setContents(stringSelection, null); 
-                    }
-                });
-    
-                fastestPathLabel.setText("<html><b>Fastest Path:</b>  " + formattedFastPaths[0]);
-                fastestPathLabel.setToolTipText(String.format("<html><span style=\"color:rgb(%s, %s, %s)\"> %s",
-                    mapPanel.fastestPathColor.getRed(), mapPanel.fastestPathColor.getGreen(), 
-                    mapPanel.fastestPathColor.getBlue(),formattedFastPaths[1]));
-                if (fastestPathLabel.getMouseListeners().length > 0) {
-                    fastestPathLabel.removeMouseListener(dfsLabel.getMouseListeners()[0]);
-                }
-                fastestPathLabel.addMouseListener(new java.awt.event.MouseAdapter() {
-                    @Override
-                    public void mouseClicked(java.awt.event.MouseEvent e) {
-                        StringSelection stringSelection = new StringSelection(formattedFastPaths[1].replace("<br>", "").replace("<em>", "").replace("<em/>", ""));
-                        Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
-                        clipboard.setContents(stringSelection, null); 
-                    }
-                });
-    
-                mapPanel.highlightMinimizeIntersectionPath(minPath);
-                mapPanel.highlightedFastestPath(fastPath);
-        }
+    private static String colored(Color color, String text) {
+        return String.format("<span style=\"color:rgb(%s,%s,%s);\">%s</span>", color.getRed(), color.getGreen(), color.getBlue(), text);
     }
 
-    private String[] formatDFSPath(ArrayList<Intersection> path) {
+    private String[] formatDFSPath(List<Intersection> path) {
         if (path == null || path.size() < 2) {
             return new String[] {"N/A", null};
         }
@@ -471,31 +584,20 @@ public class Driver {
         return new String[] {display.toString(), sb.toString()}; 
     }
 
-    private String[] formatPath(ArrayList<Intersection> path) {
-        if (path == null || path.size() < 2) {
+    private String[] formatRoute(Route route) {
+        if (route.getHops() == 0) {
             return new String[] {"N/A", null};
         }
     
         StringBuilder sb = new StringBuilder();
         int lineCount = 0, index = 0;
     
-        for (int i = 0; i < path.size() - 1; i++) {
-            Intersection current = path.get(i);
-            Intersection next = path.get(i + 1);
-    
-            // Find the incident block between the current and next intersections
-            Block block = rumaps.getRutgers().adj(rumaps.getRutgers().findIntersection(current.getCoordinate().getX(), current.getCoordinate().getY()));
-            while (block != null) {
-                if ((block.getFirstEndpoint().equals(current) && block.getLastEndpoint().equals(next)) ||
-                    (block.getFirstEndpoint().equals(next) && block.getLastEndpoint().equals(current))) {
-                    sb.append(block.getStreetName()).append(" (Block ").append(block.getBlockNumber()).append(") ");
-                    break;
-                }
-                block = block.getNext();
-            }
+        for (int i = 0; i < route.getHops(); i++) {
+            Block block = route.getBlock(i);
+            sb.append(block.getStreetName()).append(" (Block ").append(block.getBlockNumber()).append(") ");
     
             index++;
-            if (i < path.size() - 2) {
+            if (i < route.getHops() - 1) {
                 sb.append("-> ");
             }
     
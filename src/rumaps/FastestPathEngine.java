@@ -0,0 +1,185 @@
+package rumaps;
+
+import java.util.*;
+
+/**
+ * The FastestPathEngine class runs Dijkstra's algorithm over a RoutingGraph using block traffic as the cost,
+ * the same cost model as RUMaps.fastestPath, on a reusable SearchWorkspace.
+ *
+ * Every query can optionally take:
+ * - blockedEdges / blockedVertices - bitsets of edge and vertex indices that may not be used
+ * - potential - a lower bound on the remaining cost to the target for every vertex, which turns the search into A*
+ * - penalty - a multiplier applied to the traffic of every edge
+ * Passing null for any of them disables it.
+ *
+ * With a SearchTrace set, search() records each vertex it settles and each distance it improves.
+ *
+ * An engine is not thread-safe; give each thread its own.
+ */
+public class FastestPathEngine {
+    private final RoutingGraph graph;
+    private final SearchWorkspace workspace;
+    private int settledCount;
+    private SearchTrace trace;
+
+    public FastestPathEngine(RoutingGraph graph) {
+        this(graph, new SearchWorkspace(graph.size()));
+    }
+
+    public FastestPathEngine(RoutingGraph graph, SearchWorkspace workspace) {
+        if (workspace.capacity() < graph.size()) throw new IllegalArgumentException("Workspace is smaller than the graph");
+        this.graph = graph;
+        this.workspace = workspace;
+    }
+
+    public RoutingGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @param trace where search() records its steps, or null to record nothing
+     */
+    public void setTrace(SearchTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Runs a search from source that stops as soon as target is settled.
+     *
+     * @param source the source vertex index
+     * @param target the target vertex index, or -1 to settle every reachable vertex
+     * @param blockedEdges edges that may not be used, or null
+     * @param blockedVertices vertices that may not be entered, or null
+     * @param potential lower bounds on the cost to target, or null
+     * @param penalty traffic multipliers per edge, or null
+     * @return true if target was reached (always true when target is -1)
+     */
+    public boolean search(int source, int target, long[] blockedEdges, long[] blockedVertices,
+                          double[] potential, double[] penalty) {
+        SearchTrace.Recorder recorder = trace == null ? null : trace.begin(source);
+        try {
+            return search(source, target, blockedEdges, blockedVertices, potential, penalty, recorder);
+        } finally {
+            if (recorder != null) recorder.end();
+        }
+    }
+
+    private boolean search(int source, int target, long[] blockedEdges, long[] blockedVertices,
+                           double[] potential, double[] penalty, SearchTrace.Recorder recorder) {
+        workspace.reset();
+        settledCount = 0;
+        workspace.relax(source, 0.0, -1, potential == null ? 0.0 : potential[source]);
+
+        while (!workspace.isEmpty()) {
+            int v = workspace.poll();
+            workspace.settle(v);
+            settledCount++;
+            if (recorder != null) recorder.settle(v);
+            if (v == target) return true;
+
+            double dv = workspace.dist(v);
+            for (int e = graph.firstEdge(v); e < graph.endEdge(v); e++) {
+                int w = graph.target(e);
+                if (workspace.isSettled(w) || !Bits.isClear(blockedEdges, e) || !Bits.isClear(blockedVertices, w)) continue;
+
+                double cost = penalty == null ? graph.traffic(e) : graph.traffic(e) * penalty[e];
+                double dw = dv + cost;
+                boolean improved = false;
+                if (potential == null) {
+                    improved = workspace.relax(w, dw, e, dw);
+                } else if (potential[w] != Double.POSITIVE_INFINITY) {
+                    improved = workspace.relax(w, dw, e, dw + potential[w]);
+                }
+                if (improved && recorder != null) recorder.relax(w);
+            }
+        }
+        return target == -1;
+    }
+
+    /**
+     * Computes the least traffic from every vertex to target by searching the twin (reversed) edges.
+     *
+     * @param target the target vertex index
+     * @return a new array of costs to target, infinity where target is unreachable
+     */
+    public double[] distancesTo(int target) {
+        workspace.reset();
+        settledCount = 0;
+        workspace.relax(target, 0.0, -1, 0.0);
+        while (!workspace.isEmpty()) {
+            int v = workspace.poll();
+            workspace.settle(v);
+            settledCount++;
+            double dv = workspace.dist(v);
+            for (int e = graph.firstEdge(v); e < graph.endEdge(v); e++) {
+                int u = graph.target(e);
+                if (workspace.isSettled(u)) continue;
+                double du = dv + graph.traffic(graph.twin(e));
+                workspace.relax(u, du, e, du);
+            }
+        }
+        double[] distances = new double[graph.size()];
+        for (int v = 0; v < distances.length; v++) {
+            distances[v] = workspace.dist(v);
+        }
+        return distances;
+    }
+
+    /**
+     * @return the cost of the best path to v found by the last search, or infinity if none
+     */
+    public double distance(int v) {
+        return workspace.dist(v);
+    }
+
+    /**
+     * @return the number of vertices settled by the last search
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * @return the number of edges that improved a distance in the last search
+     */
+    public int getRelaxedCount() {
+        return workspace.getRelaxCount();
+    }
+
+    /**
+     * @return the number of heap pushes of the last search
+     */
+    public int getPushCount() {
+        return workspace.getPushCount();
+    }
+
+    /**
+     * Walks the predecessor edges of the last search back from target.
+     *
+     * @param target a vertex reached by the last search
+     * @return the edge ids of the path from the source to target, in order
+     */
+    public int[] edgePath(int target) {
+        int count = 0;
+        for (int e = workspace.predEdge(target); e != -1; e = workspace.predEdge(graph.tail(e))) {
+            count++;
+        }
+        int[] edges = new int[count];
+        for (int e = workspace.predEdge(target); e != -1; e = workspace.predEdge(graph.tail(e))) {
+            edges[--count] = e;
+        }
+        return edges;
+    }
+
+    /**
+     * Converts a path given as edge ids into the list of intersections it passes through.
+     */
+    public static ArrayList<Intersection> toIntersections(RoutingGraph graph, int source, int[] edges) {
+        ArrayList<Intersection> path = new ArrayList<>(edges.length + 1);
+        path.add(graph.intersection(source));
+        for (int e : edges) {
+            path.add(graph.intersection(graph.target(e)));
+        }
+        return path;
+    }
+}
@@ -0,0 +1,347 @@
+package rumaps;
+
+import java.util.*;
+
+/**
+ * The HopSearch class finds paths with the least number of blocks (hops) over a RoutingGraph, the same problem as
+ * RUMaps.minimizeIntersections, with flat arrays instead of a linked Queue of Intersection objects:
+ * - the frontier is an int[] ring buffer of vertex indices
+ * - visited vertices are marked with the stamp of the search that reached them, so a new search starts without
+ *   clearing anything and a search that stops early costs only the vertices it touches
+ * - the path is recorded as the edge used to reach each vertex
+ *
+ * search() is a direction-optimizing BFS. Levels are normally expanded top-down (each frontier vertex scans its
+ * edges), which discovers vertices in the same order as a textbook BFS. When the frontier becomes large compared to
+ * the edges left to explore, levels are expanded bottom-up instead (each unvisited vertex looks for a neighbour in
+ * the frontier and stops at the first one), which avoids scanning the many edges that lead to already visited
+ * vertices. Small frontiers are always expanded top-down.
+ *
+ * bidirectional() grows one BFS from each end, always expanding the side with the smaller frontier, and stops after
+ * the level in which the two meet. On large networks it touches only a small fraction of the vertices a one-sided
+ * search needs.
+ *
+ * Blocks are undirected, so the edge from u to v is the twin of the edge from v to u; bottom-up and backward steps
+ * use twins to report and mask the edge in the direction it is travelled.
+ *
+ * With a SearchTrace set, both searches record each vertex they expand and each vertex they discover.
+ *
+ * A HopSearch is not thread-safe; give each thread its own, and reuse it for any number of searches on its graph.
+ */
+public class HopSearch {
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+    private static final int MIN_BOTTOM_UP_FRONTIER = 256;
+
+    private final RoutingGraph graph;
+    private final int n;
+
+    private final int[] ring;
+    private int head;
+    private int size;
+
+    // visitedStamp[v] == stamp when the current search has reached v
+    private final int[] visitedStamp;
+    private int stamp;
+    private final long[] frontier;
+    private final int[] parentEdge;
+    private final int[] dist;
+
+    private final int[] ringBack;
+    private final int[] visitedBackStamp;
+    private final int[] parentEdgeBack;
+    private final int[] distBack;
+
+    private int meetEdge;
+    private int visitedCount;
+
+    private SearchTrace trace;
+    private SearchTrace.Recorder recorder;
+
+    public HopSearch(RoutingGraph graph) {
+        this.graph = graph;
+        this.n = graph.size();
+        ring = new int[Math.max(1, n)];
+        visitedStamp = new int[n];
+        frontier = Bits.create(n);
+        parentEdge = new int[n];
+        dist = new int[n];
+        ringBack = new int[Math.max(1, n)];
+        visitedBackStamp = new int[n];
+        parentEdgeBack = new int[n];
+        distBack = new int[n];
+    }
+
+    /**
+     * @return the graph this search runs on
+     */
+    public RoutingGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @param trace where the searches record their steps, or null to record nothing
+     */
+    public void setTrace(SearchTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Runs a direction-optimizing BFS from source.
+     *
+     * @param source the source vertex index
+     * @param target the vertex index to stop at, or -1 to visit every reachable vertex
+     * @param blockedEdges edges that may not be used, or null
+     * @return true if target was reached (always true when target is -1)
+     */
+    public boolean search(int source, int target, long[] blockedEdges) {
+        recorder = trace == null ? null : trace.begin(source);
+        try {
+            return searchFrom(source, target, blockedEdges);
+        } finally {
+            if (recorder != null) recorder.end();
+            recorder = null;
+        }
+    }
+
+    private boolean searchFrom(int source, int target, long[] blockedEdges) {
+        nextStamp();
+        visitedCount = 1;
+        head = 0;
+        size = 0;
+        visitedStamp[source] = stamp;
+        parentEdge[source] = -1;
+        dist[source] = 0;
+        ring[0] = source;
+        size = 1;
+        if (source == target) return true;
+
+        long unexploredEdges = graph.edgeCount() - graph.degree(source);
+        long frontierEdges = graph.degree(source);
+        boolean bottomUp = false;
+        int level = 0;
+
+        while (size > 0) {
+            if (!bottomUp && size >= MIN_BOTTOM_UP_FRONTIER && frontierEdges > unexploredEdges / ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && size < n / BETA) {
+                bottomUp = false;
+            }
+
+            level++;
+            long nextEdges = bottomUp ? bottomUpStep(level, blockedEdges) : topDownStep(level, blockedEdges);
+            unexploredEdges -= nextEdges;
+            frontierEdges = nextEdges;
+            if (target != -1 && visitedStamp[target] == stamp) return true;
+        }
+        return target == -1;
+    }
+
+    /**
+     * Expands the current level by scanning the edges of each frontier vertex.
+     * @return the number of edges leaving the new frontier
+     */
+    private long topDownStep(int level, long[] blockedEdges) {
+        SearchTrace.Recorder recorder = this.recorder;
+        long nextEdges = 0;
+        for (int count = size; count > 0; count--) {
+            int v = ring[head];
+            head = (head + 1) % ring.length;
+            size--;
+            if (recorder != null) recorder.settle(v);
+            for (int e = graph.firstEdge(v); e < graph.endEdge(v); e++) {
+                int w = graph.target(e);
+                if (visitedStamp[w] == stamp || !Bits.isClear(blockedEdges, e)) continue;
+                visitedStamp[w] = stamp;
+                visitedCount++;
+                if (recorder != null) recorder.relax(w);
+                parentEdge[w] = e;
+                dist[w] = level;
+                ring[(head + size) % ring.length] = w;
+                size++;
+                nextEdges += graph.degree(w);
+            }
+        }
+        return nextEdges;
+    }
+
+    /**
+     * Expands the current level by letting every unvisited vertex look for a neighbour in the frontier.
+     * @return the number of edges leaving the new frontier
+     */
+    private long bottomUpStep(int level, long[] blockedEdges) {
+        SearchTrace.Recorder recorder = this.recorder;
+        for (int count = size; count > 0; count--) {
+            if (recorder != null) recorder.settle(ring[head]);
+            Bits.set(frontier, ring[head]);
+            head = (head + 1) % ring.length;
+            size--;
+        }
+        long nextEdges = 0;
+        for (int v = 0; v < n; v++) {
+            if (visitedStamp[v] == stamp) continue;
+            for (int e = graph.firstEdge(v); e < graph.endEdge(v); e++) {
+                int u = graph.target(e);
+                int in = graph.twin(e);
+                if (!Bits.get(frontier, u) || !Bits.isClear(blockedEdges, in)) continue;
+                visitedStamp[v] = stamp;
+                visitedCount++;
+                if (recorder != null) recorder.relax(v);
+                parentEdge[v] = in;
+                dist[v] = level;
+                ring[(head + size) % ring.length] = v;
+                size++;
+                nextEdges += graph.degree(v);
+                break;
+            }
+        }
+        Arrays.fill(frontier, 0L);
+        return nextEdges;
+    }
+
+    /**
+     * Runs two BFS searches, one from each end, until they meet.
+     *
+     * @param source the source vertex index
+     * @param target the target vertex index
+     * @param blockedEdges edges that may not be used, or null
+     * @return true if target is reachable from source
+     */
+    public boolean bidirectional(int source, int target, long[] blockedEdges) {
+        SearchTrace.Recorder recorder = trace == null ? null : trace.begin(source);
+        try {
+            if (recorder != null) recorder.relax(target);
+            return searchBothEnds(source, target, blockedEdges, recorder);
+        } finally {
+            if (recorder != null) recorder.end();
+        }
+    }
+
+    private boolean searchBothEnds(int source, int target, long[] blockedEdges, SearchTrace.Recorder recorder) {
+        nextStamp();
+        meetEdge = -1;
+        visitedCount = 2;
+        visitedStamp[source] = stamp;
+        parentEdge[source] = -1;
+        dist[source] = 0;
+        visitedBackStamp[target] = stamp;
+        parentEdgeBack[target] = -1;
+        distBack[target] = 0;
+        if (source == target) return true;
+
+        int forwardHead = 0, forwardSize = 1, backHead = 0, backSize = 1;
+        ring[0] = source;
+        ringBack[0] = target;
+        int best = Integer.MAX_VALUE;
+
+        while (forwardSize > 0 && backSize > 0) {
+            if (forwardSize <= backSize) {
+                for (int count = forwardSize; count > 0; count--) {
+                    int v = ring[forwardHead];
+                    forwardHead = (forwardHead + 1) % ring.length;
+                    forwardSize--;
+                    if (recorder != null) recorder.settle(v);
+                    for (int e = graph.firstEdge(v); e < graph.endEdge(v); e++) {
+                        int w = graph.target(e);
+                        if (!Bits.isClear(blockedEdges, e)) continue;
+                        if (visitedBackStamp[w] == stamp && dist[v] + 1 + distBack[w] < best) {
+                            best = dist[v] + 1 + distBack[w];
+                            meetEdge = e;
+                        }
+                        if (visitedStamp[w] == stamp) continue;
+                        visitedStamp[w] = stamp;
+                        visitedCount++;
+                        if (recorder != null) recorder.relax(w);
+                        parentEdge[w] = e;
+                        dist[w] = dist[v] + 1;
+                        ring[(forwardHead + forwardSize) % ring.length] = w;
+                        forwardSize++;
+                    }
+                }
+            } else {
+                for (int count = backSize; count > 0; count--) {
+                    int w = ringBack[backHead];
+                    backHead = (backHead + 1) % ringBack.length;
+                    backSize--;
+                    if (recorder != null) recorder.settle(w);
+                    for (int e = graph.firstEdge(w); e < graph.endEdge(w); e++) {
+                        int v = graph.target(e);
+                        int in = graph.twin(e);
+                        if (!Bits.isClear(blockedEdges, in)) continue;
+                        if (visitedStamp[v] == stamp && dist[v] + 1 + distBack[w] < best) {
+                            best = dist[v] + 1 + distBack[w];
+                            meetEdge = in;
+                        }
+                        if (visitedBackStamp[v] == stamp) continue;
+                        visitedBackStamp[v] = stamp;
+                        visitedCount++;
+                        if (recorder != null) recorder.relax(v);
+                        parentEdgeBack[v] = in;
+                        distBack[v] = distBack[w] + 1;
+                        ringBack[(backHead + backSize) % ringBack.length] = v;
+                        backSize++;
+                    }
+                }
+            }
+            if (meetEdge != -1) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Starts a new search by moving to the next stamp; the marks of every earlier search become stale at once.
+     */
+    private void nextStamp() {
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(visitedStamp, 0);
+            Arrays.fill(visitedBackStamp, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * @return the number of vertices the last search() or bidirectional() marked visited, counting both sides
+     */
+    public int getVisitedCount() {
+        return visitedCount;
+    }
+
+    /**
+     * @return the number of hops from the source of the last search() to v, or -1 if v was not reached
+     */
+    public int distance(int v) {
+        return visitedStamp[v] == stamp ? dist[v] : -1;
+    }
+
+    /**
+     * @param target a vertex reached by the last search()
+     * @return the edge ids of the path from the source to target, in order
+     */
+    public int[] edgePath(int target) {
+        int count = dist[target];
+        int[] edges = new int[count];
+        for (int v = target; parentEdge[v] != -1; v = graph.tail(parentEdge[v])) {
+            edges[--count] = parentEdge[v];
+        }
+        return edges;
+    }
+
+    /**
+     * @param target the target of the last successful bidirectional() call
+     * @return the edge ids of the path from the source to target, in order
+     */
+    public int[] bidirectionalEdgePath(int target) {
+        if (meetEdge == -1) return new int[0];
+        ArrayList<Integer> back = new ArrayList<>();
+        for (int w = graph.target(meetEdge); parentEdgeBack[w] != -1; w = graph.target(parentEdgeBack[w])) {
+            back.add(parentEdgeBack[w]);
+        }
+        int[] front = edgePath(graph.tail(meetEdge));
+        int[] edges = Arrays.copyOf(front, front.length + 1 + back.size());
+        edges[front.length] = meetEdge;
+        for (int i = 0; i < back.size(); i++) {
+            edges[front.length + 1 + i] = back.get(i);
+        }
+        return edges;
+    }
+}
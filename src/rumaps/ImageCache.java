@@ -0,0 +1,155 @@
+package rumaps;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.*;
+
+/**
+ * The ImageCache class decodes each image file once for the whole application, so that every MapPanel (one per
+ * network loaded), TileRenderer and RouteRenderer shares the same images:
+ * - load() starts decoding a file on a background thread and returns at once, so the caller can load a network
+ *   meanwhile; later calls for the same file return the same result without decoding it again
+ * - decoded images are converted to the format the display draws fastest (without alpha when every pixel is opaque),
+ *   or to TYPE_INT_RGB / TYPE_INT_ARGB when there is no display
+ * - scaled() returns a copy of a decoded image at another size, made once per size with progressive bilinear
+ *   halving, for drawing zoomed out views without scaling the full image each time
+ *
+ * Images are kept for the lifetime of the application; there are only a few of them.
+ */
+public final class ImageCache {
+    private static final ConcurrentHashMap<String, CompletableFuture<BufferedImage>> images = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<ScaledKey, BufferedImage> scaledImages = new ConcurrentHashMap<>();
+    private static final ExecutorService decoder = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "rumaps-image");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ImageCache() {
+    }
+
+    /**
+     * Starts decoding an image file, unless it has been started before.
+     *
+     * @param path the image file
+     * @return the decoded image when it is ready; null if the file cannot be read, as with a missing image in ImageIcon
+     */
+    public static CompletableFuture<BufferedImage> load(String path) {
+        return images.computeIfAbsent(path, p -> CompletableFuture.supplyAsync(() -> decode(p), decoder));
+    }
+
+    /**
+     * Returns a decoded image, waiting for it to be decoded if needed.
+     *
+     * @param path the image file
+     * @return the image, or null if the file cannot be read
+     */
+    public static BufferedImage get(String path) {
+        return load(path).join();
+    }
+
+    /**
+     * Returns a copy of an image at another size, made on the first call for that size.
+     *
+     * @param image the image, usually one returned by get()
+     * @param width the width of the copy in pixels
+     * @param height the height of the copy in pixels
+     * @return the copy, or the image itself if it already has that size
+     */
+    public static BufferedImage scaled(BufferedImage image, int width, int height) {
+        if (width < 1 || height < 1) throw new IllegalArgumentException("Size must be positive: " + width + "x" + height);
+        if (image.getWidth() == width && image.getHeight() == height) return image;
+        return scaledImages.computeIfAbsent(new ScaledKey(image, width, height), key -> scale(image, width, height));
+    }
+
+    private static BufferedImage decode(String path) {
+        BufferedImage image;
+        try {
+            image = ImageIO.read(new File(path));
+        } catch (IOException e) {
+            image = null;
+        }
+        if (image == null) {
+            System.err.println("Cannot read image " + path);
+            return null;
+        }
+        BufferedImage copy = createImage(image.getWidth(), image.getHeight(), isOpaque(image) ? Transparency.OPAQUE : image.getTransparency());
+        Graphics2D g2d = copy.createGraphics();
+        g2d.setComposite(AlphaComposite.Src);
+        g2d.drawImage(image, 0, 0, null);
+        g2d.dispose();
+        return copy;
+    }
+
+    /**
+     * Halves the image while it is more than twice the size wanted, then scales it to the size, so that every pixel
+     * of the source contributes to the copy.
+     */
+    private static BufferedImage scale(BufferedImage image, int width, int height) {
+        BufferedImage current = image;
+        do {
+            int w = current.getWidth() / 2 >= width ? current.getWidth() / 2 : width;
+            int h = current.getHeight() / 2 >= height ? current.getHeight() / 2 : height;
+            BufferedImage next = createImage(w, h, image.getTransparency());
+            Graphics2D g2d = next.createGraphics();
+            g2d.setComposite(AlphaComposite.Src);
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(current, 0, 0, w, h, null);
+            g2d.dispose();
+            current = next;
+        } while (current.getWidth() != width || current.getHeight() != height);
+        return current;
+    }
+
+    private static boolean isOpaque(BufferedImage image) {
+        if (image.getTransparency() == Transparency.OPAQUE) return true;
+        int[] row = new int[image.getWidth()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, row.length, 1, row, 0, row.length);
+            for (int argb : row) {
+                if (argb >>> 24 != 0xff) return false;
+            }
+        }
+        return true;
+    }
+
+    private static BufferedImage createImage(int width, int height, int transparency) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            GraphicsConfiguration configuration = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+            return configuration.createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height, transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * A source image, compared by identity, and a size.
+     */
+    private static final class ScaledKey {
+        final BufferedImage image;
+        final int width;
+        final int height;
+
+        ScaledKey(BufferedImage image, int width, int height) {
+            this.image = image;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ScaledKey)) return false;
+            ScaledKey other = (ScaledKey) obj;
+            return image == other.image && width == other.width && height == other.height;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(image), width, height);
+        }
+    }
+}
@@ -3,8 +3,13 @@ package rumaps;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The MapPanel class is used by the Driver class to create the main map panel in the application.
@@ -16,6 +21,17 @@ public class MapPanel extends JPanel {
     private final int WIDTH = 720;
     private final int HEIGHT = 677;
 
+    // How far from an intersection, in pixels on each axis, the pointer still hits it
+    private static final int HIT_RADIUS = 5;
+    private static final BasicStroke MARKER_STROKE = new BasicStroke(4.75f);
+
+    // The map is drawn at scale 2^zoomLevel, between these levels
+    public static final int MIN_ZOOM_LEVEL = -6;
+    public static final int MAX_ZOOM_LEVEL = 4;
+    // Zoomed out further than this, only the hovered and selected intersections are marked
+    private static final int MIN_MARKER_LEVEL = -1;
+    public static final int FRAME_RATE = 30;
+
     private final Color backgroundColor = Color.BLACK;
 
     public final Color minimizeIntersectionPathColor = Color.red;
@@ -27,43 +43,99 @@ public class MapPanel extends JPanel {
     private final Color combinedPathColor = new Color(189, 0, 189);
     private final Color hoverCombinedPathColor = new Color(189, 0, 189, 125);
 
+    public final Color[] alternativePathColors = {new Color(0, 160, 0), new Color(255, 140, 0), new Color(0, 170, 170)};
+
     private final Color defaultBlockColor = Color.WHITE;
     private final Color hoverDefaultBlockColor = new Color(210,212,213, 150);
 
     private Driver driver;
+    // The files ImageCache decodes the images from, until they are ready; null once they are, or when the images
+    // were given decoded
     private String[] imagePaths;
+    private boolean waitingForImages;
     private Image satelliteImage;
     private Image overlayImage;
+    private boolean satelliteActivated;
     private double overlayTransparency;
     private boolean networkVisualsActivated;
 
     private List<Block> blocks;
-    private HashSet<Block> highlightedMinimizeIntersectionPath;
+    private HighlightedPath highlightedMinimizeIntersectionPath;
     private boolean highlightedMinimizeIntersectionPathActivated;
-    private HashSet<Block> highlightedFastestPath;
+    private HighlightedPath highlightedFastestPath;
     private boolean highlightedFastestPathActivated;
+    private List<HighlightedPath> highlightedAlternativePaths;
+    private boolean highlightedAlternativePathsActivated;
     private Block highlightedBlock;
 
     private List<Intersection> intersections;
+    // Hit-testing indexes over blocks and intersections, with the stroked hover shape of every block
+    private final SpatialGrid blockGrid = new SpatialGrid();
+    private final SpatialGrid intersectionGrid = new SpatialGrid();
+    private final List<Shape> blockHitShapes = new ArrayList<>();
     private Intersection selectedStartIntersection;
     private Intersection selectedEndIntersection;
     private Intersection highlightedIntersection;
 
+    // Cached layers, each rebuilt only when what it shows changes (null when stale):
+    // - background: the satellite image under the overlay
+    // - network: the background with every block drawn in defaultBlockColor
+    // - intersections: the unselected intersection markers on a transparent image
+    // Hover, selection and route highlights are drawn on top of them on every repaint.
+    private BufferedImage backgroundLayer;
+    private BufferedImage networkLayer;
+    private BufferedImage intersectionLayer;
+    private final HashMap<Float, BasicStroke> strokes = new HashMap<>();
+
+    // Zoom and pan: map point (viewX, viewY) is at the top left corner of the panel. The default view
+    // (level 0 at the origin) is drawn from the layers above; any other view from tiles drawn off the EDT.
+    private int zoomLevel;
+    private double viewX;
+    private double viewY;
+    private TileRenderer tileRenderer;
+    private boolean tilesStale = true;
+    private Point dragStart;
+    private double dragViewX;
+    private double dragViewY;
+
+    // Search frontier overlays, advanced FRAME_RATE times a second by the timer while there are any
+    private final List<SearchFrontier> searchFrontiers = new ArrayList<>();
+    private javax.swing.Timer frontierTimer;
+
+    /**
+     * Creates a panel drawing the images in the files. They are decoded by ImageCache on its own threads, once for
+     * every panel, while the caller goes on (typically to load the network); the panel draws them once they are ready.
+     * @param imagePaths the satellite and overlay image files
+     */
     public MapPanel(Driver driver, String[] imagePaths, double overlayTransparency) {
+        this(driver, (Image) null, (Image) null, overlayTransparency);
+        this.imagePaths = imagePaths;
+        ImageCache.load(imagePaths[0]);
+        ImageCache.load(imagePaths[1]);
+    }
+
+    /**
+     * Creates a panel drawing images that are already decoded, so that several panels can share them.
+     * @param satelliteImage the satellite image, shown unless disableSatellite is called
+     * @param overlayImage the overlay image
+     */
+    public MapPanel(Driver driver, Image satelliteImage, Image overlayImage, double overlayTransparency) {
         this.driver = driver;
         
         setBackground(backgroundColor);
-        this.imagePaths = imagePaths;
-        satelliteImage = new ImageIcon(imagePaths[0]).getImage();
-        overlayImage = new ImageIcon(imagePaths[1]).getImage();
+        this.satelliteImage = satelliteImage;
+        this.overlayImage = overlayImage;
+        satelliteActivated = true;
         this.overlayTransparency = overlayTransparency;
         networkVisualsActivated = true;
         
         blocks = new ArrayList<>();
-        highlightedMinimizeIntersectionPath = new HashSet<>();
+        highlightedMinimizeIntersectionPath = new HighlightedPath();
         highlightedMinimizeIntersectionPathActivated = true;
-        highlightedFastestPath = new HashSet<>();
+        highlightedFastestPath = new HighlightedPath();
         highlightedFastestPathActivated = true;
+        highlightedAlternativePaths = new ArrayList<>();
+        highlightedAlternativePathsActivated = false;
 
         intersections = new ArrayList<>();
         mouseListener();
@@ -75,28 +147,128 @@ public class MapPanel extends JPanel {
 
     /* Map Visuals */
     public void enableSatellite() {
-        satelliteImage = new ImageIcon(imagePaths[0]).getImage();
+        satelliteActivated = true;
+        invalidateBackground();
         repaint();
     }
 
     public void disableSatellite() {
-        satelliteImage = null;
+        satelliteActivated = false;
+        invalidateBackground();
         repaint();
     }
 
     public void changeTransparency(double transparancy) {
         overlayTransparency = transparancy;
+        invalidateBackground();
         repaint();
     }
 
     public void toggleNetworkVisuals(boolean activate) {
         this.networkVisualsActivated = activate;
+        invalidateNetwork();
         repaint();
     } 
 
+    /**
+     * Takes the images from ImageCache once both are decoded. Until then the map is drawn without them and redrawn
+     * when they are ready, so painting never waits for decoding.
+     */
+    private void takeDecodedImages() {
+        if (imagePaths == null) return;
+        CompletableFuture<BufferedImage> satellite = ImageCache.load(imagePaths[0]);
+        CompletableFuture<BufferedImage> overlay = ImageCache.load(imagePaths[1]);
+        if (satellite.isDone() && overlay.isDone()) {
+            satelliteImage = satellite.isCompletedExceptionally() ? null : satellite.join();
+            overlayImage = overlay.isCompletedExceptionally() ? null : overlay.join();
+            imagePaths = null;
+        } else if (!waitingForImages) {
+            waitingForImages = true;
+            CompletableFuture.allOf(satellite, overlay).whenComplete((ignored, e) -> SwingUtilities.invokeLater(() -> {
+                invalidateBackground();
+                repaint();
+            }));
+        }
+    }
+
+    private void invalidateBackground() {
+        backgroundLayer = null;
+        invalidateNetwork();
+    }
+
+    private void invalidateNetwork() {
+        networkLayer = null;
+        tilesStale = true;
+    }
+
+    /* Zoom and Pan */
+    public int getZoomLevel() {
+        return zoomLevel;
+    }
+
+    /**
+     * Zooms in or out by whole levels, keeping the map point under (x, y) in place.
+     * @param levels the number of levels to zoom in by, negative to zoom out
+     * @param x the panel x coordinate to zoom around
+     * @param y the panel y coordinate to zoom around
+     */
+    public void zoom(int levels, int x, int y) {
+        int level = Math.max(MIN_ZOOM_LEVEL, Math.min(MAX_ZOOM_LEVEL, zoomLevel + levels));
+        if (level == zoomLevel) return;
+        double mapX = toMapX(x), mapY = toMapY(y);
+        zoomLevel = level;
+        viewX = mapX - x / scale();
+        viewY = mapY - y / scale();
+        repaint();
+    }
+
+    /**
+     * Moves the view so that map point (x, y) is at the top left corner of the panel.
+     */
+    public void panTo(double x, double y) {
+        viewX = x;
+        viewY = y;
+        repaint();
+    }
+
+    public void resetView() {
+        zoomLevel = 0;
+        viewX = 0;
+        viewY = 0;
+        repaint();
+    }
+
+    private boolean isDefaultView() {
+        return zoomLevel == 0 && pixelOffset(viewX) == 0 && pixelOffset(viewY) == 0;
+    }
+
+    private double scale() {
+        return Math.scalb(1.0, zoomLevel);
+    }
+
+    /**
+     * @return a view coordinate in panel pixels, rounded so that tiles and overlays line up
+     */
+    private long pixelOffset(double view) {
+        return Math.round(view * scale());
+    }
+
+    private double toMapX(int x) {
+        return (x + pixelOffset(viewX)) / scale();
+    }
+
+    private double toMapY(int y) {
+        return (y + pixelOffset(viewY)) / scale();
+    }
+
     /* Block Visuals */
     public void addBlock(Block block) {
+        Shape hitShape = new BasicStroke(Math.max(10, block.getRoadSize() * 2)).createStrokedShape(block.getPath());
+        Rectangle2D bounds = hitShape.getBounds2D();
+        blockGrid.add(blocks.size(), bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+        blockHitShapes.add(hitShape);
         blocks.add(block);
+        invalidateNetwork();
         repaint();
     }
 
@@ -112,24 +284,15 @@ public class MapPanel extends JPanel {
     }
 
     public void highlightMinimizeIntersectionPath(List<Intersection> path) {
-        HashSet<Block> blocksInPath = new HashSet<>();
-        for (int i = 0; i < path.size() - 1; i++) {
-            Intersection current = path.get(i);
-            Intersection next = path.get(i + 1);
-    
-            // Finds the block connecting the current and next intersections
-            Block block = driver.getMaps().getRutgers().adj(driver.getMaps().getRutgers().findIntersection(current.getCoordinate().getX(), current.getCoordinate().getY()));
-            while (block != null) {
-                if ((block.getFirstEndpoint().equals(current) && block.getLastEndpoint().equals(next)) ||
-                    (block.getFirstEndpoint().equals(next) && block.getLastEndpoint().equals(current))) {
-                    blocksInPath.add(block);
-                    break;
-                }
-                block = block.getNext();
-            }
-        }
-    
-        highlightedMinimizeIntersectionPath = blocksInPath;
+        highlightedMinimizeIntersectionPath = highlightedPath(path);
+        repaint();
+    }
+
+    /**
+     * Highlights a route with the blocks it takes, without looking them up.
+     */
+    public void highlightMinimizeIntersectionPath(Route route) {
+        highlightedMinimizeIntersectionPath = highlightedPath(route);
         repaint();
     }
 
@@ -139,23 +302,15 @@ public class MapPanel extends JPanel {
     }
 
     public void highlightedFastestPath (List<Intersection> path) {
-        HashSet<Block> blocksInPath = new HashSet<>();
-        for (int i = 0; i < path.size() - 1; i++) {
-            Intersection current = path.get(i);
-            Intersection next = path.get(i + 1);
-    
-            // Finds the block connecting the current and next intersections
-            Block block = driver.getMaps().getRutgers().adj(driver.getMaps().getRutgers().findIntersection(current.getCoordinate().getX(), current.getCoordinate().getY()));
-            while (block != null) {
-                if ((block.getFirstEndpoint().equals(current) && block.getLastEndpoint().equals(next)) ||
-                    (block.getFirstEndpoint().equals(next) && block.getLastEndpoint().equals(current))) {
-                    blocksInPath.add(block);
-                    break;
-                }
-                block = block.getNext();
-            }
-        }
-        highlightedFastestPath = new HashSet<>(blocksInPath);
+        highlightedFastestPath = highlightedPath(path);
+        repaint();
+    }
+
+    /**
+     * Highlights a route with the blocks it takes, without looking them up.
+     */
+    public void highlightedFastestPath(Route route) {
+        highlightedFastestPath = highlightedPath(route);
         repaint();
     }
 
@@ -164,12 +319,134 @@ public class MapPanel extends JPanel {
         repaint();
     }
 
+    /**
+     * Highlights alternative routes, each in the next color of alternativePathColors.
+     * @param paths the routes as lists of intersections
+     */
+    public void highlightAlternativePaths(List<? extends List<Intersection>> paths) {
+        List<HighlightedPath> blocksInPaths = new ArrayList<>();
+        for (List<Intersection> path : paths) {
+            blocksInPaths.add(highlightedPath(path));
+        }
+        highlightedAlternativePaths = blocksInPaths;
+        repaint();
+    }
+
+    /**
+     * Same as highlightAlternativePaths, for routes with the blocks they take.
+     * @param routes the routes
+     */
+    public void highlightAlternativeRoutes(List<Route> routes) {
+        List<HighlightedPath> blocksInPaths = new ArrayList<>();
+        for (Route route : routes) {
+            blocksInPaths.add(highlightedPath(route));
+        }
+        highlightedAlternativePaths = blocksInPaths;
+        repaint();
+    }
+
+    public void toggleAlternativePaths(boolean activate) {
+        this.highlightedAlternativePathsActivated = activate;
+        repaint();
+    }
+
+    /**
+     * Animates the searches recorded into the traces as overlays in the colors of their paths, replacing any shown.
+     * Pass null for both to stop.
+     *
+     * @param minimizeIntersections the trace minimizeIntersections records into, or null
+     * @param fastestPath the trace fastestPath records into, or null
+     */
+    public void showSearchTraces(SearchTrace minimizeIntersections, SearchTrace fastestPath) {
+        searchFrontiers.clear();
+        if (minimizeIntersections != null) searchFrontiers.add(new SearchFrontier(minimizeIntersections, minimizeIntersectionPathColor));
+        if (fastestPath != null) searchFrontiers.add(new SearchFrontier(fastestPath, fastestPathColor));
+
+        if (searchFrontiers.isEmpty() && frontierTimer != null) {
+            frontierTimer.stop();
+            frontierTimer = null;
+        } else if (!searchFrontiers.isEmpty() && frontierTimer == null) {
+            frontierTimer = new javax.swing.Timer(1000 / FRAME_RATE, e -> advanceSearchFrontiers());
+            frontierTimer.start();
+        }
+        repaint();
+    }
+
+    private void advanceSearchFrontiers() {
+        if (driver == null) return;
+        RoutingGraph graph = driver.getMaps().getRoutingGraph();
+        boolean changed = false;
+        for (SearchFrontier frontier : searchFrontiers) {
+            changed |= frontier.advance(graph);
+        }
+        if (changed) repaint();
+    }
+
+    /**
+     * Finds the blocks connecting each pair of consecutive intersections of a path.
+     */
+    private HighlightedPath highlightedPath(List<Intersection> path) {
+        HighlightedPath blocksInPath = new HighlightedPath();
+        if (path.size() < 2) return blocksInPath;
+        RoutingGraph graph = driver.getMaps().getRoutingGraph();
+        for (int i = 0; i < path.size() - 1; i++) {
+            int current = graph.indexOf(path.get(i));
+            int next = graph.indexOf(path.get(i + 1));
+            if (current == -1 || next == -1) continue;
+            int e = graph.findEdge(current, next);
+            if (e != -1) blocksInPath.add(graph.block(e));
+        }
+        return blocksInPath;
+    }
+
+    private static HighlightedPath highlightedPath(Route route) {
+        HighlightedPath blocksInPath = new HighlightedPath();
+        for (int i = 0; i < route.getHops(); i++) {
+            blocksInPath.add(route.getBlock(i));
+        }
+        return blocksInPath;
+    }
+
+    /**
+     * @return true if the block is drawn by a route pass rather than in defaultBlockColor
+     */
+    private boolean isOnActivePath(Block block) {
+        return (highlightedMinimizeIntersectionPathActivated && highlightedMinimizeIntersectionPath.contains(block)) ||
+               (highlightedFastestPathActivated && highlightedFastestPath.contains(block));
+    }
+
+    private BasicStroke stroke(float width) {
+        return strokes.computeIfAbsent(width, BasicStroke::new);
+    }
+
     /* Intersection Visuals */
     public void addIntersection(Intersection intersection) {
-        intersections.add(intersection);;
+        int x = intersection.getCoordinate().getX(), y = intersection.getCoordinate().getY();
+        intersectionGrid.add(intersections.size(), x - HIT_RADIUS, y - HIT_RADIUS, x + HIT_RADIUS, y + HIT_RADIUS);
+        intersections.add(intersection);
+        intersectionLayer = null;
         repaint();
     }
 
+    /**
+     * @return the first block whose hover shape contains the point, or null
+     */
+    private Block blockAt(double x, double y) {
+        int index = blockGrid.first(x, y, i -> blockHitShapes.get(i).contains(x, y));
+        return index == -1 ? null : blocks.get(index);
+    }
+
+    /**
+     * @return the first intersection within HIT_RADIUS pixels of the point on both axes, or null
+     */
+    private Intersection intersectionAt(double x, double y) {
+        int index = intersectionGrid.first(x, y, i -> {
+            Coordinate c = intersections.get(i).getCoordinate();
+            return Math.abs(c.getX() - x) <= HIT_RADIUS && Math.abs(c.getY() - y) <= HIT_RADIUS;
+        });
+        return index == -1 ? null : intersections.get(index);
+    }
+
     public void highlightIntersection(Intersection intersection) {
         highlightedIntersection = intersection;
         repaint();
@@ -200,57 +477,57 @@ public class MapPanel extends JPanel {
         this.addMouseMotionListener(new MouseMotionAdapter() {
             @Override
             public void mouseMoved(MouseEvent e) {
-                final int x = e.getX();
-                final int y = e.getY();
-                Block newHighlightedBlock = null;
-                for (Block block : blocks) {
-                    BasicStroke stroke = new BasicStroke(Math.max(10, block.getRoadSize() * 2));
-                    Shape strokedShape = stroke.createStrokedShape(block.getPath());
-                    
-                    if (strokedShape.contains(x, y)) {
-                        newHighlightedBlock = block;
-                        break;
-                    }
-                }
+                final double x = toMapX(e.getX());
+                final double y = toMapY(e.getY());
+                Block newHighlightedBlock = blockAt(x, y);
                 if (newHighlightedBlock != highlightedBlock) {
                     highlightBlock(newHighlightedBlock);
                 }
 
-                Intersection newHighlightedIntersection = null;
-                for (Intersection intersection : intersections) {
-                    if (Math.abs(intersection.getCoordinate().getX() - x) <= 5 &&
-                        Math.abs(intersection.getCoordinate().getY() - y) <= 5) {
-                        newHighlightedIntersection = intersection;
-                        break;
-                    }
-                }
-
+                Intersection newHighlightedIntersection = intersectionAt(x, y);
                 if (newHighlightedIntersection != highlightedIntersection) {
                     highlightIntersection(newHighlightedIntersection);
                 }
             }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragStart == null) return;
+                panTo(dragViewX - (e.getX() - dragStart.x) / scale(), dragViewY - (e.getY() - dragStart.y) / scale());
+            }
         });
 
+        this.addMouseWheelListener(e -> zoom(-e.getWheelRotation(), e.getX(), e.getY()));
+
         this.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (e.getButton() == MouseEvent.BUTTON1) {
+                    dragStart = e.getPoint();
+                    dragViewX = viewX;
+                    dragViewY = viewY;
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (e.getButton() == MouseEvent.BUTTON1) dragStart = null;
+            }
+
             @Override
             public void mouseClicked(MouseEvent e) {
                 if (e.getButton() == MouseEvent.BUTTON1) {
                     // Left mouse button was clicked
-                    int x = e.getX();
-                    int y = e.getY();
-
-                    Intersection newSelectedIntersection = null;
-                    for (Intersection intersection : intersections) {
-                        if (Math.abs(intersection.getCoordinate().getX() - x) <= 5 &&
-                            Math.abs(intersection.getCoordinate().getY() - y) <= 5) {
-                            newSelectedIntersection = intersection;
-                            break;
-                        }
-                    }
+                    double x = toMapX(e.getX());
+                    double y = toMapY(e.getY());
 
+                    Intersection newSelectedIntersection = intersectionAt(x, y);
                     if (newSelectedIntersection != null) {
                         selectIntersection(newSelectedIntersection);
                     }
+                } else if (e.getButton() == MouseEvent.BUTTON2) {
+                    // Middle mouse button was clicked
+                    resetView();
                 } else if (e.getButton() == MouseEvent.BUTTON3) {
                     // Right mouse button was clicked
                     selectIntersection(null);
@@ -261,91 +538,314 @@ public class MapPanel extends JPanel {
 
     @Override
     protected void paintComponent(Graphics g) {
+        Object paint = RoutingEvents.beginPaint();
+        int blocksDrawn = 0, intersectionsDrawn = 0;
         super.paintComponent(g);
-        g.drawImage(satelliteImage, 0, 0, WIDTH, HEIGHT, this);
-        
-        Graphics2D g2d = (Graphics2D) g;
-        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) overlayTransparency));
-        g2d.drawImage(overlayImage, 0, 0, WIDTH, HEIGHT, this);
-        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f));
-        
-        if (networkVisualsActivated) {
-            for (Block block : blocks) {
-                if ((highlightedMinimizeIntersectionPathActivated && highlightedMinimizeIntersectionPath.contains(block)) ||
-                    (highlightedFastestPathActivated && highlightedFastestPath.contains(block))) 
-                    continue;
+        takeDecodedImages();
+        Graphics2D g2d = (Graphics2D) g.create();
+        boolean defaultView = isDefaultView();
+        if (defaultView) {
+            g2d.drawImage(networkLayer(), 0, 0, null);
+
+            // The network layer has the hovered block in defaultBlockColor; redraw what the default pass leaves under it
+            if (networkVisualsActivated && highlightedBlock != null) {
+                blocksDrawn += drawUnderHighlightedBlock(g2d);
+            }
+        } else {
+            drawTiles(g2d);
+            g2d.translate(-pixelOffset(viewX), -pixelOffset(viewY));
+            g2d.scale(scale(), scale());
+        }
 
-                g2d.setStroke(new BasicStroke(block.getRoadSize()));
-                if (block.equals(highlightedBlock)) {
-                    g2d.setColor(hoverDefaultBlockColor);     
-                } else {
-                    g2d.setColor(defaultBlockColor);
+        if (highlightedAlternativePathsActivated) {
+            // Drawn in reverse so the better alternatives end up on top
+            for (int i = highlightedAlternativePaths.size() - 1; i >= 0; i--) {
+                Color color = alternativePathColors[i % alternativePathColors.length];
+                for (Block block : highlightedAlternativePaths.get(i).blocks) {
+                    if (block == highlightedBlock)
+                        g2d.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), 125));
+                    else
+                        g2d.setColor(color);
+                    g2d.setStroke(stroke(block.getRoadSize()));
+                    g2d.draw(block.getPath());
+                    blocksDrawn++;
                 }
-                g2d.draw(block.getPath());
             }
         }
 
         if (highlightedMinimizeIntersectionPathActivated) {
-            for (Block block : highlightedMinimizeIntersectionPath) {
+            for (Block block : highlightedMinimizeIntersectionPath.blocks) {
                 if (highlightedFastestPathActivated && highlightedFastestPath.contains(block)) 
                     continue;
-                if (block.equals(highlightedBlock))
+                if (block == highlightedBlock)
                     g2d.setColor(hoverMinimizeIntersectionPathColor);
                 else 
                     g2d.setColor(minimizeIntersectionPathColor);
-                g2d.setStroke(new BasicStroke(block.getRoadSize()));
+                g2d.setStroke(stroke(block.getRoadSize()));
                 g2d.draw(block.getPath());
+                blocksDrawn++;
             }
         }
 
         if (highlightedFastestPathActivated) {
-            for (Block block : highlightedFastestPath) {
+            for (Block block : highlightedFastestPath.blocks) {
                 if (highlightedMinimizeIntersectionPathActivated && highlightedMinimizeIntersectionPath.contains(block)) { 
-                    if (block.equals(highlightedBlock))
+                    if (block == highlightedBlock)
                         g2d.setColor(hoverCombinedPathColor);
                     else
                         g2d.setColor(combinedPathColor);
-                } else if (block.equals(highlightedBlock))
+                } else if (block == highlightedBlock)
                     g2d.setColor(hoverFastestPathColor);
                 else 
                     g2d.setColor(fastestPathColor);
-                g2d.setStroke(new BasicStroke(block.getRoadSize()));
+                g2d.setStroke(stroke(block.getRoadSize()));
                 g2d.draw(block.getPath());
+                blocksDrawn++;
             }
         }
         if (networkVisualsActivated && highlightedBlock != null) {
-            g2d.setStroke(new BasicStroke(highlightedBlock.getRoadSize()));
+            g2d.setStroke(stroke(highlightedBlock.getRoadSize()));
             g2d.setColor(hoverDefaultBlockColor);
             g2d.draw(highlightedBlock.getPath());
+            blocksDrawn++;
         }
-        // Separate from first networkVisualsActivated if clause so that intersection points lie on top of the blocks
-        if (networkVisualsActivated) {
-            for (Intersection intersection : intersections) {
-                g2d.setColor(new Color(255, 255, 255, 210));
-                g2d.fillOval(intersection.getCoordinate().getX() - 5, intersection.getCoordinate().getY() - 5, 10, 10);
-                if (intersection.equals(highlightedIntersection)) {
-                    if (selectedStartIntersection == intersection || selectedEndIntersection == intersection)
-                        g2d.setColor(new Color(15, 83, 255, 150));            
-                    else 
-                        g2d.setColor(new Color(0,0,0, 100));
-                } else if (selectedStartIntersection == intersection || selectedEndIntersection == intersection) {
-                    g2d.setColor(new Color(15, 83, 255));
-                    g2d.fillOval(intersection.getCoordinate().getX() - 4, intersection.getCoordinate().getY() - 4, 8, 8);
-                    continue;
-                } else {
-                    g2d.setColor(Color.BLACK);
+        // Drawn after the routes so that intersection points lie on top of the blocks
+        if (networkVisualsActivated && !defaultView) {
+            intersectionsDrawn = drawVisibleIntersections(g2d);
+        } else if (networkVisualsActivated) {
+            List<Intersection> marked = markedIntersections();
+            Graphics2D layer = (Graphics2D) g2d.create();
+            if (!marked.isEmpty()) {
+                // Leave holes in the layer where the marked intersections are drawn in their own colors
+                Area clip = new Area(new Rectangle(0, 0, Math.max(WIDTH, getWidth()), Math.max(HEIGHT, getHeight())));
+                for (Intersection intersection : marked) {
+                    clip.subtract(new Area(new Ellipse2D.Double(intersection.getCoordinate().getX() - 5, intersection.getCoordinate().getY() - 5, 10, 10)));
+                }
+                layer.clip(clip);
+            }
+            layer.drawImage(intersectionLayer(), 0, 0, null);
+            layer.dispose();
+            drawMarkedIntersections(g2d, marked);
+            intersectionsDrawn = marked.size();
+        }
+        // On top of the intersection markers, which would hide the vertices the searches explore
+        if (!searchFrontiers.isEmpty() && driver != null) {
+            RoutingGraph graph = driver.getMaps().getRoutingGraph();
+            for (SearchFrontier frontier : searchFrontiers) {
+                frontier.draw(g2d, graph);
+            }
+        }
+        g2d.dispose();
+        RoutingEvents.endPaint(paint, blocksDrawn, intersectionsDrawn);
+    }
+
+    /**
+     * Draws the tiles covering the panel at the current zoom level. A tile that is not ready yet is stood in for
+     * by the enlarged quarter of the tile a level below, when that one is cached.
+     */
+    private void drawTiles(Graphics2D g2d) {
+        if (tileRenderer == null) tileRenderer = new TileRenderer(this::repaint);
+        if (tilesStale) {
+            tileRenderer.setContent(satelliteActivated ? satelliteImage : null, overlayImage, overlayTransparency, WIDTH, HEIGHT, getBackground(),
+                networkVisualsActivated ? blocks : null, defaultBlockColor);
+            tilesStale = false;
+        }
+        int size = TileRenderer.TILE_SIZE;
+        long offsetX = pixelOffset(viewX), offsetY = pixelOffset(viewY);
+        int firstColumn = (int) Math.floorDiv(offsetX, size), lastColumn = (int) Math.floorDiv(offsetX + getWidth(), size);
+        int firstRow = (int) Math.floorDiv(offsetY, size), lastRow = (int) Math.floorDiv(offsetY + getHeight(), size);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int x = (int) (column * (long) size - offsetX), y = (int) (row * (long) size - offsetY);
+                tileRenderer.drawTile(g2d, zoomLevel, column, row, x, y);
+            }
+        }
+    }
+
+    /**
+     * Draws the markers of the intersections in view, on a graphics context in map coordinates.
+     * @return the number of markers drawn
+     */
+    private int drawVisibleIntersections(Graphics2D g2d) {
+        List<Intersection> marked = markedIntersections();
+        int drawn = marked.size();
+        if (zoomLevel >= MIN_MARKER_LEVEL) {
+            for (int i : intersectionGrid.query(toMapX(0), toMapY(0), toMapX(getWidth()), toMapY(getHeight()))) {
+                Intersection intersection = intersections.get(i);
+                if (marked.contains(intersection)) continue;
+                drawIntersection(g2d, intersection, false, false);
+                drawn++;
+            }
+        }
+        drawMarkedIntersections(g2d, marked);
+        return drawn;
+    }
+
+    /**
+     * @return the hovered and selected intersections, without duplicates
+     */
+    private List<Intersection> markedIntersections() {
+        List<Intersection> marked = new ArrayList<>(3);
+        for (Intersection intersection : new Intersection[] {highlightedIntersection, selectedStartIntersection, selectedEndIntersection}) {
+            if (intersection != null && !marked.contains(intersection)) marked.add(intersection);
+        }
+        return marked;
+    }
+
+    private void drawMarkedIntersections(Graphics2D g2d, List<Intersection> marked) {
+        for (Intersection intersection : marked) {
+            drawIntersection(g2d, intersection, intersection.equals(highlightedIntersection),
+                selectedStartIntersection == intersection || selectedEndIntersection == intersection);
+        }
+    }
+
+    /**
+     * Redraws, clipped to the highlighted block, the background and the blocks the default pass draws there, in
+     * list order with the highlighted block in hoverDefaultBlockColor.
+     * @return the number of blocks drawn
+     */
+    private int drawUnderHighlightedBlock(Graphics2D g2d) {
+        // A pixel wider on each side than the block, since drawing adjusts strokes to the pixel grid
+        Shape shape = stroke(highlightedBlock.getRoadSize() + 2).createStrokedShape(highlightedBlock.getPath());
+        Rectangle2D bounds = shape.getBounds2D();
+        Graphics2D clipped = (Graphics2D) g2d.create();
+        clipped.clip(shape);
+        clipped.drawImage(backgroundLayer(), 0, 0, null);
+        int drawn = 0;
+        for (int i : blockGrid.query(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY())) {
+            Block block = blocks.get(i);
+            if (isOnActivePath(block)) continue;
+            clipped.setStroke(stroke(block.getRoadSize()));
+            clipped.setColor(block == highlightedBlock ? hoverDefaultBlockColor : defaultBlockColor);
+            clipped.draw(block.getPath());
+            drawn++;
+        }
+        clipped.dispose();
+        return drawn;
+    }
+
+    private void drawIntersection(Graphics2D g2d, Intersection intersection, boolean highlighted, boolean selected) {
+        int x = intersection.getCoordinate().getX(), y = intersection.getCoordinate().getY();
+        // Java2D fills small ovals slightly differently under thin strokes; markers have always been filled
+        // right after the blocks, under a road stroke
+        g2d.setStroke(MARKER_STROKE);
+        g2d.setColor(new Color(255, 255, 255, 210));
+        g2d.fillOval(x - 5, y - 5, 10, 10);
+        if (highlighted) {
+            if (selected)
+                g2d.setColor(new Color(15, 83, 255, 150));            
+            else 
+                g2d.setColor(new Color(0,0,0, 100));
+        } else if (selected) {
+            g2d.setColor(new Color(15, 83, 255));
+            g2d.fillOval(x - 4, y - 4, 8, 8);
+            return;
+        } else {
+            g2d.setColor(Color.BLACK);
+        }
+        g2d.fillOval(x - 4, y - 4, 8, 8);
+        g2d.setColor(Color.WHITE);
+        g2d.fillOval(x - 1, y - 1, 2, 2);
+    }
+
+    /* Cached layers */
+    private BufferedImage backgroundLayer() {
+        if (!covers(backgroundLayer)) {
+            BufferedImage layer = createLayer(false);
+            Graphics2D g2d = layer.createGraphics();
+            g2d.setColor(getBackground());
+            g2d.fillRect(0, 0, layer.getWidth(), layer.getHeight());
+            if (satelliteActivated) g2d.drawImage(satelliteImage, 0, 0, WIDTH, HEIGHT, this);
+            g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) overlayTransparency));
+            g2d.drawImage(overlayImage, 0, 0, WIDTH, HEIGHT, this);
+            g2d.dispose();
+            backgroundLayer = layer;
+        }
+        return backgroundLayer;
+    }
+
+    private BufferedImage networkLayer() {
+        if (!covers(networkLayer)) {
+            BufferedImage layer = createLayer(false);
+            Graphics2D g2d = layer.createGraphics();
+            g2d.drawImage(backgroundLayer(), 0, 0, null);
+            if (networkVisualsActivated) {
+                g2d.setColor(defaultBlockColor);
+                for (Block block : blocks) {
+                    g2d.setStroke(stroke(block.getRoadSize()));
+                    g2d.draw(block.getPath());
                 }
-                g2d.fillOval(intersection.getCoordinate().getX() - 4, intersection.getCoordinate().getY() - 4, 8, 8);
-                g2d.setColor(Color.WHITE);
-                g2d.fillOval(intersection.getCoordinate().getX() - 1, intersection.getCoordinate().getY() - 1, 2, 2);
             }
+            g2d.dispose();
+            networkLayer = layer;
+        }
+        return networkLayer;
+    }
+
+    private BufferedImage intersectionLayer() {
+        if (!covers(intersectionLayer)) {
+            BufferedImage layer = createLayer(true);
+            Graphics2D g2d = layer.createGraphics();
+            for (Intersection intersection : intersections) {
+                drawIntersection(g2d, intersection, false, false);
+            }
+            g2d.dispose();
+            intersectionLayer = layer;
         }
+        return intersectionLayer;
+    }
 
+    /**
+     * @return true if the layer exists and is at least as large as the panel
+     */
+    private boolean covers(BufferedImage layer) {
+        return layer != null && layer.getWidth() >= getWidth() && layer.getHeight() >= getHeight();
+    }
 
+    private BufferedImage createLayer(boolean transparent) {
+        int width = Math.max(WIDTH, getWidth());
+        int height = Math.max(HEIGHT, getHeight());
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        if (configuration != null) {
+            return configuration.createCompatibleImage(width, height, transparent ? Transparency.TRANSLUCENT : Transparency.OPAQUE);
+        }
+        return new BufferedImage(width, height, transparent ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
     }
 
     @Override
     public Dimension getPreferredSize() {
         return new Dimension(WIDTH, HEIGHT);
     }
+
+    /**
+     * Stops the tile workers when the panel is taken off screen, as when the Driver switches to another map. They
+     * are started again by the next zoomed paint if the panel is shown again.
+     */
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        if (tileRenderer != null) {
+            tileRenderer.shutdown();
+            tileRenderer = null;
+            tilesStale = true;
+        }
+    }
+
+    /**
+     * The blocks of a highlighted route in path order, compared by identity rather than Block.equals, which hashes
+     * whole paths. The two copies of a block have independent random traffic factors, so equals never matched
+     * across them anyway.
+     */
+    private static final class HighlightedPath {
+        final List<Block> blocks = new ArrayList<>();
+        private final Set<Block> members = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        void add(Block block) {
+            if (members.add(block)) blocks.add(block);
+        }
+
+        boolean contains(Block block) {
+            return members.contains(block);
+        }
+    }
 }
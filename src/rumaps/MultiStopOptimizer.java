@@ -0,0 +1,242 @@
+package rumaps;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * The MultiStopOptimizer class finds a fast order in which to visit a list of stops (a traveling salesman problem
+ * over intersections, with block traffic as the cost) and returns the stitched route.
+ *
+ * 1. The stop-to-stop cost matrix is built with one one-to-many fastest path search per stop, run in parallel on the
+ *    common fork-join pool with one search engine per worker thread. Costs are not symmetric, since the two
+ *    directions of a block have different traffic.
+ * 2. Up to EXACT_LIMIT stops (or the limit given to the constructor), the order is solved exactly with the Held-Karp dynamic program.
+ *    Beyond that, a nearest neighbour tour is improved with 2-opt and Or-opt moves until no move helps.
+ * 3. The legs of the chosen order are searched again point to point and joined into one path.
+ *
+ * The first stop is always the starting point. The route either ends at any stop or returns to the first one.
+ */
+public class MultiStopOptimizer {
+    public static final int EXACT_LIMIT = 12;
+
+    private final RoutingGraph graph;
+    private final int exactLimit;
+
+    public MultiStopOptimizer(RoutingGraph graph) {
+        this(graph, EXACT_LIMIT);
+    }
+
+    /**
+     * @param graph the graph to route on
+     * @param exactLimit the most stops whose order is solved exactly; 0 always uses the heuristic
+     */
+    public MultiStopOptimizer(RoutingGraph graph, int exactLimit) {
+        if (exactLimit < 0 || exactLimit > 16) throw new IllegalArgumentException("Exact limit must be from 0 to 16: " + exactLimit);
+        this.graph = graph;
+        this.exactLimit = exactLimit;
+    }
+
+    /**
+     * Finds a fast route starting at the first stop and visiting every other stop.
+     *
+     * @param stops the stops to visit, the first one being the starting point
+     * @param returnToStart true if the route has to end back at the first stop
+     * @return the route
+     * @throws IllegalArgumentException if a stop is not in the network or some stop cannot be reached from another
+     */
+    public MultiStopRoute optimize(List<Intersection> stops, boolean returnToStart) {
+        int n = stops.size();
+        int[] vertices = new int[n];
+        for (int i = 0; i < n; i++) {
+            vertices[i] = graph.indexOf(stops.get(i));
+            if (vertices[i] == -1) throw new IllegalArgumentException("Stop is not in the network: " + stops.get(i));
+        }
+        if (n == 0) return new MultiStopRoute(new ArrayList<>(), new ArrayList<>(), 0.0, 0.0);
+
+        double[][] cost = costMatrix(vertices);
+        int[] order = n <= exactLimit ? heldKarp(cost, returnToStart) : improve(nearestNeighbour(cost), cost, returnToStart);
+        return stitch(stops, vertices, order, returnToStart);
+    }
+
+    /**
+     * @return cost[i][j], the least traffic from stop i to stop j
+     */
+    double[][] costMatrix(int[] vertices) {
+        int n = vertices.length;
+        double[][] cost = new double[n][n];
+        ThreadLocal<FastestPathEngine> engines = ThreadLocal.withInitial(() -> new FastestPathEngine(graph));
+        IntStream.range(0, n).parallel().forEach(i -> {
+            FastestPathEngine engine = engines.get();
+            engine.search(vertices[i], -1, null, null, null, null);
+            for (int j = 0; j < n; j++) {
+                cost[i][j] = engine.distance(vertices[j]);
+                if (cost[i][j] == Double.POSITIVE_INFINITY) {
+                    throw new IllegalArgumentException("Stop " + graph.intersection(vertices[j]) + " cannot be reached from " + graph.intersection(vertices[i]));
+                }
+            }
+        });
+        return cost;
+    }
+
+    /**
+     * Solves the order exactly: best[mask][j] is the least cost of a route from stop 0 visiting the stops in mask and ending at j.
+     */
+    static int[] heldKarp(double[][] cost, boolean returnToStart) {
+        int n = cost.length;
+        if (n == 1) return new int[] {0};
+        int full = 1 << n;
+        double[][] best = new double[full][n];
+        int[][] previous = new int[full][n];
+        for (double[] row : best) Arrays.fill(row, Double.POSITIVE_INFINITY);
+        best[1][0] = 0.0;
+
+        for (int mask = 1; mask < full; mask += 2) {
+            for (int j = 0; j < n; j++) {
+                if (best[mask][j] == Double.POSITIVE_INFINITY) continue;
+                for (int k = 1; k < n; k++) {
+                    if ((mask & (1 << k)) != 0) continue;
+                    int next = mask | (1 << k);
+                    double c = best[mask][j] + cost[j][k];
+                    if (c < best[next][k]) {
+                        best[next][k] = c;
+                        previous[next][k] = j;
+                    }
+                }
+            }
+        }
+
+        int last = 1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int j = 1; j < n; j++) {
+            double c = best[full - 1][j] + (returnToStart ? cost[j][0] : 0.0);
+            if (c < bestCost) {
+                bestCost = c;
+                last = j;
+            }
+        }
+
+        int[] order = new int[n];
+        int mask = full - 1;
+        for (int i = n - 1; i > 0; i--) {
+            order[i] = last;
+            int before = previous[mask][last];
+            mask &= ~(1 << last);
+            last = before;
+        }
+        order[0] = 0;
+        return order;
+    }
+
+    static int[] nearestNeighbour(double[][] cost) {
+        int n = cost.length;
+        int[] order = new int[n];
+        boolean[] used = new boolean[n];
+        used[0] = true;
+        for (int i = 1; i < n; i++) {
+            int from = order[i - 1];
+            int next = -1;
+            for (int j = 1; j < n; j++) {
+                if (!used[j] && (next == -1 || cost[from][j] < cost[from][next])) next = j;
+            }
+            order[i] = next;
+            used[next] = true;
+        }
+        return order;
+    }
+
+    /**
+     * Applies improving 2-opt (reverse a segment) and Or-opt (move a segment of 1 to 3 stops) moves until none is left.
+     * Costs are asymmetric, so every move is priced by recomputing the cost of the affected stretch.
+     */
+    static int[] improve(int[] order, double[][] cost, boolean returnToStart) {
+        int n = order.length;
+        double current = tourCost(order, cost, returnToStart);
+        int[] candidate = new int[n];
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+
+            // 2-opt: reverse order[i..j], the first stop stays in place
+            for (int i = 1; i < n - 1; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    System.arraycopy(order, 0, candidate, 0, n);
+                    for (int a = i, b = j; a < b; a++, b--) {
+                        int tmp = candidate[a];
+                        candidate[a] = candidate[b];
+                        candidate[b] = tmp;
+                    }
+                    double c = tourCost(candidate, cost, returnToStart);
+                    if (c < current - 1e-9) {
+                        System.arraycopy(candidate, 0, order, 0, n);
+                        current = c;
+                        improved = true;
+                    }
+                }
+            }
+
+            // Or-opt: move order[i..i+length-1] to another position
+            for (int length = 1; length <= 3; length++) {
+                for (int i = 1; i + length <= n; i++) {
+                    for (int to = 1; to <= n - length; to++) {
+                        if (to == i) continue;
+                        moveSegment(order, candidate, i, length, to);
+                        double c = tourCost(candidate, cost, returnToStart);
+                        if (c < current - 1e-9) {
+                            System.arraycopy(candidate, 0, order, 0, n);
+                            current = c;
+                            improved = true;
+                        }
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Writes into result the order with the segment order[from..from+length-1] removed and reinserted so it starts at index to.
+     */
+    private static void moveSegment(int[] order, int[] result, int from, int length, int to) {
+        int n = order.length;
+        int[] rest = new int[n - length];
+        int r = 0;
+        for (int i = 0; i < n; i++) {
+            if (i < from || i >= from + length) rest[r++] = order[i];
+        }
+        System.arraycopy(rest, 0, result, 0, to);
+        System.arraycopy(order, from, result, to, length);
+        System.arraycopy(rest, to, result, to + length, n - length - to);
+    }
+
+    static double tourCost(int[] order, double[][] cost, boolean returnToStart) {
+        double total = 0.0;
+        for (int i = 0; i < order.length - 1; i++) {
+            total += cost[order[i]][order[i + 1]];
+        }
+        if (returnToStart && order.length > 1) total += cost[order[order.length - 1]][order[0]];
+        return total;
+    }
+
+    private MultiStopRoute stitch(List<Intersection> stops, int[] vertices, int[] order, boolean returnToStart) {
+        FastestPathEngine engine = new FastestPathEngine(graph);
+        ArrayList<Intersection> orderedStops = new ArrayList<>();
+        ArrayList<Intersection> path = new ArrayList<>();
+        path.add(graph.intersection(vertices[order[0]]));
+        double length = 0.0, traffic = 0.0;
+
+        int legs = returnToStart && order.length > 1 ? order.length : order.length - 1;
+        orderedStops.add(stops.get(order[0]));
+        for (int i = 0; i < legs; i++) {
+            int from = vertices[order[i]];
+            int to = vertices[order[(i + 1) % order.length]];
+            if (i + 1 < order.length) orderedStops.add(stops.get(order[i + 1]));
+            engine.search(from, to, null, null, null, null);
+            for (int e : engine.edgePath(to)) {
+                path.add(graph.intersection(graph.target(e)));
+                length += graph.length(e);
+                traffic += graph.traffic(e);
+            }
+        }
+        return new MultiStopRoute(orderedStops, path, length, traffic);
+    }
+}
@@ -0,0 +1,47 @@
+package rumaps;
+
+import java.util.*;
+
+/**
+ * The MultiStopRoute class is the result of a MultiStopOptimizer run:
+ * - stops - the stops in the order they are visited
+ * - path - the stitched route through every stop, as consecutive intersections
+ * - length, traffic - totals over the blocks of the stitched route
+ */
+public class MultiStopRoute {
+    private final ArrayList<Intersection> stops;
+    private final ArrayList<Intersection> path;
+    private final double length;
+    private final double traffic;
+
+    public MultiStopRoute(ArrayList<Intersection> stops, ArrayList<Intersection> path, double length, double traffic) {
+        this.stops = stops;
+        this.path = path;
+        this.length = length;
+        this.traffic = traffic;
+    }
+
+    public ArrayList<Intersection> getStops() {
+        return stops;
+    }
+
+    public ArrayList<Intersection> getPath() {
+        return path;
+    }
+
+    public double getLength() {
+        return length;
+    }
+
+    public double getTraffic() {
+        return traffic;
+    }
+
+    /**
+     * Returns the same totals as RUMaps.pathInformation(getPath()) without walking the path again.
+     * @return a double array containing the total length, average experienced traffic factor, and total traffic (in that order)
+     */
+    public double[] getInformation() {
+        return new double[] {length, traffic / length, traffic};
+    }
+}
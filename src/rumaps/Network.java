@@ -1,22 +1,34 @@
 package rumaps;
 
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 public class Network {
     // Stores vertices
     private Intersection[] intersections;
     // Stores edges: adj[i] refers to the edges of vertex in intersections[i]
     private Block[] adj; 
     private int nextIndex;
+    // Incremented on every structural change so cached views (RoutingGraph) can detect staleness
+    private long modCount;
+    // Index of every intersection added through addIntersection/setIntersections, keyed by packed coordinate
+    private HashMap<Long, Integer> indexByCoordinate;
+    // Connected components, kept up to date as edges are added
+    private ConnectedComponents components;
+    // Bumped whenever blocks are added or replaced, or the length, traffic factor or traffic of one of them is set
+    private final AtomicLong trafficEpoch = new AtomicLong();
 
     private MapPanel mapPanel;
 
     public Network(int size) {
         intersections = new Intersection[size];
         adj = new Block[size];
+        indexByCoordinate = new HashMap<>(size * 2);
+        components = new ConnectedComponents(size);
     }
 
     public Network(int size, MapPanel mapPanel) {
-        intersections = new Intersection[size];
-        adj = new Block[size];
+        this(size);
         this.mapPanel = mapPanel;
     }
 
@@ -30,12 +42,16 @@ public class Network {
     }
 
     /**
-     * Finds the index of an intersection in the intersections array.
+     * Finds the index of an intersection in the intersections array, in constant time for every intersection added
+     * through addIntersection or setIntersections.
      * @param x the x-coordinate
      * @param y the y-coordinate
      * @return the intersection index or -1 if nonexistent
      */
     public int findIntersection(int x, int y) {
+        int index = findIndexedIntersection(x, y);
+        if (index != -1) return index;
+        // getIntersections() hands out the array itself, so an intersection may have been written straight into it
         for (int i = 0; i < intersections.length; i++) {
             if (intersections[i] != null && intersections[i].getCoordinate().getX() == x && intersections[i].getCoordinate().getY() == y) {
                 return i;
@@ -44,6 +60,40 @@ public class Network {
         return -1; // Not found
     }
 
+    /**
+     * Finds the index of an intersection from the coordinate index alone, without scanning the array for
+     * intersections written straight into it. For loading a network through addIntersection, which asks for many
+     * coordinates that are not there yet.
+     * @param c the coordinate which may be stored in an intersection
+     * @return the intersection index or -1 if it was not added through this network
+     */
+    int findIndexedIntersection(Coordinate c) {
+        return findIndexedIntersection(c.getX(), c.getY());
+    }
+
+    private int findIndexedIntersection(int x, int y) {
+        Integer index = indexByCoordinate.get(key(x, y));
+        if (index != null && intersections[index] != null
+                && intersections[index].getCoordinate().getX() == x && intersections[index].getCoordinate().getY() == y) {
+            return index;
+        }
+        return -1;
+    }
+
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    private void reindex() {
+        indexByCoordinate = new HashMap<>(intersections.length * 2);
+        for (int i = 0; i < intersections.length; i++) {
+            if (intersections[i] != null) {
+                indexByCoordinate.putIfAbsent(key(intersections[i].getCoordinate().getX(), intersections[i].getCoordinate().getY()), i);
+            }
+        }
+        components = ConnectedComponents.of(this);
+    }
+
     /**
      * Adds an intersection to the next open space in the intersections
      * array. Assumes the intersections array is correctly sized.
@@ -51,7 +101,9 @@ public class Network {
      */
     public void addIntersection(Intersection res) {
         intersections[nextIndex] = res;
+        indexByCoordinate.putIfAbsent(key(res.getCoordinate().getX(), res.getCoordinate().getY()), nextIndex);
         nextIndex++;
+        modCount++;
         if (mapPanel != null) mapPanel.addIntersection(res);
     }
 
@@ -62,6 +114,10 @@ public class Network {
      * @param toAdd the block to add
      */
     public void addEdge(int index,Block toAdd) {
+        modCount++;
+        toAdd.setTrafficEpoch(trafficEpoch);
+        trafficEpoch.incrementAndGet();
+        components.union(this, toAdd);
         if (adj[index] == null) {
             adj[index] = toAdd;
             if (mapPanel != null){
@@ -88,12 +144,22 @@ public class Network {
         return adj[index];
     }
 
+    /**
+     * Returns the connected components of the network, which are kept up to date as edges are added.
+     * @return the connected components
+     */
+    public ConnectedComponents getComponents() {
+        return components;
+    }
+
     public Intersection[] getIntersections() {
         return intersections;
     }
 
     public void setIntersections(Intersection[] arr) {
         this.intersections = arr;
+        modCount++;
+        reindex();
     }
 
     public Block[] getAdjacencyList() {
@@ -102,6 +168,31 @@ public class Network {
 
     public void setAdj(Block[] arr) {
         this.adj = arr;
+        modCount++;
+        for (Block block : arr) {
+            for (Block ptr = block; ptr != null; ptr = ptr.getNext()) ptr.setTrafficEpoch(trafficEpoch);
+        }
+        trafficEpoch.incrementAndGet();
+        components = ConnectedComponents.of(this);
+    }
+
+    /**
+     * Returns the number of structural changes (added intersections or edges,
+     * replaced arrays) made to this network.
+     * @return the modification count
+     */
+    public long getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Returns a counter that changes every time blocks are added to this network or replaced, or the length, traffic
+     * factor or traffic of one of its blocks is set, so results computed from block weights can tell whether they are
+     * still current. Other networks have their own.
+     * @return the current traffic epoch
+     */
+    public long getTrafficEpoch() {
+        return trafficEpoch.get();
     }
 
     public int getNextIndex() {
@@ -0,0 +1,269 @@
+package rumaps;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * The NetworkGenerator class writes synthetic road networks in the .in format read by RUMaps, for scale testing.
+ *
+ * - grid: a columns x rows grid of intersections, one street per row and per column
+ * - geometric: random intersections in a square, joined by a block whenever two are within a radius chosen to give
+ *   the requested average number of blocks per intersection
+ * - hierarchical: a jittered grid where every few rows and columns are routes and avenues with larger road sizes,
+ *   and some local blocks are missing, as in a real street plan
+ *
+ * Road sizes follow the campus files (4.75 for local streets, 7 for major roads; 9 for routes). Blocks get curved
+ * polylines with interior shape points, like the surveyed blocks do. All randomness comes from StdRandom, so the same
+ * seed always produces the same file.
+ *
+ * The .in format is the only network format RUMaps reads; there is no binary format to generate.
+ *
+ * Usage:
+ *     java rumaps.NetworkGenerator grid <columns> <rows> <output.in> [seed]
+ *     java rumaps.NetworkGenerator geometric <intersections> <average degree> <output.in> [seed]
+ *     java rumaps.NetworkGenerator hierarchical <columns> <rows> <output.in> [seed]
+ */
+public class NetworkGenerator {
+    public static final double LOCAL_ROAD = 4.75;
+    public static final double MAJOR_ROAD = 7;
+    public static final double ROUTE_ROAD = 9;
+
+    public static final int SPACING = 40;
+    private static final int BLOCKS_PER_STREET = 16;
+
+    private NetworkGenerator() {
+    }
+
+    /**
+     * Writes a columns x rows grid of intersections SPACING units apart with straight local blocks.
+     *
+     * @param shapePoints the number of interior points on each block
+     */
+    public static void grid(int columns, int rows, int shapePoints, File output) throws IOException {
+        try (Output out = new Output(output)) {
+            for (int y = 0; y < rows; y++) {
+                out.beginStreet("Row " + (y + 1) + " St");
+                for (int x = 0; x + 1 < columns; x++) {
+                    out.block(y * columns + x, y * columns + x + 1, x * SPACING, y * SPACING, (x + 1) * SPACING, y * SPACING, LOCAL_ROAD, shapePoints, 0);
+                }
+            }
+            for (int x = 0; x < columns; x++) {
+                out.beginStreet("Column " + (x + 1) + " Ave");
+                for (int y = 0; y + 1 < rows; y++) {
+                    out.block(y * columns + x, (y + 1) * columns + x, x * SPACING, y * SPACING, x * SPACING, (y + 1) * SPACING, LOCAL_ROAD, shapePoints, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a random geometric network: intersections placed uniformly at random, with a block between every two
+     * intersections closer than a radius. Intersections that end up with no block are left out of the file.
+     *
+     * @param intersections the number of intersections to place
+     * @param averageDegree the expected number of blocks at each intersection
+     */
+    public static void randomGeometric(int intersections, double averageDegree, File output) throws IOException {
+        int width = (int) Math.ceil(Math.sqrt((double) intersections) * SPACING);
+        double radius = Math.sqrt(averageDegree * (double) width * width / (Math.PI * intersections));
+
+        // distinct integer coordinates, bucketed into cells of the radius
+        int[] xs = new int[intersections];
+        int[] ys = new int[intersections];
+        HashSet<Long> taken = new HashSet<>();
+        for (int i = 0; i < intersections; i++) {
+            do {
+                xs[i] = StdRandom.uniformInt(width);
+                ys[i] = StdRandom.uniformInt(width);
+            } while (!taken.add(((long) xs[i] << 32) | ys[i]));
+        }
+        taken = null;
+        int cells = Math.max(1, (int) (width / radius));
+        double cellSize = (double) width / cells;
+        int[] cellStart = new int[cells * cells + 1];
+        int[] byCell = new int[intersections];
+        for (int i = 0; i < intersections; i++) cellStart[cellOf(xs[i], ys[i], cellSize, cells) + 1]++;
+        for (int c = 0; c < cells * cells; c++) cellStart[c + 1] += cellStart[c];
+        int[] fill = Arrays.copyOf(cellStart, cells * cells);
+        for (int i = 0; i < intersections; i++) byCell[fill[cellOf(xs[i], ys[i], cellSize, cells)]++] = i;
+
+        try (Output out = new Output(output)) {
+            int blocks = 0;
+            for (int i = 0; i < intersections; i++) {
+                int cx = Math.min(cells - 1, (int) (xs[i] / cellSize));
+                int cy = Math.min(cells - 1, (int) (ys[i] / cellSize));
+                for (int ny = Math.max(0, cy - 1); ny <= Math.min(cells - 1, cy + 1); ny++) {
+                    for (int nx = Math.max(0, cx - 1); nx <= Math.min(cells - 1, cx + 1); nx++) {
+                        int c = ny * cells + nx;
+                        for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                            int j = byCell[k];
+                            if (j <= i) continue;
+                            double dx = xs[i] - xs[j], dy = ys[i] - ys[j];
+                            if (dx * dx + dy * dy > radius * radius) continue;
+                            if (blocks++ % BLOCKS_PER_STREET == 0) out.beginStreet("Road " + (blocks / BLOCKS_PER_STREET + 1));
+                            double roadSize = StdRandom.bernoulli(0.15) ? MAJOR_ROAD : LOCAL_ROAD;
+                            out.block(i, j, xs[i], ys[i], xs[j], ys[j], roadSize, StdRandom.uniformInt(4), radius / 8);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int cellOf(int x, int y, double cellSize, int cells) {
+        return Math.min(cells - 1, (int) (y / cellSize)) * cells + Math.min(cells - 1, (int) (x / cellSize));
+    }
+
+    /**
+     * Writes a street plan on a jittered columns x rows grid:
+     * - every 16th row and column is a route (road size 9), every 4th an avenue (7), the rest local streets (4.75)
+     * - 15% of the local blocks are missing
+     * - local blocks bend with up to 3 shape points, major roads are straighter
+     */
+    public static void hierarchical(int columns, int rows, File output) throws IOException {
+        int jitter = SPACING / 5;
+        int[] xs = new int[columns * rows];
+        int[] ys = new int[columns * rows];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < columns; x++) {
+                // routes and avenues stay on their lines; local intersections drift a little
+                boolean major = x % 4 == 0 || y % 4 == 0;
+                xs[y * columns + x] = x * SPACING + (major ? 0 : StdRandom.uniformInt(-jitter, jitter + 1));
+                ys[y * columns + x] = y * SPACING + (major ? 0 : StdRandom.uniformInt(-jitter, jitter + 1));
+            }
+        }
+
+        try (Output out = new Output(output)) {
+            for (int y = 0; y < rows; y++) {
+                double roadSize = roadSize(y);
+                out.beginStreet(streetName(y, roadSize, "St", "Blvd"));
+                for (int x = 0; x + 1 < columns; x++) {
+                    hierarchicalBlock(out, xs, ys, y * columns + x, y * columns + x + 1, roadSize);
+                }
+            }
+            for (int x = 0; x < columns; x++) {
+                double roadSize = roadSize(x);
+                out.beginStreet(streetName(x, roadSize, "Ave", "Pkwy"));
+                for (int y = 0; y + 1 < rows; y++) {
+                    hierarchicalBlock(out, xs, ys, y * columns + x, (y + 1) * columns + x, roadSize);
+                }
+            }
+        }
+    }
+
+    private static double roadSize(int line) {
+        return line % 16 == 0 ? ROUTE_ROAD : line % 4 == 0 ? MAJOR_ROAD : LOCAL_ROAD;
+    }
+
+    private static String streetName(int line, double roadSize, String localSuffix, String majorSuffix) {
+        if (roadSize == ROUTE_ROAD) return "Route " + (line / 16 + 1);
+        if (roadSize == MAJOR_ROAD) return (line / 4 + 1) + " " + majorSuffix;
+        return (line + 1) + " " + localSuffix;
+    }
+
+    private static void hierarchicalBlock(Output out, int[] xs, int[] ys, int a, int b, double roadSize) throws IOException {
+        boolean local = roadSize == LOCAL_ROAD;
+        if (local && StdRandom.bernoulli(0.15)) return;
+        out.block(a, b, xs[a], ys[a], xs[b], ys[b], roadSize, local ? StdRandom.uniformInt(4) : 1, local ? SPACING / 6.0 : SPACING / 20.0);
+    }
+
+    /**
+     * Buffers one street at a time and writes the streets to a temporary body file, then writes the header
+     * (intersection and street counts, only known at the end) followed by the body to the output file.
+     */
+    private static final class Output implements Closeable {
+        private final File output;
+        private final File body;
+        private final BufferedWriter writer;
+        private final BitSet used = new BitSet();
+
+        private String streetName;
+        private final StringBuilder street = new StringBuilder();
+        private int streetBlocks;
+        private int streets;
+        private int blockNumber = 1;
+
+        Output(File output) throws IOException {
+            this.output = output;
+            this.body = File.createTempFile("network-", ".body");
+            this.writer = new BufferedWriter(new FileWriter(body), 1 << 16);
+        }
+
+        void beginStreet(String name) throws IOException {
+            flushStreet();
+            streetName = name;
+        }
+
+        /**
+         * Adds a block between intersections a and b, with interior shape points offset from the straight line
+         * along a sine arc of amplitude up to bend.
+         */
+        void block(int a, int b, int ax, int ay, int bx, int by, double roadSize, int shapePoints, double bend) throws IOException {
+            used.set(a);
+            used.set(b);
+            double amplitude = bend == 0 ? 0 : StdRandom.uniformDouble(-bend, bend);
+            double length = Math.hypot(bx - ax, by - ay);
+            double nx = length == 0 ? 0 : -(by - ay) / length;
+            double ny = length == 0 ? 0 : (bx - ax) / length;
+
+            street.append(blockNumber++).append('\n').append(shapePoints + 2).append('\n').append(roadSize).append('\n');
+            street.append(ax).append(' ').append(ay).append('\n');
+            for (int p = 1; p <= shapePoints; p++) {
+                double t = (double) p / (shapePoints + 1);
+                double offset = amplitude * Math.sin(Math.PI * t);
+                street.append(Math.round(ax + t * (bx - ax) + offset * nx)).append(' ')
+                      .append(Math.round(ay + t * (by - ay) + offset * ny)).append('\n');
+            }
+            street.append(bx).append(' ').append(by).append('\n');
+            streetBlocks++;
+        }
+
+        private void flushStreet() throws IOException {
+            if (streetBlocks > 0) {
+                writer.write(streetName);
+                writer.write('\n');
+                writer.write(Integer.toString(streetBlocks));
+                writer.write('\n');
+                writer.append(street);
+                streets++;
+            }
+            street.setLength(0);
+            streetBlocks = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flushStreet();
+                writer.close();
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output), 1 << 16)) {
+                    // only intersections with at least one block exist in the network
+                    out.write((used.cardinality() + "\n" + streets + "\n").getBytes());
+                    Files.copy(body.toPath(), out);
+                }
+            } finally {
+                body.delete();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("Usage: java rumaps.NetworkGenerator grid|geometric|hierarchical <a> <b> <output.in> [seed]");
+            System.exit(2);
+        }
+        StdRandom.setSeed(args.length > 4 ? Long.parseLong(args[4]) : 2024);
+        File output = new File(args[3]);
+        long started = System.nanoTime();
+        switch (args[0]) {
+            case "grid":         grid(Integer.parseInt(args[1]), Integer.parseInt(args[2]), 0, output); break;
+            case "geometric":    randomGeometric(Integer.parseInt(args[1]), Double.parseDouble(args[2]), output); break;
+            case "hierarchical": hierarchical(Integer.parseInt(args[1]), Integer.parseInt(args[2]), output); break;
+            default:
+                System.err.println("Unknown network type: " + args[0]);
+                System.exit(2);
+        }
+        System.err.printf("Wrote %s (%d KB) in %.1f s%n", output, output.length() / 1024, (System.nanoTime() - started) / 1e9);
+    }
+}
@@ -0,0 +1,199 @@
+package rumaps;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * The ParallelHopSearch class computes hop distances (least number of blocks) from one intersection to every other
+ * with a level-synchronous BFS whose levels are expanded in parallel on a fork-join pool. It is meant for analytics
+ * over large networks (hop-distance maps, eccentricity), where a single-threaded BFS is the bottleneck.
+ *
+ * Each level runs in two parallel phases:
+ * 1. Claim - the frontier is split into chunks; every edge to an unvisited vertex tries to set the vertex's bit in a
+ *    shared visited bitset with compare-and-set, and the thread that wins adds the vertex to the next frontier.
+ * 2. Parent - every vertex of the next frontier picks as its parent the lowest-numbered edge reaching it from the
+ *    previous level. This does not depend on which thread claimed the vertex, so parents are deterministic.
+ *
+ * Distances are identical to those of the sequential BFS (RUMaps.minimizeIntersections, HopSearch); frontiers
+ * smaller than the grain (GRAIN unless given) are expanded on the calling thread, larger ones in chunks of the grain.
+ */
+public class ParallelHopSearch {
+    public static final int GRAIN = 1024;
+
+    private final RoutingGraph graph;
+    private final ForkJoinPool pool;
+    private final int grain;
+
+    private int[] dist;
+    private int[] parentEdge;
+    private int source = -1;
+
+    public ParallelHopSearch(RoutingGraph graph) {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    public ParallelHopSearch(RoutingGraph graph, ForkJoinPool pool) {
+        this(graph, pool, GRAIN);
+    }
+
+    /**
+     * @param graph the graph to search
+     * @param pool the pool the levels are expanded on
+     * @param grain the smallest frontier expanded in parallel, and the number of frontier vertices per task
+     */
+    public ParallelHopSearch(RoutingGraph graph, ForkJoinPool pool, int grain) {
+        if (grain < 1) throw new IllegalArgumentException("Grain must be positive: " + grain);
+        this.graph = graph;
+        this.pool = pool;
+        this.grain = grain;
+    }
+
+    /**
+     * Computes the hop distance and parent edge of every vertex reachable from source.
+     *
+     * @param source the source vertex index
+     * @param blockedEdges edges that may not be used, or null
+     * @return the hop distances by vertex index, -1 where unreachable (the array is owned by this search)
+     */
+    public int[] search(int source, long[] blockedEdges) {
+        int n = graph.size();
+        this.source = source;
+        dist = new int[n];
+        parentEdge = new int[n];
+        Arrays.fill(dist, -1);
+        Arrays.fill(parentEdge, -1);
+        AtomicLongArray visited = new AtomicLongArray((n + 63) >>> 6);
+
+        claim(visited, source);
+        dist[source] = 0;
+        int[] frontier = {source};
+        int level = 0;
+
+        while (frontier.length > 0) {
+            level++;
+            int[] next = frontier.length < grain ? expand(frontier, 0, frontier.length, visited, blockedEdges)
+                                                 : expandParallel(frontier, visited, blockedEdges);
+            int nextLevel = level;
+            if (next.length < grain) {
+                for (int w : next) setLevelAndParent(w, nextLevel, blockedEdges);
+            } else {
+                int[] frozen = next;
+                pool.submit(() -> IntStream.range(0, frozen.length).parallel()
+                    .forEach(i -> dist[frozen[i]] = nextLevel)).join();
+                pool.submit(() -> IntStream.range(0, frozen.length).parallel()
+                    .forEach(i -> parentEdge[frozen[i]] = lowestParentEdge(frozen[i], nextLevel, blockedEdges))).join();
+            }
+            frontier = next;
+        }
+        return dist;
+    }
+
+    private void setLevelAndParent(int w, int level, long[] blockedEdges) {
+        dist[w] = level;
+        parentEdge[w] = lowestParentEdge(w, level, blockedEdges);
+    }
+
+    /**
+     * @return the lowest edge id reaching w from a vertex one level closer to the source
+     */
+    private int lowestParentEdge(int w, int level, long[] blockedEdges) {
+        int best = -1;
+        for (int e = graph.firstEdge(w); e < graph.endEdge(w); e++) {
+            int in = graph.twin(e);
+            if (dist[graph.target(e)] == level - 1 && Bits.isClear(blockedEdges, in) && (best == -1 || in < best)) {
+                best = in;
+            }
+        }
+        return best;
+    }
+
+    private int[] expandParallel(int[] frontier, AtomicLongArray visited, long[] blockedEdges) {
+        int chunks = (frontier.length + grain - 1) / grain;
+        int[][] parts = new int[chunks][];
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(c ->
+            parts[c] = expand(frontier, c * grain, Math.min(frontier.length, (c + 1) * grain), visited, blockedEdges))).join();
+
+        int total = 0;
+        for (int[] part : parts) total += part.length;
+        int[] next = new int[total];
+        int at = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, next, at, part.length);
+            at += part.length;
+        }
+        return next;
+    }
+
+    /**
+     * Claims the unvisited neighbours of frontier[from..to-1].
+     * @return the vertices claimed by this call
+     */
+    private int[] expand(int[] frontier, int from, int to, AtomicLongArray visited, long[] blockedEdges) {
+        int[] claimed = new int[16];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int v = frontier[i];
+            for (int e = graph.firstEdge(v); e < graph.endEdge(v); e++) {
+                if (!Bits.isClear(blockedEdges, e)) continue;
+                int w = graph.target(e);
+                if (claim(visited, w)) {
+                    if (count == claimed.length) claimed = Arrays.copyOf(claimed, count * 2);
+                    claimed[count++] = w;
+                }
+            }
+        }
+        return Arrays.copyOf(claimed, count);
+    }
+
+    /**
+     * Atomically sets bit v of the visited bitset.
+     * @return true if this call set it
+     */
+    private static boolean claim(AtomicLongArray visited, int v) {
+        int word = v >>> 6;
+        long mask = 1L << v;
+        while (true) {
+            long current = visited.get(word);
+            if ((current & mask) != 0) return false;
+            if (visited.compareAndSet(word, current, current | mask)) return true;
+        }
+    }
+
+    /**
+     * @return the hop distance from the source of the last search to v, or -1 if unreachable
+     */
+    public int distance(int v) {
+        return dist[v];
+    }
+
+    /**
+     * @return the edge used to reach v in the last search, or -1 for the source and unreachable vertices
+     */
+    public int parentEdge(int v) {
+        return parentEdge[v];
+    }
+
+    /**
+     * @return the largest hop distance from the source of the last search to any reachable vertex
+     */
+    public int eccentricity() {
+        int max = 0;
+        for (int d : dist) max = Math.max(max, d);
+        return max;
+    }
+
+    /**
+     * @param target a vertex reached by the last search
+     * @return the edge ids of the path from the source to target, in order
+     */
+    public int[] edgePath(int target) {
+        int count = dist[target];
+        int[] edges = new int[count];
+        for (int v = target; v != source; v = graph.tail(parentEdge[v])) {
+            edges[--count] = parentEdge[v];
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,57 @@
+package rumaps;
+
+import java.util.*;
+
+/**
+ * The ParetoRoute class represents one route on the Pareto front returned by the multi-criteria search.
+ * No other route on the same front is at least as good in all three criteria:
+ * - traffic - sum of the traffic of the blocks along the route
+ * - length - sum of the lengths of the blocks along the route
+ * - hops - number of blocks along the route (one less than the number of intersections)
+ */
+public class ParetoRoute {
+    private final ArrayList<Intersection> path;
+    private final double traffic;
+    private final double length;
+    private final int hops;
+
+    public ParetoRoute(ArrayList<Intersection> path, double traffic, double length, int hops) {
+        this.path = path;
+        this.traffic = traffic;
+        this.length = length;
+        this.hops = hops;
+    }
+
+    public ArrayList<Intersection> getPath() {
+        return path;
+    }
+
+    public double getTraffic() {
+        return traffic;
+    }
+
+    public double getLength() {
+        return length;
+    }
+
+    public int getHops() {
+        return hops;
+    }
+
+    public double getAverageTrafficFactor() {
+        return traffic / length;
+    }
+
+    /**
+     * Returns the same totals as RUMaps.pathInformation without walking the path again.
+     * @return a double array containing the total length, average experienced traffic factor, and total traffic (in that order)
+     */
+    public double[] getInformation() {
+        return new double[] {length, getAverageTrafficFactor(), traffic};
+    }
+
+    @Override
+    public String toString() {
+        return "ParetoRoute [traffic=" + traffic + ", length=" + length + ", hops=" + hops + ", path=" + path + "]";
+    }
+}
@@ -0,0 +1,235 @@
+package rumaps;
+
+import java.util.*;
+
+/**
+ * The ParetoRouter class runs a multi-criteria label-setting search (a generalization of Dijkstra's algorithm)
+ * over a RoutingGraph and returns every route that is Pareto-optimal in traffic, length and number of blocks.
+ *
+ * Each vertex keeps a bag of labels (traffic, length, hops). A new label is discarded when it is dominated by a
+ * label already in the bag or by a label that already reached the target, and it evicts the labels it dominates.
+ * Labels are extracted from the fringe in order of traffic, so the first label to reach the target is the
+ * fastest path and the front is built in increasing order of traffic.
+ *
+ * To keep the search fast on large networks each bag holds at most maxLabelsPerVertex labels. Once a bag is full,
+ * a new label is only accepted if it is better than every label in the bag in some criterion, and it replaces a
+ * label that is not the best in any criterion, so a label that is the best in some criterion is never displaced.
+ */
+public class ParetoRouter {
+    public static final int DEFAULT_MAX_LABELS_PER_VERTEX = 16;
+
+    private final RoutingGraph graph;
+    private final int maxLabelsPerVertex;
+
+    private static class Label implements Comparable<Label> {
+        final double traffic;
+        final double length;
+        final int hops;
+        final int vertex;
+        final Label predecessor;
+        boolean dead;
+
+        Label(double traffic, double length, int hops, int vertex, Label predecessor) {
+            this.traffic = traffic;
+            this.length = length;
+            this.hops = hops;
+            this.vertex = vertex;
+            this.predecessor = predecessor;
+        }
+
+        boolean dominates(double traffic, double length, int hops) {
+            return this.traffic <= traffic && this.length <= length && this.hops <= hops;
+        }
+
+        boolean dominatedBy(Label other) {
+            return other.dominates(traffic, length, hops);
+        }
+
+        @Override
+        public int compareTo(Label other) {
+            int c = Double.compare(traffic, other.traffic);
+            if (c != 0) return c;
+            c = Double.compare(length, other.length);
+            if (c != 0) return c;
+            return Integer.compare(hops, other.hops);
+        }
+    }
+
+    public ParetoRouter(RoutingGraph graph) {
+        this(graph, DEFAULT_MAX_LABELS_PER_VERTEX);
+    }
+
+    /**
+     * @param graph the graph to search
+     * @param maxLabelsPerVertex upper bound on the number of non-dominated labels kept at each intersection
+     */
+    public ParetoRouter(RoutingGraph graph, int maxLabelsPerVertex) {
+        if (maxLabelsPerVertex < 1) throw new IllegalArgumentException("maxLabelsPerVertex must be positive");
+        this.graph = graph;
+        this.maxLabelsPerVertex = maxLabelsPerVertex;
+    }
+
+    /**
+     * Finds the Pareto front of routes from start to end.
+     *
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @return the non-dominated routes sorted by increasing traffic, or an empty list if no path exists
+     */
+    public ArrayList<ParetoRoute> search(Intersection start, Intersection end) {
+        int s = graph.indexOf(start);
+        int t = graph.indexOf(end);
+        ArrayList<ParetoRoute> front = new ArrayList<>();
+        if (s == -1 || t == -1) return front;
+
+        List<ArrayList<Label>> bags = new ArrayList<>(Collections.nCopies(graph.size(), (ArrayList<Label>) null));
+        PriorityQueue<Label> fringe = new PriorityQueue<>();
+
+        Label first = new Label(0.0, 0.0, 0, s, null);
+        bags.set(s, new ArrayList<>(4));
+        bags.get(s).add(first);
+        fringe.add(first);
+
+        ArrayList<Label> targetLabels = new ArrayList<>();
+        while (!fringe.isEmpty()) {
+            Label label = fringe.poll();
+            if (label.dead) continue;
+            if (label.vertex == t) {
+                targetLabels.add(label);
+                continue;
+            }
+            if (dominatedByAny(targetLabels, label.traffic, label.length, label.hops)) continue;
+
+            for (int e = graph.firstEdge(label.vertex); e < graph.endEdge(label.vertex); e++) {
+                int w = graph.target(e);
+                double traffic = label.traffic + graph.traffic(e);
+                double length = label.length + graph.length(e);
+                int hops = label.hops + 1;
+
+                if (dominatedByAny(targetLabels, traffic, length, hops)) continue;
+                Label next = insert(bags, w, traffic, length, hops, label);
+                if (next != null) fringe.add(next);
+            }
+        }
+
+        for (Label label : targetLabels) {
+            front.add(toRoute(label));
+        }
+        return front;
+    }
+
+    /**
+     * Adds a label to the bag of vertex w unless it is dominated, evicting the labels it dominates.
+     * @return the new label, or null if it was rejected
+     */
+    private Label insert(List<ArrayList<Label>> bags, int w, double traffic, double length, int hops, Label predecessor) {
+        ArrayList<Label> bag = bags.get(w);
+        if (bag == null) {
+            bag = new ArrayList<>(4);
+            bags.set(w, bag);
+        }
+        if (dominatedByAny(bag, traffic, length, hops)) return null;
+
+        Label label = new Label(traffic, length, hops, w, predecessor);
+        for (int i = bag.size() - 1; i >= 0; i--) {
+            Label existing = bag.get(i);
+            if (existing.dominatedBy(label)) {
+                existing.dead = true;
+                bag.remove(i);
+            }
+        }
+        if (bag.size() >= maxLabelsPerVertex) {
+            // Only a new best in some criterion may displace a label that is not the best in any
+            int victim = improvesAnyCriterion(bag, label) ? findNonExtreme(bag) : -1;
+            if (victim == -1) return null;
+            bag.remove(victim).dead = true;
+        }
+        bag.add(label);
+        return label;
+    }
+
+    private static boolean improvesAnyCriterion(ArrayList<Label> bag, Label label) {
+        boolean traffic = true, length = true, hops = true;
+        for (int i = 0; i < bag.size(); i++) {
+            Label existing = bag.get(i);
+            traffic &= label.traffic < existing.traffic;
+            length &= label.length < existing.length;
+            hops &= label.hops < existing.hops;
+        }
+        return traffic || length || hops;
+    }
+
+    /**
+     * @return the index of the last label in the bag that is not the best in any criterion, or -1 if none
+     */
+    private static int findNonExtreme(ArrayList<Label> bag) {
+        int minTraffic = 0, minLength = 0, minHops = 0;
+        for (int i = 1; i < bag.size(); i++) {
+            if (bag.get(i).traffic < bag.get(minTraffic).traffic) minTraffic = i;
+            if (bag.get(i).length < bag.get(minLength).length) minLength = i;
+            if (bag.get(i).hops < bag.get(minHops).hops) minHops = i;
+        }
+        for (int i = bag.size() - 1; i >= 0; i--) {
+            if (i != minTraffic && i != minLength && i != minHops) return i;
+        }
+        return -1;
+    }
+
+    private static boolean dominatedByAny(ArrayList<Label> labels, double traffic, double length, int hops) {
+        for (int i = 0; i < labels.size(); i++) {
+            if (labels.get(i).dominates(traffic, length, hops)) return true;
+        }
+        return false;
+    }
+
+    private ParetoRoute toRoute(Label label) {
+        ArrayList<Intersection> path = new ArrayList<>(label.hops + 1);
+        for (Label ptr = label; ptr != null; ptr = ptr.predecessor) {
+            path.add(graph.intersection(ptr.vertex));
+        }
+        Collections.reverse(path);
+        return new ParetoRoute(path, label.traffic, label.length, label.hops);
+    }
+
+    /**
+     * Picks the route of a Pareto front that minimizes a weighted sum of the three criteria, each normalized
+     * to [0, 1] across the front. This is what a trade-off slider would call; no search is re-run.
+     *
+     * @param front the routes returned by search
+     * @param trafficWeight weight of the total traffic
+     * @param lengthWeight weight of the total length
+     * @param hopWeight weight of the number of blocks
+     * @return the chosen route, or null if the front is empty
+     */
+    public static ParetoRoute select(List<ParetoRoute> front, double trafficWeight, double lengthWeight, double hopWeight) {
+        if (front.isEmpty()) return null;
+        double minTraffic = Double.MAX_VALUE, maxTraffic = 0;
+        double minLength = Double.MAX_VALUE, maxLength = 0;
+        int minHops = Integer.MAX_VALUE, maxHops = 0;
+        for (ParetoRoute route : front) {
+            minTraffic = Math.min(minTraffic, route.getTraffic());
+            maxTraffic = Math.max(maxTraffic, route.getTraffic());
+            minLength = Math.min(minLength, route.getLength());
+            maxLength = Math.max(maxLength, route.getLength());
+            minHops = Math.min(minHops, route.getHops());
+            maxHops = Math.max(maxHops, route.getHops());
+        }
+
+        ParetoRoute best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (ParetoRoute route : front) {
+            double score = trafficWeight * normalize(route.getTraffic(), minTraffic, maxTraffic)
+                         + lengthWeight * normalize(route.getLength(), minLength, maxLength)
+                         + hopWeight * normalize(route.getHops(), minHops, maxHops);
+            if (score < bestScore) {
+                bestScore = score;
+                best = route;
+            }
+        }
+        return best;
+    }
+
+    private static double normalize(double value, double min, double max) {
+        return max > min ? (value - min) / (max - min) : 0.0;
+    }
+}
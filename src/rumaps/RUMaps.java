@@ -3,6 +3,7 @@ package rumaps;
 //import static org.junit.Assert.assertArrayEquals;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * This class represents the information that can be attained from the Rutgers University Map.
@@ -20,6 +21,15 @@ import java.util.*;
 public class RUMaps {
     
     private Network rutgers;
+    private RoutingGraph routingGraph;
+    // Where fastestPath and minimizeIntersections record their steps for SearchFrontier, null to record nothing
+    private volatile SearchTrace fastestPathTrace;
+    private volatile SearchTrace minimizeIntersectionsTrace;
+    // Each thread's search engines, kept until the routing graph is rebuilt
+    private final ThreadLocal<TurnAwareRouter> turnAwareRouters = new ThreadLocal<>();
+    private final ThreadLocal<FastestPathEngine> fastestPathEngines = new ThreadLocal<>();
+    private final ThreadLocal<HopSearch> hopSearches = new ThreadLocal<>();
+    private final ThreadLocal<AlternativeRoutes> alternativeRouteGenerators = new ThreadLocal<>();
 
     /**
      * **DO NOT MODIFY THIS METHOD**
@@ -70,6 +80,51 @@ public class RUMaps {
         
     }
 
+    /**
+     * Loads a map the same way as the RUMaps(MapPanel, String) constructor, emitting a rumaps.NetworkLoad flight
+     * recorder event (RoutingEvents) for each phase: parse, dedup and weighting.
+     *
+     * @param mapPanel The map panel to display the map, or null
+     * @param filename The name of the file containing the street information
+     * @return the loaded map
+     */
+    public static RUMaps load(MapPanel mapPanel, String filename) {
+        RUMaps map = new RUMaps();
+        Object parse = RoutingEvents.beginLoad("parse");
+        StdIn.setFile(filename);
+        int numIntersections = StdIn.readInt();
+        int numStreets = StdIn.readInt();
+        StdIn.readLine();
+        map.rutgers = new Network(numIntersections, mapPanel);
+        ArrayList<Block> blocks = map.initializeBlocks(numStreets);
+        RoutingEvents.endLoad(parse, blocks.size());
+
+        Object dedup = RoutingEvents.beginLoad("dedup");
+        map.initializeIntersections(blocks);
+        RoutingEvents.endLoad(dedup, map.rutgers.getNextIndex());
+
+        Object weighting = RoutingEvents.beginLoad("weighting");
+        int weighted = 0;
+        for (Block block : map.rutgers.getAdjacencyList()) {
+            for (Block ptr = block; ptr != null; ptr = ptr.getNext()) {
+                ptr.setLength(map.blockLength(ptr));
+                ptr.setTrafficFactor(map.blockTrafficFactor(ptr));
+                ptr.setTraffic(map.blockTraffic(ptr));
+                weighted++;
+            }
+        }
+        RoutingEvents.endLoad(weighting, weighted);
+        return map;
+    }
+
+    /**
+     * @param filename The name of the file containing the street information
+     * @return the map loaded by load(null, filename)
+     */
+    public static RUMaps load(String filename) {
+        return load(null, filename);
+    }
+
     /**
      * Initializes all blocks, given a number of streets.
      * the file was opened by the constructor - use StdIn to continue reading the file
@@ -116,8 +171,8 @@ public class RUMaps {
             ArrayList<Coordinate> blockCoords = block.getCoordinatePoints();
             Coordinate startingPoint = blockCoords.get(0);
             Coordinate endingPoint = blockCoords.get(blockCoords.size()-1);
-            int startIndex = rutgers.findIntersection(startingPoint);
-            int endIndex = rutgers.findIntersection(endingPoint);
+            int startIndex = rutgers.findIndexedIntersection(startingPoint);
+            int endIndex = rutgers.findIndexedIntersection(endingPoint);
             if (startIndex == -1){
                 Intersection intersection = new Intersection(startingPoint);
                 block.setFirstEndpoint(intersection);
@@ -172,26 +227,32 @@ public class RUMaps {
      * Use a DFS to traverse through blocks, and find the order of intersections
      * traversed starting from a given intersection (as source).
      * 
-     * Implement this method recursively, using a helper method.
-     */
-    public ArrayList<Intersection> reachableIntersections(Intersection source) {  //not really sure if this is working or not
-        boolean[] visited = new boolean[rutgers.getAdjacencyList().length];
-        //int[] edgeTo = new int[rutgers.getAdjacencyList().length];
-        ArrayList<Intersection> orderVisted = new ArrayList<>();
-        int currentIndex = rutgers.findIntersection(source.getCoordinate());
-        dfsHelper(currentIndex,visited,orderVisted);
-        return orderVisted;
-    }
-    private void dfsHelper(int currentIndex, boolean[] visited, ArrayList<Intersection> orderVisted){
-        if (visited[currentIndex] == true) return;
-        visited[currentIndex] = true;
-        orderVisted.add(rutgers.getIntersections()[currentIndex]);
-        for(Block cur = rutgers.adj(currentIndex); cur != null; cur = cur.getNext()){
-            int w = rutgers.findIntersection(cur.getLastEndpoint().getCoordinate());
-            if (!visited[w]){
-                dfsHelper(w,visited,orderVisted);
-            }
-        }
+     * The DFS keeps an explicit stack (see DepthFirstSearch), so it cannot overflow the call
+     * stack on long chains of intersections, but it visits intersections in the same order as
+     * a recursive DFS trying each intersection's blocks in adjacency list order.
+     */
+    public ArrayList<Intersection> reachableIntersections(Intersection source) {
+        ArrayList<Intersection> orderVisited = new ArrayList<>();
+        forEachReachable(source, null, orderVisited::add);
+        return orderVisited;
+    }
+
+    /**
+     * Streams the intersections reachable from the source to a consumer, in the same order as
+     * reachableIntersections, without building a list.
+     * 
+     * @param source The intersection to start from
+     * @param constraints The blocks to avoid for this query only, or null for none
+     * @param visitor Receives each intersection as the DFS discovers it
+     * @return the number of intersections visited
+     */
+    public int forEachReachable(Intersection source, RouteConstraints constraints, Consumer<Intersection> visitor) {
+        RoutingGraph graph = getRoutingGraph();
+        long[] blockedEdges = constraints == null ? null : constraints.blockedEdges(graph);
+        RoutingMetrics.Query query = RoutingMetrics.begin("reachableIntersections", graph.indexOf(source), -1);
+        int visited = new DepthFirstSearch(graph).traverse(source, blockedEdges, visitor);
+        if (query != null) query.end(visited, 0, visited);
+        return visited;
     }
      
 
@@ -206,49 +267,7 @@ public class RUMaps {
      * @return The path with the least number of turns, or an empty ArrayList if no path exists
      */
     public ArrayList<Intersection> minimizeIntersections(Intersection start, Intersection end) {
-        // WRITE YOUR CODE HERE
-        boolean[] marked = new boolean[rutgers.getAdjacencyList().length];
-        Integer[] edgeTo = new Integer[rutgers.getAdjacencyList().length];
-        Queue<Intersection> queue = new Queue<Intersection>();
-        bfsHelper(start, end, marked, edgeTo, queue);
-
-        if (!marked[rutgers.findIntersection(end.getCoordinate())]) {
-            return null;
-        }
-
-        ArrayList<Intersection> path = new ArrayList<>();
-        Integer currentIndex =  rutgers.findIntersection(end.getCoordinate()); 
-        while (currentIndex != null) {
-            path.add(rutgers.getIntersections()[currentIndex]); 
-            currentIndex = edgeTo[currentIndex]; 
-        }
-
-
-        Collections.reverse(path);
-        return path;
-        
-    }
-    private void bfsHelper(Intersection start, Intersection end, boolean[] marked, Integer[] edgeTo, Queue<Intersection> queue){
-        int startIndex = rutgers.findIntersection(start.getCoordinate());
-        int endIndex = rutgers.findIntersection(end.getCoordinate());
-        queue.enqueue(start);
-        marked[startIndex] = true; 
-        while(!queue.isEmpty()){
-            Intersection current = queue.dequeue();
-            int currIndex = rutgers.findIntersection(current.getCoordinate());
-            if (currIndex == endIndex) break;
-            Block curr = rutgers.adj(currIndex);
-            while(curr != null){ 
-                Intersection otherIntersection = curr.other(current);
-                int neighborIndex = rutgers.findIntersection(otherIntersection.getCoordinate());
-                if (!marked[neighborIndex]){
-                    queue.enqueue(rutgers.getIntersections()[neighborIndex]);
-                    marked[neighborIndex] = true;
-                    edgeTo[neighborIndex] = currIndex;
-                }
-                curr = curr.getNext();
-            }
-        }
+        return minimizeIntersections(start, end, null, false);
     }
 
     /**
@@ -264,6 +283,9 @@ public class RUMaps {
      * @return The path with the least traffic, or an empty ArrayList if no path exists
      */
     public ArrayList<Intersection> fastestPath(Intersection start, Intersection end) {
+        if (!isReachable(start, end)) {
+            return new ArrayList<>();
+        }
         ArrayList<Intersection> done = new ArrayList<>();
         ArrayList<Intersection> fringe = new ArrayList<>();
         ArrayList<Double> distances = new ArrayList<>();
@@ -276,41 +298,53 @@ public class RUMaps {
         }
         
         int startIndex = rutgers.findIntersection(start.getCoordinate());
+        RoutingMetrics.Query query = RoutingMetrics.begin("fastestPath", startIndex, rutgers.findIntersection(end.getCoordinate()));
+        int relaxed = 0, pushes = 1;
+        SearchTrace trace = fastestPathTrace;
+        SearchTrace.Recorder recorder = trace == null ? null : trace.begin(startIndex);
         
         distances.set(startIndex, 0.0);
         fringe.add(start);
         
-        while (!fringe.isEmpty()) {
-            int minIndex = 0;
-            double minDist = distances.get(rutgers.findIntersection(fringe.get(0).getCoordinate()));
-            for (int i = 1; i < fringe.size(); i++) {
-                int currentIndex = rutgers.findIntersection(fringe.get(i).getCoordinate());
-                if (distances.get(currentIndex) < minDist) {
-                    minDist = distances.get(currentIndex);
-                    minIndex = i;
+        try {
+            while (!fringe.isEmpty()) {
+                int minIndex = 0;
+                double minDist = distances.get(rutgers.findIntersection(fringe.get(0).getCoordinate()));
+                for (int i = 1; i < fringe.size(); i++) {
+                    int currentIndex = rutgers.findIntersection(fringe.get(i).getCoordinate());
+                    if (distances.get(currentIndex) < minDist) {
+                        minDist = distances.get(currentIndex);
+                        minIndex = i;
+                    }
                 }
-            }
-            Intersection m = fringe.get(minIndex);
-            fringe.remove(minIndex);
-            int mIndex = rutgers.findIntersection(m.getCoordinate());
-            done.add(m);
-
-            for (Block curr = rutgers.adj(mIndex); curr != null; curr = curr.getNext()) {
-                Intersection w = curr.other(m);
-                int wIndex = rutgers.findIntersection(w.getCoordinate());
-                if (done.contains(w)) continue;
-
-                double weight = curr.getTraffic();
-                double newDist = distances.get(mIndex) + weight;
+                Intersection m = fringe.get(minIndex);
+                fringe.remove(minIndex);
+                int mIndex = rutgers.findIntersection(m.getCoordinate());
+                done.add(m);
+                if (recorder != null) recorder.settle(mIndex);
+
+                for (Block curr = rutgers.adj(mIndex); curr != null; curr = curr.getNext()) {
+                    Intersection w = curr.other(m);
+                    int wIndex = rutgers.findIntersection(w.getCoordinate());
+                    if (done.contains(w)) continue;
+
+                    double weight = curr.getTraffic();
+                    double newDist = distances.get(mIndex) + weight;
                 
-                if (newDist < distances.get(wIndex)) {
-                    distances.set(wIndex, newDist);
-                    predecessors.set(wIndex, m);
-                    if (!fringe.contains(w)) {
-                        fringe.add(w);
+                    if (newDist < distances.get(wIndex)) {
+                        relaxed++;
+                        if (recorder != null) recorder.relax(wIndex);
+                        distances.set(wIndex, newDist);
+                        predecessors.set(wIndex, m);
+                        if (!fringe.contains(w)) {
+                            fringe.add(w);
+                            pushes++;
+                        }
                     }
                 }
             }
+        } finally {
+            if (recorder != null) recorder.end();
         }
         ArrayList<Intersection> path = new ArrayList<>();
         Intersection curr = end;
@@ -319,6 +353,7 @@ public class RUMaps {
             curr = predecessors.get(rutgers.findIntersection(curr.getCoordinate()));
         }
         Collections.reverse(path);
+        if (query != null) query.end(done.size(), relaxed, pushes);
         return path;
 }
     
@@ -334,33 +369,8 @@ public class RUMaps {
      * @return A double array containing the total length, average experienced traffic factor, and total traffic of the path (in that order)
      */
     public double[] pathInformation(ArrayList<Intersection> path) {
-        double traffic = 0.0;
-        double length = 0.0;
-        
-    
-        for (int i = 0; i < path.size()-1; i++) {
-            Intersection curr = path.get(i);
-            Intersection next = path.get(i + 1);
-    
-            int currentIndex = rutgers.findIntersection(curr.getCoordinate());
-    
-            Block cBlock = null;
-            Block currBlock = rutgers.adj(currentIndex);
-            while (currBlock != null) {
-                Intersection other = currBlock.other(curr);
-                if (other.equals(next)) {
-                    cBlock = currBlock;
-                    break;
-                }
-                currBlock = currBlock.getNext();
-            }
-            traffic += blockTraffic(cBlock);
-            length += cBlock.getLength();
-        }
-    
-        double averageTrafficFactor = traffic / length;
-        return new double[] {length, averageTrafficFactor, traffic};
-        
+        // Route.of finds the same block between each pair as walking the adjacency list, with index lookups
+        return Route.of(getRoutingGraph(), path).getInformation();
     }
 
     /**
@@ -420,6 +430,344 @@ public class RUMaps {
         return rutgers;
     }
 
+    /**
+     * Returns the connected component label of an intersection. Two intersections are connected
+     * by some path exactly when their labels are equal.
+     * 
+     * @param intersection The intersection
+     * @return the component label, or -1 if the intersection is not in the network
+     */
+    public int componentOf(Intersection intersection) {
+        int index = rutgers.findIntersection(intersection.getCoordinate());
+        return index == -1 ? -1 : rutgers.getComponents().find(index);
+    }
+
+    /**
+     * Checks in near constant time whether a path exists between two intersections, using the
+     * connected components the network maintains as blocks are added.
+     * 
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @return true if there is a path from start to end
+     */
+    public boolean isReachable(Intersection start, Intersection end) {
+        int a = rutgers.findIntersection(start.getCoordinate());
+        int b = rutgers.findIntersection(end.getCoordinate());
+        return a != -1 && b != -1 && rutgers.getComponents().connected(a, b);
+    }
+
+    /**
+     * Returns every intersection reachable from the source, in index order, from a list cached per component.
+     * Use reachableIntersections for the DFS visitation order.
+     * 
+     * @param source The intersection to start from
+     * @return an unmodifiable list of the intersections in the component of source, empty if source is not in the network
+     */
+    public List<Intersection> reachableSet(Intersection source) {
+        int index = rutgers.findIntersection(source.getCoordinate());
+        if (index == -1) return Collections.emptyList();
+        return rutgers.getComponents().members(index, rutgers.getIntersections());
+    }
+
+    /**
+     * Makes every fastestPath query from now on record its steps into a trace, for SearchFrontier to animate.
+     * 
+     * @param trace The trace to record into, or null to stop recording
+     */
+    public void setFastestPathTrace(SearchTrace trace) {
+        fastestPathTrace = trace;
+    }
+
+    /**
+     * Makes every minimizeIntersections query from now on record its steps into a trace, for SearchFrontier to animate.
+     * 
+     * @param trace The trace to record into, or null to stop recording
+     */
+    public void setMinimizeIntersectionsTrace(SearchTrace trace) {
+        minimizeIntersectionsTrace = trace;
+    }
+
+    /**
+     * Returns the index-based view of the network used by the routing engines.
+     * The view is built on first use and rebuilt whenever the network has been modified since.
+     * 
+     * @return the routing graph for the current network
+     */
+    public synchronized RoutingGraph getRoutingGraph() {
+        if (routingGraph == null || routingGraph.getVersion() != rutgers.getModCount()) {
+            routingGraph = RoutingGraph.of(rutgers);
+        }
+        return routingGraph;
+    }
+
+    /**
+     * Finds every route from the start to the end intersection that is Pareto-optimal in
+     * total traffic, total length and number of blocks, in a single multi-criteria search.
+     * 
+     * The first route is the fastest path; use ParetoRouter.select to pick a trade-off.
+     * 
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @return the non-dominated routes sorted by increasing traffic, or an empty ArrayList if no path exists
+     */
+    public ArrayList<ParetoRoute> paretoRoutes(Intersection start, Intersection end) {
+        return new ParetoRouter(getRoutingGraph()).search(start, end);
+    }
+
+    /**
+     * Same as reachableIntersections, but only travels on blocks the constraints allow.
+     * 
+     * @param source The intersection to start from
+     * @param constraints The blocks to avoid for this query only, or null for none
+     * @return the intersections in the order the DFS visits them
+     */
+    public ArrayList<Intersection> reachableIntersections(Intersection source, RouteConstraints constraints) {
+        ArrayList<Intersection> orderVisited = new ArrayList<>();
+        forEachReachable(source, constraints, orderVisited::add);
+        return orderVisited;
+    }
+
+    /**
+     * Same as minimizeIntersections, but only travels on blocks the constraints allow.
+     * 
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @param constraints The blocks to avoid for this query only, or null for none
+     * @return The path with the least number of intersections, or an empty ArrayList if no path exists
+     */
+    public ArrayList<Intersection> minimizeIntersections(Intersection start, Intersection end, RouteConstraints constraints) {
+        return minimizeIntersections(start, end, constraints, false);
+    }
+
+    /**
+     * Finds the path with the least number of intersections with the HopSearch engine.
+     * 
+     * - The default is a direction-optimizing BFS from the start, which finds the same path as a textbook BFS on small networks.
+     * - The bidirectional mode searches from both ends and touches far fewer intersections on large networks;
+     *   it finds a path with the same number of intersections, but not necessarily the same path.
+     * 
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @param constraints The blocks to avoid for this query only, or null for none
+     * @param bidirectional true to search from both ends
+     * @return The path with the least number of intersections, or an empty ArrayList if no path exists
+     */
+    public ArrayList<Intersection> minimizeIntersections(Intersection start, Intersection end, RouteConstraints constraints, boolean bidirectional) {
+        return new ArrayList<>(minimizeIntersectionsRoute(start, end, constraints, bidirectional).getPath());
+    }
+
+    /**
+     * Same as minimizeIntersections, but returns the route with the blocks it takes and its totals.
+     * Each thread keeps its search for the next query until the routing graph is rebuilt.
+     * 
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @param constraints The blocks to avoid for this query only, or null for none
+     * @param bidirectional true to search from both ends
+     * @return The route with the least number of intersections, or Route.NONE if no path exists
+     */
+    public Route minimizeIntersectionsRoute(Intersection start, Intersection end, RouteConstraints constraints, boolean bidirectional) {
+        RoutingGraph graph = getRoutingGraph();
+        long[] blockedEdges = constraints == null ? null : constraints.blockedEdges(graph);
+        int s = graph.indexOf(start);
+        int t = graph.indexOf(end);
+        if (s == -1 || t == -1 || !isReachable(start, end)) return Route.NONE;
+
+        RoutingMetrics.Query query = RoutingMetrics.begin(bidirectional ? "minimizeIntersections.bidirectional" : "minimizeIntersections", s, t);
+        HopSearch search = hopSearches.get();
+        if (search == null || search.getGraph() != graph) {
+            search = new HopSearch(graph);
+            hopSearches.set(search);
+        }
+        search.setTrace(minimizeIntersectionsTrace);
+        boolean found = bidirectional ? search.bidirectional(s, t, blockedEdges) : search.search(s, t, blockedEdges);
+        if (query != null) query.end(search.getVisitedCount(), 0, search.getVisitedCount());
+        if (!found) return Route.NONE;
+        return new Route(graph, s, bidirectional ? search.bidirectionalEdgePath(t) : search.edgePath(t));
+    }
+
+    /**
+     * Returns a router for answering many fastest path queries at once on the current network, in parallel.
+     * Results are the same as fastestPath's, except that paths are returned with their total traffic.
+     * 
+     * @param constraints The blocks every query has to avoid, or null for none
+     * @return a new batch router
+     */
+    public BatchRouter batchRouter(RouteConstraints constraints) {
+        return new BatchRouter(getRoutingGraph(), constraints, java.util.concurrent.ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the least number of blocks from the source to every reachable intersection,
+     * expanding each BFS level in parallel on the common fork-join pool.
+     *
+     * @param source The intersection to start from
+     * @param constraints The blocks to avoid for this query only, or null for none
+     * @return the hop distance of every reachable intersection, including 0 for the source, empty if source is not in the network
+     */
+    public HashMap<Intersection, Integer> hopDistances(Intersection source, RouteConstraints constraints) {
+        RoutingGraph graph = getRoutingGraph();
+        HashMap<Intersection, Integer> distances = new HashMap<>();
+        int s = graph.indexOf(source);
+        if (s == -1) return distances;
+
+        int[] dist = new ParallelHopSearch(graph).search(s, constraints == null ? null : constraints.blockedEdges(graph));
+        for (int v = 0; v < dist.length; v++) {
+            if (dist[v] != -1) distances.put(graph.intersection(v), dist[v]);
+        }
+        return distances;
+    }
+
+    /**
+     * Computes the eccentricity of an intersection: the largest number of blocks needed to reach any
+     * intersection reachable from it, with a parallel BFS.
+     *
+     * @param source The intersection to start from
+     * @return the eccentricity, or -1 if source is not in the network
+     */
+    public int eccentricity(Intersection source) {
+        RoutingGraph graph = getRoutingGraph();
+        int s = graph.indexOf(source);
+        if (s == -1) return -1;
+        ParallelHopSearch search = new ParallelHopSearch(graph);
+        search.search(s, null);
+        return search.eccentricity();
+    }
+
+    /**
+     * Same as fastestPath, but only travels on blocks the constraints allow.
+     * 
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @param constraints The blocks to avoid for this query only, or null for none
+     * @return The path with the least traffic, or an empty ArrayList if no path exists
+     */
+    public ArrayList<Intersection> fastestPath(Intersection start, Intersection end, RouteConstraints constraints) {
+        return new ArrayList<>(fastestRoute(start, end, constraints).getPath());
+    }
+
+    /**
+     * Same as fastestPath, but returns the route with the blocks it takes and its totals.
+     * Each thread keeps its engine for the next query until the routing graph is rebuilt, so a query allocates
+     * nothing in proportion to the size of the network.
+     * 
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @param constraints The blocks to avoid for this query only, or null for none
+     * @return The route with the least traffic, or Route.NONE if no path exists
+     */
+    public Route fastestRoute(Intersection start, Intersection end, RouteConstraints constraints) {
+        RoutingGraph graph = getRoutingGraph();
+        long[] blockedEdges = constraints == null ? null : constraints.blockedEdges(graph);
+        int s = graph.indexOf(start);
+        int t = graph.indexOf(end);
+        if (s == -1 || t == -1 || !isReachable(start, end)) return Route.NONE;
+
+        RoutingMetrics.Query query = RoutingMetrics.begin("fastestPath.engine", s, t);
+        FastestPathEngine engine = fastestPathEngines.get();
+        if (engine == null || engine.getGraph() != graph) {
+            engine = new FastestPathEngine(graph);
+            fastestPathEngines.set(engine);
+        }
+        engine.setTrace(fastestPathTrace);
+        boolean found = engine.search(s, t, blockedEdges, null, null, null);
+        if (query != null) query.end(engine.getSettledCount(), engine.getRelaxedCount(), engine.getPushCount());
+        if (!found) return Route.NONE;
+        return new Route(graph, s, engine.edgePath(t));
+    }
+
+    /**
+     * Finds a fast order in which to visit several stops, starting at the first one, and returns the route through them.
+     * 
+     * @param stops The stops to visit; the first one is the starting point
+     * @param returnToStart true if the route has to end back at the first stop
+     * @return the visiting order, the stitched path and its totals
+     */
+    public MultiStopRoute optimizeStops(List<Intersection> stops, boolean returnToStart) {
+        return new MultiStopOptimizer(getRoutingGraph()).optimize(stops, returnToStart);
+    }
+
+    /**
+     * Finds the path with the least traffic plus turn costs from the start to the end intersection, using
+     * TurnCostModel.DEFAULT: left turns across traffic and U-turns are penalized, going straight is free.
+     * 
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @return the path, or an empty ArrayList if no path exists
+     */
+    public ArrayList<Intersection> turnAwarePath(Intersection start, Intersection end) {
+        return turnAwarePath(start, end, TurnCostModel.DEFAULT);
+    }
+
+    /**
+     * Finds the path with the least traffic plus turn costs from the start to the end intersection.
+     * 
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @param model The costs of turning between blocks
+     * @return the path, or an empty ArrayList if no path exists
+     */
+    public ArrayList<Intersection> turnAwarePath(Intersection start, Intersection end, TurnCostModel model) {
+        RoutingGraph graph = getRoutingGraph();
+        TurnAwareRouter router = turnAwareRouters.get();
+        if (router == null || router.getGraph() != graph) {
+            router = new TurnAwareRouter(graph);
+            turnAwareRouters.set(router);
+        }
+        return router.search(start, end, model);
+    }
+
+    /**
+     * Finds the k loopless paths with the least traffic from the start to the end intersection (Yen's algorithm).
+     * 
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @param k The number of paths wanted
+     * @return up to k paths in increasing order of traffic, the first being the fastest path, or an empty ArrayList if no path exists
+     */
+    public ArrayList<ArrayList<Intersection>> kShortestPaths(Intersection start, Intersection end, int k) {
+        return alternativeRouteGenerator().kShortestPaths(start, end, k);
+    }
+
+    /**
+     * Finds up to k meaningfully different routes from the start to the end intersection (penalty method).
+     * Every route is at most 1.5 times as slow as the fastest path and shares at most 70% of its traffic with the others.
+     * 
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @param k The number of routes wanted, including the fastest path
+     * @return up to k routes, the first being the fastest path, or an empty ArrayList if no path exists
+     */
+    public ArrayList<ArrayList<Intersection>> alternativeRoutes(Intersection start, Intersection end, int k) {
+        return alternativeRouteGenerator().penaltyAlternatives(start, end, k);
+    }
+
+    /**
+     * Same as alternativeRoutes, but returns the routes with the blocks they take and their totals.
+     * 
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @param k The number of routes wanted, including the fastest path
+     * @return up to k routes, the first being the fastest path, or an empty ArrayList if no path exists
+     */
+    public ArrayList<Route> alternativeRouteList(Intersection start, Intersection end, int k) {
+        return alternativeRouteGenerator().penaltyAlternatives(start, end, k, AlternativeRoutes.DEFAULT_PENALTY_FACTOR,
+            AlternativeRoutes.DEFAULT_MAX_STRETCH, AlternativeRoutes.DEFAULT_MAX_OVERLAP);
+    }
+
+    /**
+     * @return this thread's generator of alternative routes, kept until the routing graph is rebuilt
+     */
+    private AlternativeRoutes alternativeRouteGenerator() {
+        RoutingGraph graph = getRoutingGraph();
+        AlternativeRoutes routes = alternativeRouteGenerators.get();
+        if (routes == null || routes.getGraph() != graph) {
+            routes = new AlternativeRoutes(graph);
+            alternativeRouteGenerators.set(routes);
+        }
+        return routes;
+    }
+
 
 
 
@@ -0,0 +1,169 @@
+package rumaps;
+
+import java.util.*;
+
+/**
+ * The Route class represents a path as the routing engines found it: the edges of the RoutingGraph it travels, in
+ * order, rather than only the intersections it passes through. Two intersections may be joined by more than one
+ * block, so the edges say which block was actually taken.
+ *
+ * Everything shown about a route is resolved once, when it is built:
+ * - the intersections and blocks along it
+ * - the length and traffic of every prefix, so the totals and the totals up to any block are array reads
+ * Rendering, formatting and statistics then need no graph lookups.
+ *
+ * A route is immutable once built and may be shared between threads.
+ */
+public class Route {
+    /**
+     * The route of a query that found no path.
+     */
+    public static final Route NONE = new Route();
+
+    private final int[] edges;
+    private final Block[] blocks;
+    private final ArrayList<Intersection> path;
+    // lengths[i] and traffics[i] are the totals of the first i blocks
+    private final double[] lengths;
+    private final double[] traffics;
+
+    /**
+     * @param graph the graph the edges belong to
+     * @param source the vertex index the route starts at
+     * @param edges the edge ids of the route in order, as returned by FastestPathEngine.edgePath or HopSearch.edgePath
+     */
+    public Route(RoutingGraph graph, int source, int[] edges) {
+        this.edges = edges.clone();
+        this.blocks = new Block[edges.length];
+        this.path = new ArrayList<>(edges.length + 1);
+        this.lengths = new double[edges.length + 1];
+        this.traffics = new double[edges.length + 1];
+
+        path.add(graph.intersection(source));
+        for (int i = 0; i < edges.length; i++) {
+            Block block = graph.block(edges[i]);
+            blocks[i] = block;
+            path.add(graph.intersection(graph.target(edges[i])));
+            lengths[i + 1] = lengths[i] + block.getLength();
+            // Same traffic as RUMaps.blockTraffic, so the totals match pathInformation
+            traffics[i + 1] = traffics[i] + block.getTrafficFactor() * block.getLength();
+        }
+    }
+
+    private Route() {
+        edges = new int[0];
+        blocks = new Block[0];
+        path = new ArrayList<>();
+        lengths = new double[] {0.0};
+        traffics = new double[] {0.0};
+    }
+
+    /**
+     * Builds the route of a path given as intersections, taking the first block in adjacency list order between each
+     * pair of consecutive intersections, as pathInformation always has.
+     *
+     * @param graph the routing graph of the network the path is on
+     * @param path the intersections of the path in order
+     * @return the route, or NONE if the path is empty
+     * @throws IllegalArgumentException if an intersection is not in the graph or two consecutive ones are not adjacent
+     */
+    public static Route of(RoutingGraph graph, List<Intersection> path) {
+        if (path.isEmpty()) return NONE;
+        int source = graph.indexOf(path.get(0));
+        if (source == -1) throw new IllegalArgumentException("Not in the network: " + path.get(0));
+        int[] edges = new int[path.size() - 1];
+        int u = source;
+        for (int i = 0; i < edges.length; i++) {
+            int w = graph.indexOf(path.get(i + 1));
+            int e = w == -1 ? -1 : graph.findEdge(u, w);
+            if (e == -1) throw new IllegalArgumentException("No block between " + path.get(i) + " and " + path.get(i + 1));
+            edges[i] = e;
+            u = w;
+        }
+        return new Route(graph, source, edges);
+    }
+
+    /**
+     * @return true if the query found no path
+     */
+    public boolean isEmpty() {
+        return path.isEmpty();
+    }
+
+    /**
+     * @return the intersections of the route in order; must not be modified
+     */
+    public ArrayList<Intersection> getPath() {
+        return path;
+    }
+
+    /**
+     * @return a read-only view of the blocks of the route in order
+     */
+    public List<Block> getBlocks() {
+        return Collections.unmodifiableList(Arrays.asList(blocks));
+    }
+
+    /**
+     * @return the block taken from intersection i to intersection i + 1
+     */
+    public Block getBlock(int i) {
+        return blocks[i];
+    }
+
+    /**
+     * @return the edge id of block i in the routing graph the route was built on
+     */
+    public int getEdge(int i) {
+        return edges[i];
+    }
+
+    /**
+     * @return the number of blocks along the route (one less than the number of intersections)
+     */
+    public int getHops() {
+        return blocks.length;
+    }
+
+    public double getLength() {
+        return lengths[blocks.length];
+    }
+
+    public double getTraffic() {
+        return traffics[blocks.length];
+    }
+
+    public double getAverageTrafficFactor() {
+        return getTraffic() / getLength();
+    }
+
+    /**
+     * @param blockCount a number of blocks from 0 to getHops()
+     * @return the total length of the first blockCount blocks
+     */
+    public double getLengthTo(int blockCount) {
+        return lengths[blockCount];
+    }
+
+    /**
+     * @param blockCount a number of blocks from 0 to getHops()
+     * @return the total traffic of the first blockCount blocks
+     */
+    public double getTrafficTo(int blockCount) {
+        return traffics[blockCount];
+    }
+
+    /**
+     * Returns the totals of the blocks actually taken, without walking the path again. They are the same as
+     * RUMaps.pathInformation(getPath()) unless the route took a block other than the first between two intersections.
+     * @return a double array containing the total length, average experienced traffic factor, and total traffic (in that order)
+     */
+    public double[] getInformation() {
+        return new double[] {getLength(), getAverageTrafficFactor(), getTraffic()};
+    }
+
+    @Override
+    public String toString() {
+        return "Route [traffic=" + getTraffic() + ", length=" + getLength() + ", hops=" + getHops() + ", path=" + path + "]";
+    }
+}
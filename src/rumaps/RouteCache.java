@@ -0,0 +1,170 @@
+package rumaps;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * The RouteCache class is a bounded least-recently-used cache of routing results on one network, keyed by
+ * (start, end, algorithm, constraints, traffic epoch).
+ *
+ * The traffic epoch is Network.getTrafficEpoch(), which changes whenever blocks are added to the network or the
+ * length, traffic factor or traffic of one of its blocks is set. Entries computed under an older epoch can never be
+ * returned, and the whole cache is dropped the first time a lookup sees a new epoch, so stale routes do not linger
+ * until they are evicted. Changes to other networks do not affect it.
+ *
+ * Cached values are shared between callers and must not be modified. Give each result type its own cache.
+ * Entries are keyed by a copy of the constraints, so changing a RouteConstraints after a query does not change
+ * which entry the query found.
+ *
+ * @param <V> the type of the cached results
+ */
+public class RouteCache<V> {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final Network network;
+    private final int capacity;
+    private final LinkedHashMap<Key, V> entries;
+    private long epoch;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * @param network the network the cached results were computed on
+     */
+    public RouteCache(Network network) {
+        this(network, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param network the network the cached results were computed on
+     * @param capacity the largest number of results kept
+     */
+    public RouteCache(Network network, int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        this.network = network;
+        this.epoch = network.getTrafficEpoch();
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, V> eldest) {
+                if (size() <= RouteCache.this.capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result for a query, computing and caching it on a miss.
+     * The computation runs outside the cache lock, so concurrent misses for the same key may both compute it.
+     *
+     * @param start the starting intersection, or null if the algorithm has none
+     * @param end the destination intersection, or null if the algorithm has none
+     * @param algorithm the name of the algorithm that produced the result
+     * @param constraints the constraints of the query, or null for none
+     * @param compute computes the result on a miss
+     * @return the cached or newly computed result
+     */
+    public V get(Intersection start, Intersection end, String algorithm, RouteConstraints constraints, Supplier<V> compute) {
+        long current = network.getTrafficEpoch();
+        Key key = new Key(start, end, algorithm, constraints, current);
+        synchronized (this) {
+            if (current != epoch) {
+                if (!entries.isEmpty()) invalidations++;
+                entries.clear();
+                epoch = current;
+            }
+            V value = entries.get(key);
+            if (value != null) {
+                hits++;
+                RoutingMetrics.cacheHit("RouteCache");
+                return value;
+            }
+            misses++;
+            RoutingMetrics.cacheMiss("RouteCache");
+        }
+
+        V value = compute.get();
+        synchronized (this) {
+            if (value != null && key.epoch == epoch) entries.put(key, value);
+        }
+        return value;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of times the cache was dropped because block weights changed
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * @return the fraction of lookups answered from the cache, 0 if there were none
+     */
+    public synchronized double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("RouteCache [size=%d/%d, hits=%d, misses=%d, hitRate=%.3f, evictions=%d, invalidations=%d]",
+            entries.size(), capacity, hits, misses, hitRate(), evictions, invalidations);
+    }
+
+    private static final class Key {
+        private final Intersection start;
+        private final Intersection end;
+        private final String algorithm;
+        // A copy of the constraints' state, or null for none
+        private final List<Object> constraints;
+        private final long epoch;
+        private final int hash;
+
+        Key(Intersection start, Intersection end, String algorithm, RouteConstraints constraints, long epoch) {
+            this.start = start;
+            this.end = end;
+            this.algorithm = algorithm;
+            this.constraints = constraints == null ? null : constraints.state();
+            this.epoch = epoch;
+            this.hash = Objects.hash(start, end, algorithm, constraints, epoch);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return epoch == other.epoch && hash == other.hash && Objects.equals(start, other.start) && Objects.equals(end, other.end)
+                && Objects.equals(algorithm, other.algorithm) && Objects.equals(constraints, other.constraints);
+        }
+    }
+}
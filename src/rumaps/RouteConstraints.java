@@ -0,0 +1,141 @@
+package rumaps;
+
+import java.util.*;
+
+/**
+ * The RouteConstraints class describes roads a single query may not use, without touching the shared network:
+ * - avoided blocks, by street name and block number (both directions)
+ * - avoided streets, by street name
+ * - a range of allowed road sizes (Block.getRoadSize())
+ *
+ * For the search engines the constraints are compiled into a bitset over the edge ids of a RoutingGraph, which the
+ * relaxation loops check with a single bit test. The compiled mask is cached for the last graph it was built for.
+ */
+public class RouteConstraints {
+    // Avoided block numbers by street name, so checking a block on a street without avoided blocks is one lookup
+    private final HashMap<String, HashSet<Integer>> avoidedBlocks = new HashMap<>();
+    private final HashSet<String> avoidedStreets = new HashSet<>();
+    private double minRoadSize = 0.0;
+    private double maxRoadSize = Double.POSITIVE_INFINITY;
+
+    private RoutingGraph compiledFor;
+    private long[] compiledMask;
+
+    /**
+     * Avoids one block, in both directions.
+     * @param block the block to avoid
+     * @return these constraints
+     */
+    public RouteConstraints avoidBlock(Block block) {
+        return avoidBlock(block.getStreetName(), block.getBlockNumber());
+    }
+
+    /**
+     * Avoids one block, in both directions.
+     * @param streetName the name of the street the block is on
+     * @param blockNumber the number of the block
+     * @return these constraints
+     */
+    public synchronized RouteConstraints avoidBlock(String streetName, int blockNumber) {
+        avoidedBlocks.computeIfAbsent(streetName, name -> new HashSet<>()).add(blockNumber);
+        compiledFor = null;
+        return this;
+    }
+
+    /**
+     * Avoids every block of a street.
+     * @param streetName the name of the street
+     * @return these constraints
+     */
+    public synchronized RouteConstraints avoidStreet(String streetName) {
+        avoidedStreets.add(streetName);
+        compiledFor = null;
+        return this;
+    }
+
+    /**
+     * Avoids every block whose road size is larger than maxRoadSize.
+     * @param maxRoadSize the largest allowed road size
+     * @return these constraints
+     */
+    public synchronized RouteConstraints maxRoadSize(double maxRoadSize) {
+        this.maxRoadSize = maxRoadSize;
+        compiledFor = null;
+        return this;
+    }
+
+    /**
+     * Avoids every block whose road size is smaller than minRoadSize.
+     * @param minRoadSize the smallest allowed road size
+     * @return these constraints
+     */
+    public synchronized RouteConstraints minRoadSize(double minRoadSize) {
+        this.minRoadSize = minRoadSize;
+        compiledFor = null;
+        return this;
+    }
+
+    /**
+     * @param block a block of the network
+     * @return true if the constraints allow travelling on the block
+     */
+    public synchronized boolean allows(Block block) {
+        if (block.getRoadSize() < minRoadSize || block.getRoadSize() > maxRoadSize) return false;
+        if (avoidedStreets.isEmpty() && avoidedBlocks.isEmpty()) return true;
+        if (avoidedStreets.contains(block.getStreetName())) return false;
+        HashSet<Integer> numbers = avoidedBlocks.get(block.getStreetName());
+        return numbers == null || !numbers.contains(block.getBlockNumber());
+    }
+
+    /**
+     * Returns the bitset of edges of the graph these constraints forbid.
+     * @param graph the graph the mask is for
+     * @return a mask over edge ids (shared, do not modify), or null if every edge is allowed
+     */
+    public synchronized long[] blockedEdges(RoutingGraph graph) {
+        if (compiledFor != graph) {
+            long[] mask = Bits.create(graph.edgeCount());
+            boolean any = false;
+            for (int e = 0; e < graph.edgeCount(); e++) {
+                if (!allows(graph.block(e))) {
+                    Bits.set(mask, e);
+                    any = true;
+                }
+            }
+            compiledMask = any ? mask : null;
+            compiledFor = graph;
+        }
+        return compiledMask;
+    }
+
+    /**
+     * @return a copy of what these constraints avoid, equal for equal constraints and unaffected by later changes
+     */
+    synchronized List<Object> state() {
+        HashMap<String, HashSet<Integer>> blocks = new HashMap<>();
+        for (Map.Entry<String, HashSet<Integer>> entry : avoidedBlocks.entrySet()) {
+            blocks.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
+        return Arrays.<Object>asList(blocks, new HashSet<>(avoidedStreets), minRoadSize, maxRoadSize);
+    }
+
+    @Override
+    public int hashCode() {
+        return state().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        return state().equals(((RouteConstraints) obj).state());
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RouteConstraints [avoidedBlocks=" + avoidedBlocks + ", avoidedStreets=" + avoidedStreets
+                + ", minRoadSize=" + minRoadSize + ", maxRoadSize=" + maxRoadSize + "]";
+    }
+}
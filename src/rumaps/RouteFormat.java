@@ -0,0 +1,118 @@
+package rumaps;
+
+import java.util.*;
+
+/**
+ * The RouteFormat class holds the text formats shared by the headless entry points (RoutingServer, RoutingCli):
+ * - intersection specs, either an intersection index ("12") or a coordinate ("108,341")
+ * - JSON and CSV renderings of paths and their information
+ *
+ * Everything is written by hand into a StringBuilder, so no JSON library is needed.
+ */
+final class RouteFormat {
+
+    private RouteFormat() {
+    }
+
+    /**
+     * Parses an intersection spec.
+     *
+     * @param network the network the intersection belongs to
+     * @param spec an intersection index, or x and y separated by a comma or colon
+     * @return the intersection
+     * @throws IllegalArgumentException if the spec is malformed or names no intersection of the network
+     */
+    static Intersection parseIntersection(Network network, String spec) {
+        if (spec == null || spec.isEmpty()) throw new IllegalArgumentException("Missing intersection");
+        spec = spec.trim();
+        int separator = Math.max(spec.indexOf(','), spec.indexOf(':'));
+        int index;
+        try {
+            if (separator == -1) {
+                index = Integer.parseInt(spec);
+                Intersection[] intersections = network.getIntersections();
+                if (index < 0 || index >= intersections.length || intersections[index] == null) index = -1;
+            } else {
+                int x = Integer.parseInt(spec.substring(0, separator).trim());
+                int y = Integer.parseInt(spec.substring(separator + 1).trim());
+                index = network.findIntersection(x, y);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed intersection: " + spec);
+        }
+        if (index == -1) throw new IllegalArgumentException("No such intersection: " + spec);
+        return network.getIntersections()[index];
+    }
+
+    /**
+     * Appends a path as a JSON array of [x, y] pairs.
+     */
+    static StringBuilder appendPath(StringBuilder out, List<Intersection> path) {
+        out.append('[');
+        for (int i = 0; i < path.size(); i++) {
+            if (i > 0) out.append(',');
+            Coordinate c = path.get(i).getCoordinate();
+            out.append('[').append(c.getX()).append(',').append(c.getY()).append(']');
+        }
+        return out.append(']');
+    }
+
+    /**
+     * Appends a route as a JSON object with its path and, if the path has at least one block, its information.
+     *
+     * @param information the result of RUMaps.pathInformation for the path
+     */
+    static StringBuilder appendRoute(StringBuilder out, List<Intersection> path, double[] information) {
+        out.append("{\"found\":").append(!path.isEmpty());
+        out.append(",\"intersections\":").append(path.size());
+        if (path.size() > 1) {
+            out.append(",\"length\":");
+            appendNumber(out, information[0]);
+            out.append(",\"trafficFactor\":");
+            appendNumber(out, information[1]);
+            out.append(",\"traffic\":");
+            appendNumber(out, information[2]);
+        }
+        out.append(",\"path\":");
+        appendPath(out, path);
+        return out.append('}');
+    }
+
+    /**
+     * Appends a finite number as is and anything else as null, since JSON has no NaN or infinity.
+     */
+    static StringBuilder appendNumber(StringBuilder out, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return out.append("null");
+        return out.append(value);
+    }
+
+    static StringBuilder appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':  out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                    else out.append(c);
+            }
+        }
+        return out.append('"');
+    }
+
+    /**
+     * Appends a path as x:y pairs separated by spaces, which needs no quoting in CSV.
+     */
+    static StringBuilder appendCsvPath(StringBuilder out, List<Intersection> path) {
+        for (int i = 0; i < path.size(); i++) {
+            if (i > 0) out.append(' ');
+            Coordinate c = path.get(i).getCoordinate();
+            out.append(c.getX()).append(':').append(c.getY());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,378 @@
+package rumaps;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The RouteRenderer class draws route maps in bulk without a window, for headless servers and scripts.
+ *
+ * Every map is drawn by a MapPanel that is never shown, so it looks exactly like the application at its default view:
+ * satellite image, overlay, blocks and intersection markers, with the route in the fastest path color and its first
+ * and last stops selected.
+ * - The satellite and overlay images are decoded once, by ImageCache while the network loads, and shared by every
+ *   worker thread.
+ * - Each worker thread has its own panel, whose cached layers are reused for every route it draws.
+ * - PNG maps are the panel drawn into an image.
+ * - SVG maps are streamed: the map without any route is written once as BACKGROUND_FILE and referenced by every SVG,
+ *   and the blocks and stops of the route are written over it as vector shapes in the panel's colors and strokes.
+ *
+ * It reads one route per line from standard input or a file: a name, then two or more stops, each leg between
+ * consecutive stops being the fastest path:
+ *
+ *     hospital-shuttle 0 50 120
+ *     busch-loop 108,341 221,361 108,341
+ *
+ * Stops are given as an index or as x,y coordinates; blank lines and lines starting with # are skipped. The map of
+ * each route is written to the output directory as name.png or name.svg. Routes that cannot be drawn are reported on
+ * standard error with their line number and the others are still drawn.
+ *
+ * Usage: java rumaps.RouteRenderer network.in [--input routes.txt] [--output dir] [--format png|svg] [--threads n]
+ */
+public class RouteRenderer {
+    public static final String BACKGROUND_FILE = "map.png";
+    private static final String[] IMAGE_PATHS = {"assets/satellite.png", "assets/overlay.png"};
+    private static final double OVERLAY_TRANSPARENCY = 0.125;
+    private static final int SEED = 2024;
+
+    private final RUMaps rumaps;
+    private final Image satelliteImage;
+    private final Image overlayImage;
+    private final double overlayTransparency;
+    private final ThreadLocal<MapPanel> panels = ThreadLocal.withInitial(this::createPanel);
+
+    private long routes;
+    private long errors;
+
+    /**
+     * @param rumaps the loaded map
+     * @param satelliteImage the decoded satellite image, or null for none
+     * @param overlayImage the decoded overlay image
+     * @param overlayTransparency the opacity of the overlay
+     */
+    public RouteRenderer(RUMaps rumaps, Image satelliteImage, Image overlayImage, double overlayTransparency) {
+        this.rumaps = rumaps;
+        this.satelliteImage = satelliteImage;
+        this.overlayImage = overlayImage;
+        this.overlayTransparency = overlayTransparency;
+    }
+
+    /**
+     * Finds the route through the stops, taking the fastest path between each pair of consecutive stops.
+     *
+     * @param stops the stops in order, at least two
+     * @return the route
+     * @throws IllegalArgumentException if there are fewer than two stops or some leg has no path
+     */
+    public Route route(List<Intersection> stops) {
+        if (stops.size() < 2) throw new IllegalArgumentException("A route needs at least two stops");
+        RoutingGraph graph = rumaps.getRoutingGraph();
+        int[] edges = new int[0];
+        for (int i = 0; i < stops.size() - 1; i++) {
+            Route leg = rumaps.fastestRoute(stops.get(i), stops.get(i + 1), null);
+            if (leg.isEmpty()) throw new IllegalArgumentException("No path from " + stops.get(i) + " to " + stops.get(i + 1));
+            int start = edges.length;
+            edges = Arrays.copyOf(edges, start + leg.getHops());
+            for (int j = 0; j < leg.getHops(); j++) {
+                edges[start + j] = leg.getEdge(j);
+            }
+        }
+        return new Route(graph, graph.indexOf(stops.get(0)), edges);
+    }
+
+    /**
+     * Draws the map with a route on it, on the calling thread's panel.
+     *
+     * @param route the route, or Route.NONE for the map alone
+     * @return a new image the size of the panel
+     */
+    public BufferedImage render(Route route) {
+        MapPanel panel = panels.get();
+        panel.highlightedFastestPath(route);
+        panel.selectIntersection(null);
+        if (!route.isEmpty()) {
+            panel.selectIntersection(route.getPath().get(0));
+            panel.selectIntersection(route.getPath().get(route.getPath().size() - 1));
+        }
+        BufferedImage image = new BufferedImage(panel.getWidth(), panel.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        panel.paint(g2d);
+        g2d.dispose();
+        return image;
+    }
+
+    /**
+     * Writes the map with a route on it as a PNG image.
+     */
+    public void writePng(Route route, OutputStream out) throws IOException {
+        ImageIO.write(render(route), "png", out);
+    }
+
+    /**
+     * Writes the map without any route as a PNG image, the background of the SVG maps.
+     */
+    public void writeBackground(OutputStream out) throws IOException {
+        writePng(Route.NONE, out);
+    }
+
+    /**
+     * Streams a route as an SVG image over the map without any route.
+     *
+     * @param route the route
+     * @param out where the SVG goes; flushed but not closed
+     * @param backgroundHref the location of the image written by writeBackground, relative to the SVG
+     */
+    public void writeSvg(Route route, Writer out, String backgroundHref) throws IOException {
+        MapPanel panel = panels.get();
+        int width = panel.getWidth(), height = panel.getHeight();
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" width=\"" + width
+            + "\" height=\"" + height + "\" viewBox=\"0 0 " + width + " " + height + "\">\n");
+        out.write("<image xlink:href=\"" + escape(backgroundHref) + "\" width=\"" + width + "\" height=\"" + height + "\"/>\n");
+
+        // The default BasicStroke MapPanel draws blocks with: square caps, mitered joins
+        out.write("<g fill=\"none\" stroke=\"" + hex(panel.fastestPathColor)
+            + "\" stroke-linecap=\"square\" stroke-linejoin=\"miter\" stroke-miterlimit=\"10\">\n");
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < route.getHops(); i++) {
+            Block block = route.getBlock(i);
+            data.setLength(0);
+            appendPathData(data, block.getPath());
+            out.write("<path stroke-width=\"" + number(block.getRoadSize()) + "\" d=\"" + data + "\"/>\n");
+        }
+        out.write("</g>\n");
+
+        if (!route.isEmpty()) {
+            ArrayList<Intersection> path = route.getPath();
+            writeSelectedIntersection(out, path.get(0));
+            if (!path.get(path.size() - 1).equals(path.get(0))) writeSelectedIntersection(out, path.get(path.size() - 1));
+        }
+        out.write("</svg>\n");
+        out.flush();
+    }
+
+    /**
+     * Draws the routes of every line read from in into directory, in parallel.
+     *
+     * @param in the route lines
+     * @param directory where the maps go; created if missing
+     * @param svg true to write SVG, false to write PNG
+     * @param pool the pool the routes are drawn on
+     * @return the number of routes read, including those that failed
+     */
+    public long run(BufferedReader in, File directory, boolean svg, ForkJoinPool pool) throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        ArrayList<Long> lineNumbers = new ArrayList<>();
+        long lineNumber = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            lines.add(line);
+            lineNumbers.add(lineNumber);
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Cannot create " + directory);
+        if (svg) {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(directory, BACKGROUND_FILE)))) {
+                writeBackground(out);
+            }
+        }
+
+        String[] failures = new String[lines.size()];
+        try {
+            pool.submit(() -> IntStream.range(0, lines.size()).parallel()
+                .forEach(i -> failures[i] = draw(lines.get(i), directory, svg))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while drawing routes");
+        } catch (ExecutionException e) {
+            throw new IOException("Drawing failed", e.getCause());
+        }
+        for (int i = 0; i < failures.length; i++) {
+            if (failures[i] == null) continue;
+            System.err.println("Line " + lineNumbers.get(i) + ": " + failures[i]);
+            errors++;
+        }
+        routes += lines.size();
+        return lines.size();
+    }
+
+    public long getRoutes() {
+        return routes;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Draws the route of one line into directory.
+     * @return null if the map was written, otherwise why not
+     */
+    private String draw(String line, File directory, boolean svg) {
+        String[] tokens = line.split("\\s+");
+        try {
+            String name = tokens[0];
+            if (!name.matches("[A-Za-z0-9._-]+") || name.startsWith(".")) throw new IllegalArgumentException("Invalid route name: " + name);
+            ArrayList<Intersection> stops = new ArrayList<>();
+            for (int i = 1; i < tokens.length; i++) {
+                stops.add(RouteFormat.parseIntersection(rumaps.getRutgers(), tokens[i]));
+            }
+            Route route = route(stops);
+            File file = new File(directory, name + (svg ? ".svg" : ".png"));
+            if (svg) {
+                try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+                    writeSvg(route, out, BACKGROUND_FILE);
+                }
+            } else {
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+                    writePng(route, out);
+                }
+            }
+            return null;
+        } catch (IllegalArgumentException | IOException e) {
+            return e.getMessage();
+        }
+    }
+
+    private MapPanel createPanel() {
+        MapPanel panel = new MapPanel(null, satelliteImage, overlayImage, overlayTransparency);
+        Network network = rumaps.getRutgers();
+        for (Intersection intersection : network.getIntersections()) {
+            if (intersection != null) panel.addIntersection(intersection);
+        }
+        for (int v = 0; v < network.getIntersections().length; v++) {
+            for (Block block = network.adj(v); block != null; block = block.getNext()) {
+                panel.addBlock(block);
+            }
+        }
+        panel.setSize(panel.getPreferredSize());
+        // Paint straight into the image rather than through the RepaintManager's back buffer, which workers would share
+        panel.setDoubleBuffered(false);
+        return panel;
+    }
+
+    /**
+     * Writes the marker of a selected intersection the way MapPanel draws it: a white disc under a blue one.
+     */
+    private static void writeSelectedIntersection(Writer out, Intersection intersection) throws IOException {
+        int x = intersection.getCoordinate().getX(), y = intersection.getCoordinate().getY();
+        out.write("<circle cx=\"" + x + "\" cy=\"" + y + "\" r=\"5\" fill=\"#ffffff\" fill-opacity=\"" + number(210 / 255.0f) + "\"/>\n");
+        out.write("<circle cx=\"" + x + "\" cy=\"" + y + "\" r=\"4\" fill=\"#0f53ff\"/>\n");
+    }
+
+    private static void appendPathData(StringBuilder out, Shape shape) {
+        double[] coords = new double[6];
+        for (PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+            int points;
+            switch (it.currentSegment(coords)) {
+                case PathIterator.SEG_MOVETO:  out.append('M'); points = 1; break;
+                case PathIterator.SEG_LINETO:  out.append('L'); points = 1; break;
+                case PathIterator.SEG_QUADTO:  out.append('Q'); points = 2; break;
+                case PathIterator.SEG_CUBICTO: out.append('C'); points = 3; break;
+                default:                       out.append('Z'); points = 0; break;
+            }
+            for (int i = 0; i < 2 * points; i++) {
+                if (i > 0) out.append(' ');
+                out.append(number(coords[i]));
+            }
+        }
+    }
+
+    private static String number(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static String hex(Color color) {
+        return String.format("#%02x%02x%02x", color.getRed(), color.getGreen(), color.getBlue());
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;");
+    }
+
+    /**
+     * @return the value of the option before index i, exiting with the usage message if it has none
+     */
+    private static String value(String[] args, int i) {
+        if (i == args.length || args[i].startsWith("--")) usage("Missing value for " + args[i - 1]);
+        return args[i];
+    }
+
+    private static int positive(String[] args, int i) {
+        String value = value(args, i);
+        try {
+            int n = Integer.parseInt(value);
+            if (n > 0) return n;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        usage(args[i - 1] + " must be a positive integer: " + value);
+        return 0;
+    }
+
+    /**
+     * Prints a message, if any, and the usage line to standard error, and exits with status 2.
+     */
+    private static void usage(String message) {
+        if (message != null) System.err.println(message);
+        System.err.println("Usage: java rumaps.RouteRenderer network.in [--input routes.txt] [--output dir] [--format png|svg] [--threads n]");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Before anything touches AWT, so that no display is needed
+        if (System.getProperty("java.awt.headless") == null) System.setProperty("java.awt.headless", "true");
+        if (args.length == 0) usage(null);
+        String networkFile = args[0];
+        String inputFile = null, outputDirectory = ".", format = "png";
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--input":   inputFile = value(args, ++i); break;
+                case "--output":  outputDirectory = value(args, ++i); break;
+                case "--format":  format = value(args, ++i); break;
+                case "--threads": threads = positive(args, ++i); break;
+                default:          usage("Unknown option: " + args[i]);
+            }
+        }
+        if (!"png".equals(format) && !"svg".equals(format)) usage("Unknown format: " + format);
+
+        long loadStarted = System.nanoTime();
+        // Decoded while the network loads
+        ImageCache.load(IMAGE_PATHS[0]);
+        ImageCache.load(IMAGE_PATHS[1]);
+        StdRandom.setSeed(SEED);
+        RUMaps rumaps = RUMaps.load(networkFile);
+        rumaps.getRoutingGraph();
+        Image satellite = ImageCache.get(IMAGE_PATHS[0]);
+        Image overlay = ImageCache.get(IMAGE_PATHS[1]);
+        long loaded = System.nanoTime();
+
+        RouteRenderer renderer = new RouteRenderer(rumaps, satellite, overlay, OVERLAY_TRANSPARENCY);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (BufferedReader in = new BufferedReader(inputFile == null
+                 ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                 : new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8))) {
+            renderer.run(in, new File(outputDirectory), "svg".equals(format), pool);
+        } finally {
+            pool.shutdown();
+        }
+        long finished = System.nanoTime();
+
+        double seconds = (finished - loaded) / 1e9;
+        System.err.printf("Loaded %s and images in %.1f ms; drew %d routes (%d errors) in %.3f s on %d threads: %.1f routes/s%n",
+            networkFile, (loaded - loadStarted) / 1e6, renderer.getRoutes(), renderer.getErrors(), seconds, threads,
+            seconds > 0 ? renderer.getRoutes() / seconds : 0.0);
+    }
+}
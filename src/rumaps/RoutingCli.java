@@ -0,0 +1,271 @@
+package rumaps;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The RoutingCli class runs RUMaps queries without a window, for headless servers and scripts.
+ *
+ * It loads a network file, then reads one query per line from standard input or a file:
+ *
+ *     fastest 0 50
+ *     minimize 108,341 221,361
+ *     reachable 3
+ *
+ * Intersections are given as an index or as x,y coordinates; blank lines and lines starting with # are skipped.
+ * Results (path, length, average traffic factor and traffic) are written as NDJSON (one JSON object per line) or
+ * CSV, in input order.
+ *
+ * Input is streamed: lines are read in chunks of CHUNK_SIZE, each chunk is answered in parallel on a fork-join pool,
+ * and its results are written through a buffered writer before the next chunk is read. Throughput is reported on
+ * standard error at the end.
+ *
+ * Usage: java rumaps.RoutingCli network.in [--input queries.txt] [--output results] [--format ndjson|csv] [--threads n]
+ */
+public class RoutingCli {
+    public static final int CHUNK_SIZE = 1024;
+    private static final int SEED = 2024;
+
+    private static final String CSV_HEADER = "line,algorithm,start,end,found,intersections,length,trafficFactor,traffic,path,error";
+
+    private final RUMaps rumaps;
+    private final Network network;
+    private final boolean csv;
+
+    private long queries;
+    private long errors;
+
+    /**
+     * @param rumaps the loaded map
+     * @param csv true to write CSV, false to write NDJSON
+     */
+    public RoutingCli(RUMaps rumaps, boolean csv) {
+        this.rumaps = rumaps;
+        this.network = rumaps.getRutgers();
+        this.csv = csv;
+    }
+
+    /**
+     * Answers every query read from in and writes the results to out, in input order.
+     *
+     * @param in the query lines
+     * @param out where the results go; flushed but not closed
+     * @param pool the pool the queries of each chunk run on
+     * @return the number of queries answered, including those that failed
+     */
+    public long run(BufferedReader in, Writer out, ForkJoinPool pool) throws IOException {
+        if (csv) out.write(CSV_HEADER + "\n");
+        String[] lines = new String[CHUNK_SIZE];
+        long[] lineNumbers = new long[CHUNK_SIZE];
+        String[] results = new String[CHUNK_SIZE];
+        boolean[] failed = new boolean[CHUNK_SIZE];
+        long lineNumber = 0;
+
+        while (true) {
+            int count = 0;
+            String line;
+            while (count < CHUNK_SIZE && (line = in.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                lines[count] = line;
+                lineNumbers[count] = lineNumber;
+                count++;
+            }
+            if (count == 0) break;
+
+            int chunk = count;
+            try {
+                pool.submit(() -> IntStream.range(0, chunk).parallel()
+                    .forEach(i -> answer(lineNumbers[i], lines[i], results, failed, i))).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while answering queries");
+            } catch (ExecutionException e) {
+                throw new IOException("Query failed", e.getCause());
+            }
+            for (int i = 0; i < chunk; i++) {
+                out.write(results[i]);
+                out.write('\n');
+                if (failed[i]) errors++;
+            }
+            queries += chunk;
+        }
+        out.flush();
+        return queries;
+    }
+
+    public long getQueries() {
+        return queries;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Answers one query line into results[slot], recording in failed[slot] whether it failed. A query that fails for
+     * any reason becomes an error line, so one bad query does not abort the rest of the batch.
+     */
+    private void answer(long lineNumber, String line, String[] results, boolean[] failed, int slot) {
+        String algorithm = line.split("\\s+", 2)[0];
+        try {
+            results[slot] = answer(lineNumber, line);
+            failed[slot] = false;
+        } catch (RuntimeException e) {
+            // A rejected query explains itself; anything else is reported with its type
+            String message = e instanceof IllegalArgumentException ? e.getMessage() : e.toString();
+            results[slot] = csv ? csvError(lineNumber, algorithm, message) : jsonError(lineNumber, algorithm, message);
+            failed[slot] = true;
+        }
+    }
+
+    /**
+     * Answers one query line.
+     * @return the result line, without the line terminator
+     * @throws IllegalArgumentException if the line is not a valid query
+     */
+    String answer(long lineNumber, String line) {
+        String[] tokens = line.split("\\s+");
+        String algorithm = tokens[0];
+        switch (algorithm) {
+            case "fastest":
+            case "minimize": {
+                if (tokens.length != 3) throw new IllegalArgumentException("Expected: " + algorithm + " <start> <end>");
+                Intersection start = RouteFormat.parseIntersection(network, tokens[1]);
+                Intersection end = RouteFormat.parseIntersection(network, tokens[2]);
+                ArrayList<Intersection> path = algorithm.equals("fastest")
+                    ? rumaps.fastestPath(start, end, (RouteConstraints) null)
+                    : rumaps.minimizeIntersections(start, end);
+                double[] information = path.size() > 1 ? rumaps.pathInformation(path) : new double[] {0.0, 0.0, 0.0};
+                return csv ? csvRoute(lineNumber, algorithm, tokens[1], tokens[2], path, information)
+                           : jsonRoute(lineNumber, algorithm, path, information);
+            }
+            case "reachable": {
+                if (tokens.length != 2) throw new IllegalArgumentException("Expected: reachable <start>");
+                ArrayList<Intersection> reachable = rumaps.reachableIntersections(RouteFormat.parseIntersection(network, tokens[1]));
+                return csv ? csvRoute(lineNumber, algorithm, tokens[1], "", reachable, null)
+                           : jsonRoute(lineNumber, algorithm, reachable, null);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        }
+    }
+
+    private static String jsonRoute(long lineNumber, String algorithm, ArrayList<Intersection> path, double[] information) {
+        StringBuilder out = new StringBuilder("{\"line\":").append(lineNumber).append(",\"algorithm\":");
+        RouteFormat.appendString(out, algorithm).append(",\"result\":");
+        if (information == null) {
+            out.append("{\"count\":").append(path.size()).append(",\"intersections\":");
+            RouteFormat.appendPath(out, path).append('}');
+        } else {
+            RouteFormat.appendRoute(out, path, information);
+        }
+        return out.append('}').toString();
+    }
+
+    private static String jsonError(long lineNumber, String algorithm, String message) {
+        StringBuilder out = new StringBuilder("{\"line\":").append(lineNumber).append(",\"algorithm\":");
+        RouteFormat.appendString(out, algorithm).append(",\"error\":");
+        return RouteFormat.appendString(out, String.valueOf(message)).append('}').toString();
+    }
+
+    private static String csvRoute(long lineNumber, String algorithm, String start, String end, ArrayList<Intersection> path, double[] information) {
+        StringBuilder out = new StringBuilder().append(lineNumber).append(',').append(algorithm).append(',');
+        out.append(csvField(start)).append(',').append(csvField(end)).append(',');
+        out.append(!path.isEmpty()).append(',').append(path.size()).append(',');
+        if (information != null && path.size() > 1) {
+            out.append(information[0]).append(',').append(information[1]).append(',').append(information[2]);
+        } else {
+            out.append(",,");
+        }
+        out.append(',');
+        RouteFormat.appendCsvPath(out, path);
+        return out.append(',').toString();
+    }
+
+    private static String csvError(long lineNumber, String algorithm, String message) {
+        return lineNumber + "," + csvField(algorithm) + ",,,false,0,,,,," + csvField(String.valueOf(message));
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1) return value;
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * @return the value of the option before index i, exiting with the usage message if it has none
+     */
+    private static String value(String[] args, int i) {
+        if (i == args.length || args[i].startsWith("--")) usage("Missing value for " + args[i - 1]);
+        return args[i];
+    }
+
+    private static int positive(String[] args, int i) {
+        String value = value(args, i);
+        try {
+            int n = Integer.parseInt(value);
+            if (n > 0) return n;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        usage(args[i - 1] + " must be a positive integer: " + value);
+        return 0;
+    }
+
+    /**
+     * Prints a message, if any, and the usage line to standard error, and exits with status 2.
+     */
+    private static void usage(String message) {
+        if (message != null) System.err.println(message);
+        System.err.println("Usage: java rumaps.RoutingCli network.in [--input queries.txt] [--output results] [--format ndjson|csv] [--threads n]");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) usage(null);
+        String networkFile = args[0];
+        String inputFile = null, outputFile = null, format = "ndjson";
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--input":   inputFile = value(args, ++i); break;
+                case "--output":  outputFile = value(args, ++i); break;
+                case "--format":  format = value(args, ++i); break;
+                case "--threads": threads = positive(args, ++i); break;
+                default:          usage("Unknown option: " + args[i]);
+            }
+        }
+        if (!"ndjson".equals(format) && !"csv".equals(format)) usage("Unknown format: " + format);
+
+        long loadStarted = System.nanoTime();
+        StdRandom.setSeed(SEED);
+        RUMaps rumaps = RUMaps.load(networkFile);
+        rumaps.getRoutingGraph();
+        long loaded = System.nanoTime();
+
+        RoutingCli cli = new RoutingCli(rumaps, "csv".equals(format));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (BufferedReader in = new BufferedReader(inputFile == null
+                 ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                 : new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8), 1 << 16);
+             Writer out = new BufferedWriter(outputFile == null
+                 ? new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8)
+                 : new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8), 1 << 16)) {
+            cli.run(in, out, pool);
+        } finally {
+            pool.shutdown();
+        }
+        long finished = System.nanoTime();
+
+        double seconds = (finished - loaded) / 1e9;
+        System.err.printf("Loaded %s in %.1f ms; answered %d queries (%d errors) in %.3f s on %d threads: %.0f queries/s%n",
+            networkFile, (loaded - loadStarted) / 1e6, cli.getQueries(), cli.getErrors(), seconds, threads,
+            seconds > 0 ? cli.getQueries() / seconds : 0.0);
+        if (RoutingMetrics.isEnabled()) System.err.print(RoutingMetrics.dump());
+    }
+}
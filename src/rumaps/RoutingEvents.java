@@ -0,0 +1,113 @@
+package rumaps;
+
+/**
+ * The RoutingEvents class emits the Java Flight Recorder events of RUMaps, so a recording shows where the time of a
+ * slow interaction went:
+ * - rumaps.NetworkLoad - one per phase of loading a network with RUMaps.load (parse, dedup, weighting)
+ * - rumaps.Query - one per routing query, with the algorithm, start and end vertex and the search work
+ * - rumaps.Paint - one per MapPanel paint pass, with the number of blocks and intersections drawn
+ *
+ * Events cost nothing unless a recording is running with them enabled, for example:
+ *
+ *     java -XX:StartFlightRecording=filename=rumaps.jfr,settings=profile rumaps.Driver
+ *     jfr print --events rumaps.Query rumaps.jfr
+ *
+ * JDK Mission Control shows them under the RUMaps category.
+ *
+ * The events themselves are defined by JfrRoutingEvents, which is compiled from jfr/ on Java 11 or later and loaded
+ * by name the first time an event is started. Without it, or on a JVM without jdk.jfr, every begin method returns
+ * null and every end method does nothing, so this class and its callers compile and run on Java 8.
+ */
+public final class RoutingEvents {
+    /**
+     * Starts and ends the events; implemented by JfrRoutingEvents. The objects returned by the begin methods are the
+     * started events, passed back to the matching end method, or null when no recording wants them.
+     */
+    interface Recorder {
+        Object beginLoad(String phase);
+
+        void endLoad(Object event, int items);
+
+        boolean isQueryEnabled();
+
+        Object beginQuery(String algorithm, int start, int end);
+
+        void endQuery(Object event, long settled, long relaxed, long pushes);
+
+        Object beginPaint();
+
+        void endPaint(Object event, int blocksDrawn, int intersectionsDrawn);
+    }
+
+    private static final Recorder recorder = loadRecorder();
+
+    private RoutingEvents() {
+    }
+
+    private static Recorder loadRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Recorder) Class.forName("rumaps.JfrRoutingEvents").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if flight recorder events are compiled in and the JVM supports them
+     */
+    public static boolean isAvailable() {
+        return recorder != null;
+    }
+
+    /**
+     * Starts timing a phase of loading a network.
+     * @param phase parse, dedup or weighting
+     * @return the event, or null
+     */
+    static Object beginLoad(String phase) {
+        return recorder == null ? null : recorder.beginLoad(phase);
+    }
+
+    /**
+     * @param event the event returned by beginLoad
+     * @param items the blocks parsed, intersections deduplicated or blocks weighted
+     */
+    static void endLoad(Object event, int items) {
+        if (event != null) recorder.endLoad(event, items);
+    }
+
+    /**
+     * @return true if a recording wants rumaps.Query events
+     */
+    static boolean isQueryEnabled() {
+        return recorder != null && recorder.isQueryEnabled();
+    }
+
+    /**
+     * Starts timing a routing query.
+     * @param algorithm the name the query is recorded under
+     * @param start the start vertex index, or -1
+     * @param end the end vertex index, or -1 if the query has none
+     * @return the event, or null
+     */
+    static Object beginQuery(String algorithm, int start, int end) {
+        return recorder == null ? null : recorder.beginQuery(algorithm, start, end);
+    }
+
+    static void endQuery(Object event, long settled, long relaxed, long pushes) {
+        if (event != null) recorder.endQuery(event, settled, relaxed, pushes);
+    }
+
+    /**
+     * Starts timing a MapPanel paint pass.
+     * @return the event, or null
+     */
+    static Object beginPaint() {
+        return recorder == null ? null : recorder.beginPaint();
+    }
+
+    static void endPaint(Object event, int blocksDrawn, int intersectionsDrawn) {
+        if (event != null) recorder.endPaint(event, blocksDrawn, intersectionsDrawn);
+    }
+}
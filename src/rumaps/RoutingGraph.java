@@ -0,0 +1,220 @@
+package rumaps;
+
+import java.util.*;
+
+/**
+ * The RoutingGraph class is a compact, index-based snapshot of a Network that the routing engines search over.
+ *
+ * The Network stores its edges as linked lists of Block objects and identifies intersections by a linear
+ * coordinate scan. The RoutingGraph flattens those lists into compressed sparse row (CSR) arrays once:
+ * - offsets - edges of vertex v are the edge ids offsets[v] (inclusive) to offsets[v + 1] (exclusive)
+ * - targets - the vertex index on the other end of each edge
+ * - tails - the vertex index each edge leaves from
+ * - blocks - the directed Block object backing each edge (traffic and length are read from it)
+ * - twins - the edge in the opposite direction created from the same block, used by reverse searches
+ *
+ * Edges appear in the same order as in the Network adjacency lists, so searches over the graph visit
+ * intersections in the same order as searches over the Network.
+ *
+ * The snapshot remembers the Network modification count it was built from so callers can tell when it is stale.
+ */
+public class RoutingGraph {
+    private final Intersection[] intersections;
+    private final HashMap<Coordinate, Integer> indexByCoordinate;
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] tails;
+    private final Block[] blocks;
+    private final int[] twins;
+
+    private final long version;
+
+    private RoutingGraph(Intersection[] intersections, HashMap<Coordinate, Integer> indexByCoordinate,
+                         int[] offsets, int[] targets, int[] tails, Block[] blocks, int[] twins, long version) {
+        this.intersections = intersections;
+        this.indexByCoordinate = indexByCoordinate;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.tails = tails;
+        this.blocks = blocks;
+        this.twins = twins;
+        this.version = version;
+    }
+
+    /**
+     * Builds a routing graph from the current state of a network.
+     *
+     * @param network the network to snapshot
+     * @return the routing graph
+     */
+    public static RoutingGraph of(Network network) {
+        Intersection[] source = network.getIntersections();
+        Block[] adj = network.getAdjacencyList();
+        int n = source.length;
+
+        Intersection[] intersections = Arrays.copyOf(source, n);
+        HashMap<Coordinate, Integer> indexByCoordinate = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            if (intersections[i] != null) {
+                indexByCoordinate.putIfAbsent(intersections[i].getCoordinate(), i);
+            }
+        }
+
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            int degree = 0;
+            for (Block ptr = v < adj.length ? adj[v] : null; ptr != null; ptr = ptr.getNext()) {
+                degree++;
+            }
+            offsets[v + 1] = offsets[v] + degree;
+        }
+
+        int[] targets = new int[offsets[n]];
+        int[] tails = new int[offsets[n]];
+        Block[] blocks = new Block[offsets[n]];
+        for (int v = 0; v < n; v++) {
+            int e = offsets[v];
+            for (Block ptr = v < adj.length ? adj[v] : null; ptr != null; ptr = ptr.getNext()) {
+                Integer w = indexByCoordinate.get(ptr.other(intersections[v]).getCoordinate());
+                targets[e] = w == null ? v : w;
+                tails[e] = v;
+                blocks[e] = ptr;
+                e++;
+            }
+        }
+
+        int[] twins = new int[offsets[n]];
+        for (int v = 0; v < n; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                twins[e] = findTwin(offsets, targets, blocks, v, e);
+            }
+        }
+        return new RoutingGraph(intersections, indexByCoordinate, offsets, targets, tails, blocks, twins, network.getModCount());
+    }
+
+    /**
+     * Finds the edge running from the head of e back to its tail that was copied from the same block.
+     * Falls back to any edge between the two vertices, and to e itself if there is none.
+     */
+    private static int findTwin(int[] offsets, int[] targets, Block[] blocks, int tail, int e) {
+        int head = targets[e];
+        int fallback = e;
+        for (int f = offsets[head]; f < offsets[head + 1]; f++) {
+            if (f == e || targets[f] != tail) continue;
+            if (blocks[f].getBlockNumber() == blocks[e].getBlockNumber()
+                    && Objects.equals(blocks[f].getStreetName(), blocks[e].getStreetName())
+                    && blocks[f].getCoordinatePoints().equals(blocks[e].getCoordinatePoints())) {
+                return f;
+            }
+            if (fallback == e) fallback = f;
+        }
+        return fallback;
+    }
+
+    /**
+     * @return the number of vertex slots (the size of the Network intersections array)
+     */
+    public int size() {
+        return intersections.length;
+    }
+
+    /**
+     * @return the number of directed edges
+     */
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Finds the vertex index of an intersection in constant time.
+     * @param intersection the intersection to look up
+     * @return the vertex index or -1 if nonexistent
+     */
+    public int indexOf(Intersection intersection) {
+        if (intersection == null) return -1;
+        return indexOf(intersection.getCoordinate());
+    }
+
+    /**
+     * Finds the vertex index of a coordinate in constant time.
+     * @param c the coordinate which may be stored in an intersection
+     * @return the vertex index or -1 if nonexistent
+     */
+    public int indexOf(Coordinate c) {
+        Integer index = indexByCoordinate.get(c);
+        return index == null ? -1 : index;
+    }
+
+    public Intersection intersection(int v) {
+        return intersections[v];
+    }
+
+    /**
+     * @param v a vertex index
+     * @return the id of the first edge leaving v
+     */
+    public int firstEdge(int v) {
+        return offsets[v];
+    }
+
+    /**
+     * @param v a vertex index
+     * @return one past the id of the last edge leaving v
+     */
+    public int endEdge(int v) {
+        return offsets[v + 1];
+    }
+
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    public int target(int e) {
+        return targets[e];
+    }
+
+    public int tail(int e) {
+        return tails[e];
+    }
+
+    /**
+     * @param e an edge id
+     * @return the id of the edge copied from the same block in the opposite direction
+     */
+    public int twin(int e) {
+        return twins[e];
+    }
+
+    public Block block(int e) {
+        return blocks[e];
+    }
+
+    public double traffic(int e) {
+        return blocks[e].getTraffic();
+    }
+
+    public double length(int e) {
+        return blocks[e].getLength();
+    }
+
+    /**
+     * Finds the first edge from u to w, in adjacency list order.
+     * @param u the tail vertex index
+     * @param w the head vertex index
+     * @return the edge id or -1 if u and w are not adjacent
+     */
+    public int findEdge(int u, int w) {
+        for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+            if (targets[e] == w) return e;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the Network modification count this snapshot was built from
+     */
+    public long getVersion() {
+        return version;
+    }
+}
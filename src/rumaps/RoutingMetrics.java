@@ -0,0 +1,248 @@
+package rumaps;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The RoutingMetrics class records what the routing queries cost:
+ * - a latency histogram per algorithm (LatencyHistogram, lock-free)
+ * - per algorithm, the vertices settled, edges relaxed and heap pushes of the searches
+ * - bytes allocated by the querying thread during each query, where the JVM can measure it
+ * - hits and misses of the route caches
+ *
+ * Metrics are off by default (or on with -Drumaps.metrics=true). When off, begin() returns null after reading one
+ * volatile flag, and callers skip everything else, so instrumented code costs next to nothing:
+ *
+ *     RoutingMetrics.Query query = RoutingMetrics.begin("fastestPath");
+ *     ... search ...
+ *     if (query != null) query.end(settled, relaxed, pushes);
+ *
+ * The numbers are exported as text by dump() and over JMX once registerMBean() has been called.
+ *
+ * Independently of the enabled flag, every query is also emitted as a rumaps.Query flight recorder event
+ * (RoutingEvents) while a recording has that event enabled, where flight recorder events are available.
+ */
+public final class RoutingMetrics {
+    public static final String OBJECT_NAME = "rumaps:type=RoutingMetrics";
+
+    private static volatile boolean enabled = Boolean.getBoolean("rumaps.metrics");
+
+    private static final ConcurrentHashMap<String, AlgorithmStats> algorithms = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, CacheStats> caches = new ConcurrentHashMap<>();
+    private static final com.sun.management.ThreadMXBean allocation = allocationBean();
+
+    private RoutingMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        RoutingMetrics.enabled = enabled;
+    }
+
+    /**
+     * Starts timing a query.
+     * @param algorithm the name the query is recorded under
+     * @return the running query, or null when metrics are disabled and no recording wants it
+     */
+    public static Query begin(String algorithm) {
+        return begin(algorithm, -1, -1);
+    }
+
+    /**
+     * Starts timing a query between two vertices; the vertices only show up in flight recorder events.
+     * @param algorithm the name the query is recorded under
+     * @param start the start vertex index, or -1
+     * @param end the end vertex index, or -1 if the query has none
+     * @return the running query, or null when metrics are disabled and no recording wants it
+     */
+    public static Query begin(String algorithm, int start, int end) {
+        boolean recording = RoutingEvents.isQueryEnabled();
+        if (!enabled && !recording) return null;
+        AlgorithmStats stats = enabled ? algorithms.computeIfAbsent(algorithm, name -> new AlgorithmStats()) : null;
+        return new Query(stats, recording ? RoutingEvents.beginQuery(algorithm, start, end) : null);
+    }
+
+    public static void cacheHit(String cache) {
+        if (enabled) caches.computeIfAbsent(cache, name -> new CacheStats()).hits.increment();
+    }
+
+    public static void cacheMiss(String cache) {
+        if (enabled) caches.computeIfAbsent(cache, name -> new CacheStats()).misses.increment();
+    }
+
+    /**
+     * A query being timed; end it on the thread that began it.
+     */
+    public static final class Query {
+        private final AlgorithmStats stats;
+        // The rumaps.Query flight recorder event, or null
+        private final Object event;
+        private final long started;
+        private final long allocatedBefore;
+
+        private Query(AlgorithmStats stats, Object event) {
+            this.stats = stats;
+            this.event = event;
+            this.allocatedBefore = stats == null ? -1 : allocatedBytes();
+            this.started = System.nanoTime();
+        }
+
+        /**
+         * Records the query.
+         *
+         * @param settled the vertices settled (or visited, for searches without a heap)
+         * @param relaxed the edges that improved a distance
+         * @param pushes the vertices added to the fringe
+         */
+        public void end(long settled, long relaxed, long pushes) {
+            RoutingEvents.endQuery(event, settled, relaxed, pushes);
+            if (stats == null) return;
+            stats.latency.record(System.nanoTime() - started);
+            stats.settled.add(settled);
+            stats.relaxed.add(relaxed);
+            stats.pushes.add(pushes);
+            long allocated = allocatedBytes();
+            if (allocated >= 0 && allocatedBefore >= 0) stats.allocated.add(allocated - allocatedBefore);
+        }
+    }
+
+    static final class AlgorithmStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder settled = new LongAdder();
+        final LongAdder relaxed = new LongAdder();
+        final LongAdder pushes = new LongAdder();
+        final LongAdder allocated = new LongAdder();
+
+        void reset() {
+            latency.reset();
+            settled.reset();
+            relaxed.reset();
+            pushes.reset();
+            allocated.reset();
+        }
+    }
+
+    static final class CacheStats {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        return bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled() ? bean : null;
+    }
+
+    /**
+     * @return the bytes allocated so far by the current thread, or -1 if the JVM cannot tell
+     */
+    @SuppressWarnings("deprecation")
+    private static long allocatedBytes() {
+        return allocation == null ? -1 : allocation.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static long getQueryCount(String algorithm) {
+        AlgorithmStats stats = algorithms.get(algorithm);
+        return stats == null ? 0 : stats.latency.getCount();
+    }
+
+    /**
+     * @return the latency of an algorithm at a percentile in [0, 100], in nanoseconds, 0 if it has no queries
+     */
+    public static long getLatencyNanos(String algorithm, double percentile) {
+        AlgorithmStats stats = algorithms.get(algorithm);
+        return stats == null ? 0 : stats.latency.valueAtPercentile(percentile);
+    }
+
+    /**
+     * Clears every metric, keeping the enabled flag.
+     */
+    public static void reset() {
+        for (AlgorithmStats stats : algorithms.values()) stats.reset();
+        for (CacheStats stats : caches.values()) {
+            stats.hits.reset();
+            stats.misses.reset();
+        }
+    }
+
+    /**
+     * @return a text report with one line per algorithm and per cache
+     */
+    public static String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append("Routing metrics (").append(enabled ? "enabled" : "disabled").append(")\n");
+        for (String name : new TreeSet<>(algorithms.keySet())) {
+            AlgorithmStats stats = algorithms.get(name);
+            long count = stats.latency.getCount();
+            if (count == 0) continue;
+            out.append(String.format("%-24s queries=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus"
+                    + " settled/q=%.1f relaxed/q=%.1f pushes/q=%.1f alloc/q=%s%n",
+                name, count, stats.latency.getMean() / 1e3,
+                stats.latency.valueAtPercentile(50) / 1e3, stats.latency.valueAtPercentile(90) / 1e3,
+                stats.latency.valueAtPercentile(99) / 1e3, stats.latency.valueAtPercentile(99.9) / 1e3,
+                stats.latency.getMax() / 1e3,
+                stats.settled.sum() / (double) count, stats.relaxed.sum() / (double) count, stats.pushes.sum() / (double) count,
+                allocation == null ? "n/a" : String.format("%.0fB", stats.allocated.sum() / (double) count)));
+        }
+        for (String name : new TreeSet<>(caches.keySet())) {
+            CacheStats stats = caches.get(name);
+            long hits = stats.hits.sum(), misses = stats.misses.sum();
+            out.append(String.format("%-24s hits=%d misses=%d hitRate=%.3f%n",
+                name, hits, misses, hits + misses == 0 ? 0.0 : hits / (double) (hits + misses)));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under OBJECT_NAME, once.
+     */
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) server.registerMBean(new Bean(), name);
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    private static final class Bean implements RoutingMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return RoutingMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            RoutingMetrics.setEnabled(enabled);
+        }
+
+        @Override
+        public String getReport() {
+            return RoutingMetrics.dump();
+        }
+
+        @Override
+        public long getQueryCount(String algorithm) {
+            return RoutingMetrics.getQueryCount(algorithm);
+        }
+
+        @Override
+        public double getLatencyMicros(String algorithm, double percentile) {
+            return RoutingMetrics.getLatencyNanos(algorithm, percentile) / 1e3;
+        }
+
+        @Override
+        public void reset() {
+            RoutingMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package rumaps;
+
+/**
+ * The JMX view of RoutingMetrics, registered as "rumaps:type=RoutingMetrics" by RoutingMetrics.registerMBean().
+ */
+public interface RoutingMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return the text dump of every metric, as RoutingMetrics.dump()
+     */
+    String getReport();
+
+    /**
+     * @return the number of recorded queries of an algorithm
+     */
+    long getQueryCount(String algorithm);
+
+    /**
+     * @return the latency of an algorithm at a percentile in [0, 100], in microseconds
+     */
+    double getLatencyMicros(String algorithm, double percentile);
+
+    void reset();
+}
@@ -0,0 +1,228 @@
+package rumaps;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The RoutingServer class serves the RUMaps queries to other processes over HTTP with JSON responses, using the
+ * HTTP server built into the JDK. The network is loaded once and shared by every request; requests only read it.
+ *
+ * Endpoints (GET, intersections given as an index "12" or a coordinate "108,341"):
+ * - /fastest?start=..&end=..    fastest path with its length, average traffic factor and traffic
+ * - /minimize?start=..&end=..   path with the least number of intersections, with the same information
+ * - /reachable?start=..         intersections reachable from start, in DFS order
+ * - /info?path=..;..;..         pathInformation of a path given as intersections separated by semicolons
+ * - /metrics                    request counts and latency percentiles per endpoint, from a LatencyHistogram each
+ * Per-algorithm query metrics (RoutingMetrics) are exported over JMX; run with -Drumaps.metrics=true to collect them.
+ *
+ * Each request runs on a virtual thread when the JVM has them (Java 21+), and on a fixed pool of platform threads
+ * otherwise. Responses always carry a Content-Length, so clients can keep connections alive.
+ *
+ * Without TCP_NODELAY, small keep-alive responses wait on delayed ACKs (~40 ms each). main() turns it on for the
+ * JDK server unless it was given on the command line; programs embedding the server should launch with
+ * -Dsun.net.httpserver.nodelay=true, since the JDK reads it once, when the first server is created.
+ *
+ * Usage: java rumaps.RoutingServer [network file] [port]
+ */
+public class RoutingServer {
+    public static final int DEFAULT_PORT = 8080;
+    private static final int SEED = 2024;
+
+    private final RUMaps rumaps;
+    private final Network network;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+
+    /**
+     * @param rumaps the loaded map to serve; it must not be modified while the server runs
+     * @param port the port to listen on, 0 for any free port
+     */
+    public RoutingServer(RUMaps rumaps, int port) throws IOException {
+        this.rumaps = rumaps;
+        this.network = rumaps.getRutgers();
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+
+        route("/fastest", params -> {
+            ArrayList<Intersection> path = rumaps.fastestPath(intersection(params, "start"), intersection(params, "end"), (RouteConstraints) null);
+            return RouteFormat.appendRoute(new StringBuilder(), path, information(path));
+        });
+        route("/minimize", params -> {
+            ArrayList<Intersection> path = rumaps.minimizeIntersections(intersection(params, "start"), intersection(params, "end"));
+            return RouteFormat.appendRoute(new StringBuilder(), path, information(path));
+        });
+        route("/reachable", params -> {
+            ArrayList<Intersection> reachable = rumaps.reachableIntersections(intersection(params, "start"));
+            StringBuilder out = new StringBuilder("{\"count\":").append(reachable.size()).append(",\"intersections\":");
+            return RouteFormat.appendPath(out, reachable).append('}');
+        });
+        route("/info", params -> {
+            String spec = params.get("path");
+            if (spec == null) throw new IllegalArgumentException("Missing parameter: path");
+            ArrayList<Intersection> path = new ArrayList<>();
+            for (String part : spec.split(";")) path.add(RouteFormat.parseIntersection(network, part));
+            checkConnected(path);
+            return RouteFormat.appendRoute(new StringBuilder(), path, information(path));
+        });
+        server.createContext("/metrics", exchange -> respond(exchange, 200, metrics().toString()));
+    }
+
+    /**
+     * Returns an executor that runs each task on a new virtual thread, or a fixed thread pool where virtual
+     * threads are not available. Reflection keeps the class compiling and running on Java 17.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to delaySeconds for the running ones, then shuts the threads down.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private interface Query {
+        StringBuilder answer(Map<String, String> params);
+    }
+
+    private void route(String path, Query query) {
+        LatencyHistogram latency = new LatencyHistogram();
+        latencies.put(path, latency);
+        server.createContext(path, exchange -> {
+            long started = System.nanoTime();
+            int status = 200;
+            String body;
+            try {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    status = 405;
+                    body = error("Only GET is supported");
+                } else {
+                    body = query.answer(parameters(exchange.getRequestURI().getRawQuery())).toString();
+                }
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                body = error(e.getMessage());
+            } catch (RuntimeException e) {
+                status = 500;
+                body = error(e.toString());
+            }
+            respond(exchange, status, body);
+            latency.record(System.nanoTime() - started);
+        });
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String error(String message) {
+        return RouteFormat.appendString(new StringBuilder("{\"error\":"), String.valueOf(message)).append('}').toString();
+    }
+
+    static Map<String, String> parameters(String rawQuery) {
+        HashMap<String, String> params = new HashMap<>();
+        if (rawQuery == null) return params;
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String key = eq == -1 ? pair : pair.substring(0, eq);
+            String value = eq == -1 ? "" : pair.substring(eq + 1);
+            params.put(decode(key), decode(value));
+        }
+        return params;
+    }
+
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not supported", e);
+        }
+    }
+
+    private Intersection intersection(Map<String, String> params, String name) {
+        String spec = params.get(name);
+        if (spec == null) throw new IllegalArgumentException("Missing parameter: " + name);
+        return RouteFormat.parseIntersection(network, spec);
+    }
+
+    private double[] information(ArrayList<Intersection> path) {
+        return path.size() > 1 ? rumaps.pathInformation(path) : new double[] {0.0, 0.0, 0.0};
+    }
+
+    private void checkConnected(ArrayList<Intersection> path) {
+        RoutingGraph graph = rumaps.getRoutingGraph();
+        for (int i = 0; i + 1 < path.size(); i++) {
+            if (graph.findEdge(graph.indexOf(path.get(i)), graph.indexOf(path.get(i + 1))) == -1) {
+                throw new IllegalArgumentException("No block between " + path.get(i) + " and " + path.get(i + 1));
+            }
+        }
+    }
+
+    /**
+     * @return the request counts and latency percentiles in microseconds of every endpoint since startup, as JSON
+     */
+    public StringBuilder metrics() {
+        StringBuilder out = new StringBuilder("{");
+        boolean first = true;
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            if (!first) out.append(',');
+            first = false;
+            LatencyHistogram latency = entry.getValue();
+            RouteFormat.appendString(out, entry.getKey())
+               .append(":{\"count\":").append(latency.getCount())
+               .append(",\"p50Micros\":").append(latency.valueAtPercentile(50) / 1000)
+               .append(",\"p90Micros\":").append(latency.valueAtPercentile(90) / 1000)
+               .append(",\"p99Micros\":").append(latency.valueAtPercentile(99) / 1000)
+               .append(",\"p999Micros\":").append(latency.valueAtPercentile(99.9) / 1000)
+               .append(",\"maxMicros\":").append(latency.getMax() / 1000)
+               .append('}');
+        }
+        return out.append('}');
+    }
+
+    public static void main(String[] args) throws IOException {
+        String networkFile = args.length > 0 ? args[0] : "Busch.in";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+        StdRandom.setSeed(SEED);
+        RUMaps rumaps = RUMaps.load(networkFile);
+        rumaps.getRoutingGraph();
+
+        RoutingMetrics.registerMBean();
+        RoutingServer server = new RoutingServer(rumaps, port);
+        server.start();
+        System.out.println("Serving " + networkFile + " on http://localhost:" + server.getPort() + "/");
+    }
+}
@@ -0,0 +1,136 @@
+package rumaps;
+
+import java.awt.*;
+import java.util.BitSet;
+
+/**
+ * The SearchFrontier class plays the events of a SearchTrace back as an overlay on the map, so the area a search
+ * explores can be watched growing:
+ * - settled vertices become small faded dots
+ * - frontier vertices (reached but not settled yet) are drawn as rings
+ *
+ * Both are drawn as shapes in map coordinates on every frame, so they stay in place however the map is zoomed or
+ * panned and however large the network is; only the vertices inside the clip are drawn.
+ *
+ * Only the newest search in the trace is shown: events of older searches still running are ignored, and the first
+ * event of a newer search clears the picture.
+ *
+ * advance() plays a frame's worth of events. It takes at least MIN_EVENTS_PER_FRAME events and enough of the backlog
+ * to catch up within CATCH_UP_FRAMES frames, so small searches can be followed step by step and large ones still
+ * finish in about a second. MapPanel calls it from a Swing timer; a SearchFrontier is used on the event dispatch
+ * thread only.
+ */
+public class SearchFrontier {
+    public static final int MIN_EVENTS_PER_FRAME = 16;
+    public static final int CATCH_UP_FRAMES = 30;
+    private static final int SETTLED_SIZE = 12;
+    private static final int FRONTIER_SIZE = 14;
+
+    private final SearchTrace.Cursor cursor;
+    private final Color settledColor;
+    private final Color frontierColor;
+    private final long[] batch = new long[4096];
+
+    private int search = -1;
+    private final BitSet frontier = new BitSet();
+    private final BitSet settled = new BitSet();
+    private int settledCount;
+
+    /**
+     * @param trace the trace to play, from the next event recorded on
+     * @param color the color of the overlay
+     */
+    public SearchFrontier(SearchTrace trace, Color color) {
+        this.cursor = trace.cursor();
+        this.settledColor = new Color(color.getRed(), color.getGreen(), color.getBlue(), 120);
+        this.frontierColor = color;
+    }
+
+    /**
+     * Plays the next frame's worth of events.
+     *
+     * @param graph the routing graph the traced searches ran on
+     * @return true if the picture changed
+     */
+    public boolean advance(RoutingGraph graph) {
+        long backlog = cursor.backlog();
+        if (backlog == 0) return false;
+        int count = cursor.poll(batch, (int) Math.min(batch.length, Math.max(MIN_EVENTS_PER_FRAME, backlog / CATCH_UP_FRAMES)));
+
+        boolean changed = false;
+        for (int i = 0; i < count; i++) {
+            long event = batch[i];
+            int id = SearchTrace.search(event);
+            int kind = SearchTrace.kind(event);
+            if (kind == SearchTrace.PAD || id < search) continue;
+            if (id > search) {
+                // A newer search; its START may have been overwritten, so any of its events starts the picture over
+                clear();
+                search = id;
+                changed = true;
+            }
+            int v = SearchTrace.vertex(event);
+            if (v < 0 || v >= graph.size() || graph.intersection(v) == null) continue;
+            if (kind == SearchTrace.SETTLE) {
+                frontier.clear(v);
+                settled.set(v);
+                settledCount++;
+            } else {
+                frontier.set(v);
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Draws the overlay in map coordinates.
+     *
+     * @param graph the routing graph the traced searches ran on
+     */
+    public void draw(Graphics2D g2d, RoutingGraph graph) {
+        Rectangle clip = g2d.getClipBounds();
+        g2d.setColor(settledColor);
+        for (int v = settled.nextSetBit(0); v >= 0 && v < graph.size(); v = settled.nextSetBit(v + 1)) {
+            Coordinate c = visible(graph, v, clip, SETTLED_SIZE);
+            if (c != null) g2d.fillOval(c.getX() - SETTLED_SIZE / 2, c.getY() - SETTLED_SIZE / 2, SETTLED_SIZE, SETTLED_SIZE);
+        }
+        g2d.setColor(frontierColor);
+        g2d.setStroke(new BasicStroke(2.5f));
+        for (int v = frontier.nextSetBit(0); v >= 0 && v < graph.size(); v = frontier.nextSetBit(v + 1)) {
+            Coordinate c = visible(graph, v, clip, FRONTIER_SIZE);
+            if (c != null) g2d.drawOval(c.getX() - FRONTIER_SIZE / 2, c.getY() - FRONTIER_SIZE / 2, FRONTIER_SIZE, FRONTIER_SIZE);
+        }
+    }
+
+    /**
+     * @return the coordinate of vertex v if a marker of the size around it overlaps the clip, otherwise null
+     */
+    private static Coordinate visible(RoutingGraph graph, int v, Rectangle clip, int size) {
+        Intersection intersection = graph.intersection(v);
+        if (intersection == null) return null;
+        Coordinate c = intersection.getCoordinate();
+        if (clip != null && !clip.intersects(c.getX() - size, c.getY() - size, 2 * size, 2 * size)) return null;
+        return c;
+    }
+
+    /**
+     * @return the number of vertices the shown search has settled so far
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * @return the number of vertices on the frontier of the shown search
+     */
+    public int getFrontierSize() {
+        return frontier.cardinality();
+    }
+
+    private void clear() {
+        frontier.clear();
+        settled.clear();
+        settledCount = 0;
+    }
+}
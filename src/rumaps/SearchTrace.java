@@ -0,0 +1,207 @@
+package rumaps;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The SearchTrace class records what a search does, one event per step, in a fixed-size ring buffer that a viewer
+ * reads while the search is still running (see SearchFrontier):
+ * - START - a search began at a vertex; all events of a search carry the id of its Recorder
+ * - SETTLE - the search finished with a vertex (Dijkstra settled it, BFS expanded it)
+ * - RELAX - the search reached a vertex or improved its distance, so it is on the frontier
+ * - PAD - nothing; fills the slots a search claimed but did not use
+ *
+ * Each event is packed into one long. A search records through its own Recorder, which claims CHUNK slots at a time
+ * with one atomic add, so several searches may record into the same trace at once and each event costs a few plain
+ * stores. Each slot carries the sequence number of the event in it, so a reader can tell a slot not written yet from
+ * one already overwritten. When the buffer is full the oldest events are overwritten, and a reader that falls that
+ * far behind skips ahead.
+ *
+ * The engines only record when given a trace; with none, a search pays a null check per step.
+ */
+public final class SearchTrace {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    public static final int START = 0;
+    public static final int SETTLE = 1;
+    public static final int RELAX = 2;
+    public static final int PAD = 3;
+    public static final int CHUNK = 64;
+
+    // Slot i is slots[2i] (1 + the sequence number of its event, 0 while it is being written or never was) and
+    // slots[2i + 1] (the event), so recording an event touches one cache line
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicInteger searches = new AtomicInteger();
+
+    public SearchTrace() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of events kept, rounded up to a power of two
+     */
+    public SearchTrace(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) throw new IllegalArgumentException("Capacity out of range: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        slots = new AtomicLongArray(2 * size);
+        mask = size - 1;
+    }
+
+    /**
+     * Records the start of a search. The search must call end() on the recorder when it is done, also when it fails,
+     * or readers wait at its unused slots until they are overwritten.
+     *
+     * @param source the vertex index the search starts from
+     * @return the recorder for the events of this search
+     */
+    public Recorder begin(int source) {
+        Recorder recorder = new Recorder(searches.incrementAndGet() & 0x3fffffff);
+        recorder.record(START, source);
+        return recorder;
+    }
+
+    private void write(long sequence, long event) {
+        int slot = ((int) sequence & mask) << 1;
+        // Mark the slot as being written first, so a reader of the event it held cannot take half of each. lazySet
+        // is an ordered store: each one becomes visible only after the stores before it, without a full fence.
+        slots.lazySet(slot, 0L);
+        slots.lazySet(slot + 1, event);
+        slots.lazySet(slot, sequence + 1);
+    }
+
+    /**
+     * @return the number of events recorded so far, including those overwritten since
+     */
+    public long getRecorded() {
+        return next.get();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return a reader of the events recorded from now on
+     */
+    public Cursor cursor() {
+        return new Cursor(next.get());
+    }
+
+    public static int search(long event) {
+        return (int) (event >>> 34);
+    }
+
+    public static int kind(long event) {
+        return (int) (event >>> 32) & 3;
+    }
+
+    public static int vertex(long event) {
+        return (int) event;
+    }
+
+    /**
+     * A Recorder writes the events of one search. It is not thread-safe; a search records from one thread.
+     */
+    public final class Recorder {
+        private final long search;
+        private long sequence;
+        private long end;
+
+        private Recorder(int search) {
+            this.search = (long) search << 34;
+        }
+
+        public void settle(int vertex) {
+            record(SETTLE, vertex);
+        }
+
+        public void relax(int vertex) {
+            record(RELAX, vertex);
+        }
+
+        /**
+         * Pads the slots claimed but not used, so readers can move past them.
+         */
+        public void end() {
+            while (sequence < end) write(sequence++, search | (long) PAD << 32);
+        }
+
+        private void record(int kind, int vertex) {
+            if (sequence == end) {
+                sequence = next.getAndAdd(CHUNK);
+                end = sequence + CHUNK;
+            }
+            write(sequence++, search | (long) kind << 32 | (vertex & 0xffffffffL));
+        }
+    }
+
+    /**
+     * A Cursor reads the events of a trace in the order they were recorded. It is not thread-safe; give each reader
+     * its own.
+     */
+    public final class Cursor {
+        private long position;
+        private long skipped;
+
+        private Cursor(long position) {
+            this.position = position;
+        }
+
+        /**
+         * Copies the next events into out, stopping early at one that is still being written.
+         *
+         * @param out where the events go
+         * @param max the most events to copy
+         * @return the number of events copied
+         */
+        public int poll(long[] out, int max) {
+            int count = 0;
+            max = Math.min(max, out.length);
+            while (count < max) {
+                int slot = ((int) position & mask) << 1;
+                long sequence = slots.get(slot);
+                if (sequence <= position) break;
+                if (sequence == position + 1) {
+                    long event = slots.get(slot + 1);
+                    // The writer may have wrapped around and overwritten the slot while it was being read
+                    if (slots.get(slot) == sequence) {
+                        out[count++] = event;
+                        position++;
+                        continue;
+                    }
+                }
+                skipAhead();
+            }
+            return count;
+        }
+
+        /**
+         * @return the number of events recorded but not read yet
+         */
+        public long backlog() {
+            return Math.min(next.get() - position, capacity());
+        }
+
+        /**
+         * @return the number of events that were overwritten before this cursor read them
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        private void skipAhead() {
+            long oldest = next.get() - capacity();
+            if (oldest > position) {
+                skipped += oldest - position;
+                position = oldest;
+            } else {
+                skipped++;
+                position++;
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package rumaps;
+
+import java.util.Arrays;
+
+/**
+ * The SearchWorkspace class holds the per-query arrays of a Dijkstra-style search over a RoutingGraph:
+ * - distance and predecessor edge of every vertex
+ * - an indexed binary min-heap used as the fringe
+ *
+ * Instead of clearing the arrays between queries, every vertex carries the stamp of the query that last touched it,
+ * so reset() is constant time. A workspace can therefore be reused for any number of queries on graphs of the
+ * same size, which is what the multi-query engines (alternatives, batches, matrices) rely on.
+ *
+ * A workspace is not thread-safe; give each thread its own.
+ */
+public class SearchWorkspace {
+    private final double[] dist;
+    private final int[] predEdge;
+    private final int[] stamp;
+    private final int[] settledStamp;
+    private int current;
+
+    private final double[] key;
+    private final int[] heap;
+    private final int[] position;
+    private int heapSize;
+
+    // work done since the last reset, for RoutingMetrics
+    private int pushCount;
+    private int relaxCount;
+
+    public SearchWorkspace(int size) {
+        dist = new double[size];
+        predEdge = new int[size];
+        stamp = new int[size];
+        settledStamp = new int[size];
+        key = new double[size];
+        heap = new int[size];
+        position = new int[size];
+        current = 1;
+    }
+
+    public int capacity() {
+        return dist.length;
+    }
+
+    /**
+     * Forgets every distance, predecessor and fringe entry of the previous query.
+     */
+    public void reset() {
+        heapSize = 0;
+        pushCount = 0;
+        relaxCount = 0;
+        current++;
+        if (current == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            Arrays.fill(settledStamp, 0);
+            current = 1;
+        }
+    }
+
+    /**
+     * @return the best known distance to v in this query, or infinity if v has not been reached
+     */
+    public double dist(int v) {
+        return stamp[v] == current ? dist[v] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return the edge used to reach v, or -1 if v is the source or has not been reached
+     */
+    public int predEdge(int v) {
+        return stamp[v] == current ? predEdge[v] : -1;
+    }
+
+    public boolean isReached(int v) {
+        return stamp[v] == current;
+    }
+
+    public boolean isSettled(int v) {
+        return settledStamp[v] == current;
+    }
+
+    public void settle(int v) {
+        settledStamp[v] = current;
+    }
+
+    /**
+     * Records a path to v of the given distance if it improves on the best known one, and adds or
+     * moves v in the fringe with the given priority.
+     *
+     * @param v the vertex being reached
+     * @param distance the distance of the new path to v
+     * @param edge the last edge of the new path
+     * @param priority the fringe priority of v (the distance itself for Dijkstra, plus a potential for A*)
+     * @return true if the distance improved
+     */
+    public boolean relax(int v, double distance, int edge, double priority) {
+        if (stamp[v] == current) {
+            if (distance >= dist[v]) return false;
+            relaxCount++;
+            dist[v] = distance;
+            predEdge[v] = edge;
+            key[v] = priority;
+            if (position[v] >= 0) {
+                swim(position[v]);
+            } else {
+                push(v);
+            }
+            return true;
+        }
+        relaxCount++;
+        stamp[v] = current;
+        dist[v] = distance;
+        predEdge[v] = edge;
+        key[v] = priority;
+        push(v);
+        return true;
+    }
+
+    /**
+     * @return the number of vertices added to the fringe since the last reset
+     */
+    public int getPushCount() {
+        return pushCount;
+    }
+
+    /**
+     * @return the number of relax calls that improved a distance since the last reset
+     */
+    public int getRelaxCount() {
+        return relaxCount;
+    }
+
+    public boolean isEmpty() {
+        return heapSize == 0;
+    }
+
+    /**
+     * Removes and returns the fringe vertex with the least priority.
+     */
+    public int poll() {
+        int v = heap[0];
+        position[v] = -1;
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            position[heap[0]] = 0;
+            sink(0);
+        }
+        return v;
+    }
+
+    private void push(int v) {
+        pushCount++;
+        heap[heapSize] = v;
+        position[v] = heapSize;
+        heapSize++;
+        swim(heapSize - 1);
+    }
+
+    private void swim(int i) {
+        int v = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (key[heap[parent]] <= key[v]) break;
+            heap[i] = heap[parent];
+            position[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        position[v] = i;
+    }
+
+    private void sink(int i) {
+        int v = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && key[heap[child + 1]] < key[heap[child]]) child++;
+            if (key[v] <= key[heap[child]]) break;
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = v;
+        position[v] = i;
+    }
+}
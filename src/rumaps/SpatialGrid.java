@@ -0,0 +1,124 @@
+package rumaps;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * The SpatialGrid class is a uniform grid index for hit-testing in screen coordinates.
+ *
+ * Items are identified by an int id (their position in the caller's list) and added with a bounding box,
+ * which is recorded in every cell of cellSize x cellSize pixels it overlaps. Only cells that hold items are stored,
+ * so networks of any extent, including negative coordinates, take memory proportional to the items.
+ *
+ * A point query looks at the one cell containing the point and tests its candidates in id order, so it finds the
+ * same item as a linear scan of the caller's list would, after testing only the handful of items nearby.
+ */
+public class SpatialGrid {
+    public static final int DEFAULT_CELL_SIZE = 32;
+
+    private final int cellSize;
+    // cell key -> {count, id, id, ...}, ids in the order they were added
+    private final HashMap<Long, int[]> cells = new HashMap<>();
+    private int size;
+
+    public SpatialGrid() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public SpatialGrid(int cellSize) {
+        if (cellSize < 1) throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Adds an item to every cell its bounding box overlaps. Ids must be added in increasing order.
+     *
+     * @param id the item id
+     * @param minX the left edge of the bounding box, inclusive
+     * @param minY the top edge of the bounding box, inclusive
+     * @param maxX the right edge of the bounding box, inclusive
+     * @param maxY the bottom edge of the bounding box, inclusive
+     */
+    public void add(int id, double minX, double minY, double maxX, double maxY) {
+        int firstColumn = cell(minX), lastColumn = cell(maxX);
+        int firstRow = cell(minY), lastRow = cell(maxY);
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                long key = key(column, row);
+                int[] ids = cells.get(key);
+                if (ids == null) {
+                    ids = new int[5];
+                    cells.put(key, ids);
+                } else if (ids[0] + 1 == ids.length) {
+                    ids = Arrays.copyOf(ids, ids.length * 2);
+                    cells.put(key, ids);
+                }
+                ids[++ids[0]] = id;
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Finds the item with the lowest id whose bounding box may contain the point and that passes a test.
+     *
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @param test the exact hit test, given a candidate id
+     * @return the id of the first item that passes, or -1 if none does
+     */
+    public int first(double x, double y, IntPredicate test) {
+        int[] ids = cells.get(key(cell(x), cell(y)));
+        if (ids == null) return -1;
+        for (int i = 1; i <= ids[0]; i++) {
+            if (test.test(ids[i])) return ids[i];
+        }
+        return -1;
+    }
+
+    /**
+     * Finds every item whose bounding box may overlap a rectangle.
+     *
+     * @return the candidate ids, in increasing order without duplicates
+     */
+    public int[] query(double minX, double minY, double maxX, double maxY) {
+        int[] found = new int[16];
+        int count = 0;
+        for (int column = cell(minX); column <= cell(maxX); column++) {
+            for (int row = cell(minY); row <= cell(maxY); row++) {
+                int[] ids = cells.get(key(column, row));
+                if (ids == null) continue;
+                if (count + ids[0] > found.length) found = Arrays.copyOf(found, Math.max(found.length * 2, count + ids[0]));
+                System.arraycopy(ids, 1, found, count, ids[0]);
+                count += ids[0];
+            }
+        }
+        Arrays.sort(found, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || found[i] != found[distinct - 1]) found[distinct++] = found[i];
+        }
+        return Arrays.copyOf(found, distinct);
+    }
+
+    /**
+     * @return the number of items added
+     */
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        cells.clear();
+        size = 0;
+    }
+
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static long key(int column, int row) {
+        return ((long) column << 32) | (row & 0xffffffffL);
+    }
+}
@@ -0,0 +1,366 @@
+package rumaps;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The TileRenderer class draws the static part of the map (satellite image, overlay and blocks) as square tiles
+ * for a zoomable, pannable view, so panning only copies images that are already drawn.
+ *
+ * - Zoom level z draws the map at scale 2^z; tile (column, row) of level z covers the map pixels
+ *   [column, column + 1) x [row, row + 1) times TILE_SIZE / 2^z.
+ * - Tiles are drawn off the event dispatch thread by a pool of daemon workers. getTile() returns null for a tile that
+ *   is not drawn yet and queues it; the callback given to the constructor runs when it is ready.
+ *   The queue is last-in first-out and bounded, so the tiles of the latest view are drawn first and tiles panned
+ *   past long ago are dropped.
+ * - Finished tiles are kept in a least-recently-used cache of cacheTiles tiles.
+ * - Zoomed out, the images are drawn from copies ImageCache scales once per level.
+ * - Blocks are simplified once for each zoom level with the Douglas-Peucker algorithm to within half a screen pixel,
+ *   and only the blocks overlapping a tile are drawn into it.
+ * - drawTile() stands in for a tile that is not drawn yet with the enlarged quarter of the tile a level below.
+ *
+ * setContent() replaces what is drawn; tiles of the old content still being drawn are thrown away.
+ */
+public class TileRenderer {
+    public static final int TILE_SIZE = 256;
+    public static final int DEFAULT_CACHE_TILES = 256;
+    private static final int MAX_QUEUED = 128;
+    // Half a screen pixel
+    private static final double TOLERANCE = 0.5;
+
+    private final Runnable onTileReady;
+    private final LinkedHashMap<Long, BufferedImage> cache;
+    private final LinkedBlockingDeque<Long> queue = new LinkedBlockingDeque<>();
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final Thread[] workers;
+    private volatile Content content;
+
+    /**
+     * @param onTileReady runs on a worker thread each time a tile has been drawn
+     */
+    public TileRenderer(Runnable onTileReady) {
+        this(onTileReady, DEFAULT_CACHE_TILES, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * @param onTileReady runs on a worker thread each time a tile has been drawn
+     * @param cacheTiles the number of tiles to keep
+     * @param threads the number of worker threads
+     */
+    public TileRenderer(Runnable onTileReady, int cacheTiles, int threads) {
+        if (cacheTiles < 1 || threads < 1) throw new IllegalArgumentException("Cache and thread counts must be positive");
+        this.onTileReady = onTileReady;
+        this.cache = new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+                return size() > cacheTiles;
+            }
+        };
+        workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::work, "rumaps-tile-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Replaces what the tiles show and forgets every tile drawn so far.
+     *
+     * @param satellite the satellite image, or null for none
+     * @param overlay the overlay image, or null for none
+     * @param overlayTransparency the opacity of the overlay
+     * @param imageWidth the width in map pixels the images are stretched to
+     * @param imageHeight the height in map pixels the images are stretched to
+     * @param background the color under the images
+     * @param blocks the blocks to draw, or null to draw none
+     * @param blockColor the color of the blocks
+     */
+    public void setContent(Image satellite, Image overlay, double overlayTransparency, int imageWidth, int imageHeight,
+                           Color background, List<Block> blocks, Color blockColor) {
+        Content replacement = new Content(satellite, overlay, overlayTransparency, imageWidth, imageHeight, background,
+            blocks == null ? new Block[0] : blocks.toArray(new Block[0]), blockColor);
+        // Under the cache lock, so a worker cannot check the old content and then store its tile after the clear
+        synchronized (cache) {
+            content = replacement;
+            queue.clear();
+            pending.clear();
+            cache.clear();
+        }
+    }
+
+    public boolean hasContent() {
+        return content != null;
+    }
+
+    /**
+     * @return the tile if it has been drawn, or null after queueing it
+     */
+    public BufferedImage getTile(int level, int column, int row) {
+        long key = key(level, column, row);
+        BufferedImage tile = cachedTile(key);
+        if (tile == null && content != null && pending.add(key)) {
+            queue.offerFirst(key);
+            while (queue.size() > MAX_QUEUED) {
+                Long dropped = queue.pollLast();
+                if (dropped != null) pending.remove(dropped);
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * @return the tile if it has been drawn, or null, without queueing it
+     */
+    public BufferedImage peekTile(int level, int column, int row) {
+        return cachedTile(key(level, column, row));
+    }
+
+    /**
+     * Draws a tile at (x, y), or when it is not drawn yet the enlarged quarter of the tile a level below that covers
+     * the same map pixels, if that one is cached.
+     *
+     * @return false if neither was drawn
+     */
+    public boolean drawTile(Graphics2D g2d, int level, int column, int row, int x, int y) {
+        BufferedImage tile = getTile(level, column, row);
+        if (tile != null) {
+            g2d.drawImage(tile, x, y, null);
+            return true;
+        }
+        BufferedImage parent = peekTile(level - 1, Math.floorDiv(column, 2), Math.floorDiv(row, 2));
+        if (parent == null) return false;
+        int half = TILE_SIZE / 2;
+        int sx = Math.floorMod(column, 2) * half, sy = Math.floorMod(row, 2) * half;
+        g2d.drawImage(parent, x, y, x + TILE_SIZE, y + TILE_SIZE, sx, sy, sx + half, sy + half, null);
+        return true;
+    }
+
+    private BufferedImage cachedTile(long key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    /**
+     * Stops the worker threads; the renderer cannot be used afterwards.
+     */
+    public void shutdown() {
+        for (Thread worker : workers) worker.interrupt();
+    }
+
+    private void work() {
+        while (true) {
+            long key;
+            try {
+                key = queue.takeFirst();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Content drawing = content;
+            BufferedImage tile;
+            try {
+                tile = drawing.draw(level(key), column(key), row(key));
+            } catch (RuntimeException e) {
+                pending.remove(key);
+                continue;
+            }
+            synchronized (cache) {
+                if (drawing != content) continue;
+                cache.put(key, tile);
+            }
+            pending.remove(key);
+            onTileReady.run();
+        }
+    }
+
+    /**
+     * An immutable snapshot of what the tiles show.
+     */
+    private static final class Content {
+        final Image satellite;
+        final Image overlay;
+        final float overlayTransparency;
+        final int imageWidth;
+        final int imageHeight;
+        final Color background;
+        final Block[] blocks;
+        final Color blockColor;
+        private SpatialGrid grid;
+        // The simplified path of each block, by zoom level, filled in as tiles need them
+        private final ConcurrentHashMap<Integer, AtomicReferenceArray<Path2D>> simplified = new ConcurrentHashMap<>();
+
+        Content(Image satellite, Image overlay, double overlayTransparency, int imageWidth, int imageHeight,
+                Color background, Block[] blocks, Color blockColor) {
+            this.satellite = satellite;
+            this.overlay = overlay;
+            this.overlayTransparency = (float) overlayTransparency;
+            this.imageWidth = imageWidth;
+            this.imageHeight = imageHeight;
+            this.background = background;
+            this.blocks = blocks;
+            this.blockColor = blockColor;
+        }
+
+        /**
+         * Indexes the blocks by their bounds widened by the stroke, on the first tile drawn.
+         */
+        synchronized SpatialGrid grid() {
+            if (grid == null) {
+                SpatialGrid index = new SpatialGrid(TILE_SIZE);
+                for (int i = 0; i < blocks.length; i++) {
+                    Rectangle bounds = blocks[i].getPath().getBounds();
+                    double margin = blocks[i].getRoadSize();
+                    index.add(i, bounds.getMinX() - margin, bounds.getMinY() - margin, bounds.getMaxX() + margin, bounds.getMaxY() + margin);
+                }
+                grid = index;
+            }
+            return grid;
+        }
+
+        /**
+         * @return block i simplified for the level, computed by the first tile that draws it
+         */
+        Path2D simplified(int i, int level) {
+            AtomicReferenceArray<Path2D> paths = simplified.computeIfAbsent(level, l -> new AtomicReferenceArray<>(blocks.length));
+            Path2D path = paths.get(i);
+            if (path == null) {
+                path = simplify(blocks[i].getCoordinatePoints(), TOLERANCE / Math.scalb(1.0, level));
+                paths.set(i, path);
+            }
+            return path;
+        }
+
+        /**
+         * @return the image, or when zoomed out its copy from ImageCache at the size it is drawn, which is drawn
+         *         pixel for pixel rather than shrunk again for every tile
+         */
+        private Image imageFor(Image image, double scale) {
+            if (scale >= 1.0 || !(image instanceof BufferedImage)) return image;
+            return ImageCache.scaled((BufferedImage) image, Math.max(1, (int) Math.round(imageWidth * scale)),
+                Math.max(1, (int) Math.round(imageHeight * scale)));
+        }
+
+        BufferedImage draw(int level, int column, int row) {
+            double scale = Math.scalb(1.0, level);
+            double mapSize = TILE_SIZE / scale;
+            double minX = column * mapSize, minY = row * mapSize;
+
+            BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = tile.createGraphics();
+            g2d.setColor(background);
+            g2d.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+            g2d.transform(new AffineTransform(scale, 0, 0, scale, -minX * scale, -minY * scale));
+            if (minX < imageWidth && minY < imageHeight && minX + mapSize > 0 && minY + mapSize > 0) {
+                g2d.drawImage(imageFor(satellite, scale), 0, 0, imageWidth, imageHeight, null);
+                g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, overlayTransparency));
+                g2d.drawImage(imageFor(overlay, scale), 0, 0, imageWidth, imageHeight, null);
+                g2d.setComposite(AlphaComposite.SrcOver);
+            }
+
+            g2d.setColor(blockColor);
+            float strokeWidth = Float.NaN;
+            for (int i : grid().query(minX, minY, minX + mapSize, minY + mapSize)) {
+                Block block = blocks[i];
+                if (block.getRoadSize() != strokeWidth) {
+                    strokeWidth = block.getRoadSize();
+                    g2d.setStroke(new BasicStroke(strokeWidth));
+                }
+                g2d.draw(simplified(i, level));
+            }
+            g2d.dispose();
+            return tile;
+        }
+    }
+
+    /**
+     * Simplifies a polyline with the Douglas-Peucker algorithm: keeps the endpoints, and recursively the point
+     * farthest from the segment between the kept points while it is farther than the tolerance.
+     *
+     * @param points the polyline
+     * @param tolerance the largest distance a dropped point may have from the simplified line
+     * @return the simplified polyline as a path
+     */
+    public static Path2D simplify(List<Coordinate> points, double tolerance) {
+        int n = points.size();
+        Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO, Math.min(n, 16));
+        if (n == 0) return path;
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+
+        // Explicit stack of [first, last] ranges still to simplify
+        int[] stack = new int[2 * n];
+        int top = 0;
+        if (n > 2) {
+            stack[top++] = 0;
+            stack[top++] = n - 1;
+        }
+        double squaredTolerance = tolerance * tolerance;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            int farthest = -1;
+            double farthestDistance = squaredTolerance;
+            for (int i = first + 1; i < last; i++) {
+                double distance = squaredSegmentDistance(points.get(i), points.get(first), points.get(last));
+                if (distance > farthestDistance) {
+                    farthest = i;
+                    farthestDistance = distance;
+                }
+            }
+            if (farthest == -1) continue;
+            keep[farthest] = true;
+            if (farthest - first > 1) {
+                stack[top++] = first;
+                stack[top++] = farthest;
+            }
+            if (last - farthest > 1) {
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        path.moveTo(points.get(0).getX(), points.get(0).getY());
+        for (int i = 1; i < n; i++) {
+            if (keep[i]) path.lineTo(points.get(i).getX(), points.get(i).getY());
+        }
+        return path;
+    }
+
+    private static double squaredSegmentDistance(Coordinate p, Coordinate a, Coordinate b) {
+        double dx = b.getX() - a.getX(), dy = b.getY() - a.getY();
+        double px = p.getX() - a.getX(), py = p.getY() - a.getY();
+        double squaredLength = dx * dx + dy * dy;
+        double t = squaredLength == 0 ? 0 : Math.max(0, Math.min(1, (px * dx + py * dy) / squaredLength));
+        double ex = px - t * dx, ey = py - t * dy;
+        return ex * ex + ey * ey;
+    }
+
+    /**
+     * Packs a tile into the key it is cached and queued under: the level in the top 8 bits, then 28 bits each of
+     * column and row, all signed.
+     */
+    public static long key(int level, int column, int row) {
+        return ((long) (level & 0xff) << 56) | ((long) (column & 0xfffffff) << 28) | (row & 0xfffffff);
+    }
+
+    public static int level(long key) {
+        return (byte) (key >>> 56);
+    }
+
+    public static int column(long key) {
+        return (int) (key << 8 >> 36);
+    }
+
+    public static int row(long key) {
+        return (int) (key << 36 >> 36);
+    }
+}
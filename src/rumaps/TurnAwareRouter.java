@@ -0,0 +1,157 @@
+package rumaps;
+
+import java.util.*;
+
+/**
+ * The TurnAwareRouter class finds the path of least traffic plus turn costs (see TurnCostModel).
+ *
+ * Turn costs depend on the block a path arrives by, so the search runs on edges instead of intersections: a search
+ * state is the directed block just travelled, and settling it relaxes every block leaving its head intersection
+ * with the block's traffic plus the cost of the turn. The line graph this describes is never built; turns are
+ * priced on the fly from two headings stored per edge (the direction a block is left from its tail and the
+ * direction it arrives at its head), so the extra memory is two floats per edge plus a workspace sized by the
+ * number of edges.
+ *
+ * Building a router walks every block's polyline, so keep it for as long as its graph is current; the turn cost model
+ * can be changed per search. A router is not thread-safe; give each thread its own.
+ */
+public class TurnAwareRouter {
+    private final RoutingGraph graph;
+    private final TurnCostModel model;
+    private final SearchWorkspace workspace;
+
+    private final float[] departHeading;
+    private final float[] arriveHeading;
+
+    private double lastCost;
+
+    public TurnAwareRouter(RoutingGraph graph) {
+        this(graph, TurnCostModel.DEFAULT);
+    }
+
+    public TurnAwareRouter(RoutingGraph graph, TurnCostModel model) {
+        this.graph = graph;
+        this.model = model;
+        this.workspace = new SearchWorkspace(graph.edgeCount());
+        this.departHeading = new float[graph.edgeCount()];
+        this.arriveHeading = new float[graph.edgeCount()];
+
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            ArrayList<Coordinate> points = graph.block(e).getCoordinatePoints();
+            int last = points.size() - 1;
+            if (last < 1) {
+                // A block without shape points runs straight between its intersections
+                float straight = heading(graph.intersection(graph.tail(e)).getCoordinate(), graph.intersection(graph.target(e)).getCoordinate());
+                departHeading[e] = straight;
+                arriveHeading[e] = straight;
+                continue;
+            }
+            // Both directions of a block share one polyline; it runs backwards when the edge leaves from its last point
+            boolean forward = points.get(0).equals(graph.intersection(graph.tail(e)).getCoordinate());
+            if (forward) {
+                departHeading[e] = heading(points.get(0), points.get(1));
+                arriveHeading[e] = heading(points.get(last - 1), points.get(last));
+            } else {
+                departHeading[e] = heading(points.get(last), points.get(last - 1));
+                arriveHeading[e] = heading(points.get(1), points.get(0));
+            }
+        }
+    }
+
+    private static float heading(Coordinate from, Coordinate to) {
+        return (float) Math.atan2(to.getY() - from.getY(), to.getX() - from.getX());
+    }
+
+    /**
+     * @return the graph the router searches
+     */
+    public RoutingGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return the cost of continuing from edge in onto edge out at the head of in
+     */
+    public double turnCost(int in, int out) {
+        return turnCost(in, out, model);
+    }
+
+    private double turnCost(int in, int out, TurnCostModel model) {
+        double angle = departHeading[out] - arriveHeading[in];
+        if (angle > Math.PI) angle -= 2 * Math.PI;
+        else if (angle <= -Math.PI) angle += 2 * Math.PI;
+        return model.cost(angle, out == graph.twin(in), graph.block(in).getRoadSize());
+    }
+
+    /**
+     * Finds the path of least traffic plus turn costs from start to end.
+     *
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @return the path, or an empty ArrayList if no path exists
+     */
+    public ArrayList<Intersection> search(Intersection start, Intersection end) {
+        return search(start, end, model);
+    }
+
+    /**
+     * Finds the path of least traffic plus turn costs from start to end, pricing turns with another model than the
+     * router's.
+     *
+     * @param start The starting intersection
+     * @param end The destination intersection
+     * @param model The costs of turning between blocks
+     * @return the path, or an empty ArrayList if no path exists
+     */
+    public ArrayList<Intersection> search(Intersection start, Intersection end, TurnCostModel model) {
+        int s = graph.indexOf(start);
+        int t = graph.indexOf(end);
+        lastCost = Double.POSITIVE_INFINITY;
+        ArrayList<Intersection> path = new ArrayList<>();
+        if (s == -1 || t == -1) return path;
+        if (s == t) {
+            lastCost = 0.0;
+            path.add(graph.intersection(s));
+            return path;
+        }
+
+        workspace.reset();
+        for (int e = graph.firstEdge(s); e < graph.endEdge(s); e++) {
+            workspace.relax(e, graph.traffic(e), -1, graph.traffic(e));
+        }
+
+        while (!workspace.isEmpty()) {
+            int in = workspace.poll();
+            workspace.settle(in);
+            int v = graph.target(in);
+            double dIn = workspace.dist(in);
+            if (v == t) {
+                lastCost = dIn;
+                return toPath(s, in);
+            }
+            for (int out = graph.firstEdge(v); out < graph.endEdge(v); out++) {
+                if (workspace.isSettled(out)) continue;
+                double dOut = dIn + turnCost(in, out, model) + graph.traffic(out);
+                workspace.relax(out, dOut, in, dOut);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * @return the traffic plus turn costs of the path returned by the last search, or infinity if there was none
+     */
+    public double getLastCost() {
+        return lastCost;
+    }
+
+    private ArrayList<Intersection> toPath(int source, int lastEdge) {
+        ArrayList<Intersection> path = new ArrayList<>();
+        for (int e = lastEdge; e != -1; e = workspace.predEdge(e)) {
+            path.add(graph.intersection(graph.target(e)));
+        }
+        path.add(graph.intersection(source));
+        Collections.reverse(path);
+        return path;
+    }
+}
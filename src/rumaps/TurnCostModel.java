@@ -0,0 +1,57 @@
+package rumaps;
+
+/**
+ * The TurnCostModel class prices the move from one block onto the next at an intersection, in the same units as
+ * block traffic. The turn angle is the change of heading between the last polyline segment of the incoming block
+ * and the first polyline segment of the outgoing block:
+ * - within straightAngle of zero - going straight, free
+ * - a right turn - rightTurnCost
+ * - a left turn - leftTurnCost, scaled by the size of the road being crossed relative to referenceRoadSize,
+ *   since a left turn has to wait for a gap in the oncoming traffic
+ * - a U-turn (turning back onto the same block, or by more than uTurnAngle) - uTurnCost
+ *
+ * Map coordinates grow downwards, so a positive (clockwise on screen) change of heading is a right turn.
+ */
+public class TurnCostModel {
+    public static final TurnCostModel DEFAULT = new TurnCostModel(Math.toRadians(30), Math.toRadians(160), 5.0, 25.0, 150.0, 4.75);
+    public static final TurnCostModel FREE = new TurnCostModel(Math.PI, Math.PI, 0.0, 0.0, 0.0, 4.75);
+
+    private final double straightAngle;
+    private final double uTurnAngle;
+    private final double rightTurnCost;
+    private final double leftTurnCost;
+    private final double uTurnCost;
+    private final double referenceRoadSize;
+
+    /**
+     * @param straightAngle the largest change of heading, in radians, that still counts as going straight
+     * @param uTurnAngle the smallest change of heading, in radians, that counts as a U-turn
+     * @param rightTurnCost the cost of a right turn
+     * @param leftTurnCost the cost of a left turn across a road of referenceRoadSize
+     * @param uTurnCost the cost of a U-turn
+     * @param referenceRoadSize the road size at which leftTurnCost applies unscaled
+     */
+    public TurnCostModel(double straightAngle, double uTurnAngle, double rightTurnCost, double leftTurnCost,
+                         double uTurnCost, double referenceRoadSize) {
+        this.straightAngle = straightAngle;
+        this.uTurnAngle = uTurnAngle;
+        this.rightTurnCost = rightTurnCost;
+        this.leftTurnCost = leftTurnCost;
+        this.uTurnCost = uTurnCost;
+        this.referenceRoadSize = referenceRoadSize;
+    }
+
+    /**
+     * @param angle the change of heading in radians, in (-pi, pi]
+     * @param uTurn true if the outgoing block is the incoming block in the opposite direction
+     * @param crossedRoadSize the road size of the incoming block
+     * @return the cost of the turn
+     */
+    public double cost(double angle, boolean uTurn, float crossedRoadSize) {
+        double magnitude = Math.abs(angle);
+        if (uTurn || magnitude >= uTurnAngle) return uTurnCost;
+        if (magnitude <= straightAngle) return 0.0;
+        if (angle > 0) return rightTurnCost;
+        return leftTurnCost * crossedRoadSize / referenceRoadSize;
+    }
+}
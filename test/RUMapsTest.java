@@ -3,7 +3,11 @@ package test;
 import static org.junit.Assert.*;
 import org.junit.*;
 import rumaps.*;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * This is an optional JUnit test class for the RUMaps class.
@@ -13,6 +17,18 @@ public class RUMapsTest {
 
     // All tests will use the Busch.in input file since it is smaller and easier to debug
     private static final String TEST_FILE = "Busch.in"; 
+
+    // S(20,60) -> B(20,40) -> M(20,20) run north; from B, Left Rd turns left to T(0,20), and from M, Loop Rd goes
+    // straight on before curving round to T
+    private static final String TURN_NETWORK = "4\n3\n"
+        + "Main St\n2\n1\n2\n4.75\n20 60\n20 40\n2\n2\n4.75\n20 40\n20 20\n"
+        + "Left Rd\n1\n1\n3\n4.75\n20 40\n0 40\n0 20\n"
+        + "Loop Rd\n1\n1\n4\n4.75\n20 20\n20 10\n0 10\n0 20\n";
+
+    // College Ave runs (0,0) - (10,0) - (20,0); Hill Ctr (50,50) - (60,50) is not connected to it
+    private static final String TWO_COMPONENT_NETWORK = "5\n2\n"
+        + "College Ave\n2\n1\n2\n4.75\n0 0\n10 0\n2\n2\n4.75\n10 0\n20 0\n"
+        + "Hill Ctr\n1\n1\n2\n4.75\n50 50\n60 50\n";
      
     @Test
     public void testInitializeBlocksAndIntersections() {
@@ -50,6 +66,30 @@ public class RUMapsTest {
         }
     }
 
+    @Test
+    public void testLoad() {
+        StdRandom.setSeed(2024);
+        Network expected = new RUMaps(TEST_FILE).getRutgers();
+        StdRandom.setSeed(2024);
+        Network loaded = RUMaps.load(TEST_FILE).getRutgers();
+
+        //Test that the factory builds the same intersections and blocks, with the same weights, as the constructor
+        assertEquals("Same number of intersections", expected.getNextIndex(), loaded.getNextIndex());
+        for (int i = 0; i < expected.getNextIndex(); i++) {
+            assertEquals("Same intersection at index " + i,
+                expected.getIntersections()[i].getCoordinate(), loaded.getIntersections()[i].getCoordinate());
+            Block ptr = loaded.adj(i);
+            for (Block block = expected.adj(i); block != null; block = block.getNext(), ptr = ptr.getNext()) {
+                assertNotNull("Same number of blocks at index " + i, ptr);
+                assertEquals("Same street", block.getStreetName(), ptr.getStreetName());
+                assertEquals("Same length", block.getLength(), ptr.getLength(), 0.0);
+                assertEquals("Same traffic factor", block.getTrafficFactor(), ptr.getTrafficFactor(), 0.0);
+                assertEquals("Same traffic", block.getTraffic(), ptr.getTraffic(), 0.0);
+            }
+            assertNull("Same number of blocks at index " + i, ptr);
+        }
+    }
+
     @Test
     public void testBlockLength() { 
         RUMaps testRUMaps = new RUMaps(TEST_FILE); 
@@ -317,4 +357,989 @@ public class RUMapsTest {
         assertEquals("Empty path length should be 0", 0.0, emptyPathInfo[0], 0.001);
         assertEquals("Empty path traffic should be 0", 0.0, emptyPathInfo[2], 0.001);
     }
+
+    @Test
+    public void testParetoRoutes() {
+        RUMaps testRUMaps = new RUMaps(TEST_FILE);
+        Network testNetwork = testRUMaps.getRutgers();
+
+        Intersection[] intersections = testNetwork.getIntersections();
+
+        for (int i = 0; i < intersections.length; i++) {
+            for (int j = i + 1; j < intersections.length; j++) {
+                if (intersections[i] != null && intersections[j] != null) {
+                    ArrayList<ParetoRoute> front = testRUMaps.paretoRoutes(intersections[i], intersections[j]);
+                    ArrayList<Intersection> fastPath = testRUMaps.fastestPath(intersections[i], intersections[j]);
+                    ArrayList<Intersection> minPath = testRUMaps.minimizeIntersections(intersections[i], intersections[j]);
+
+                    assertNotNull("Pareto front should not be null", front);
+                    assertFalse("Pareto front should not be empty when a path exists", front.isEmpty());
+
+                    //Test that the first route is as fast as the fastest path
+                    assertEquals("First Pareto route should have the least traffic",
+                               testRUMaps.pathInformation(fastPath)[2], front.get(0).getTraffic(), 0.001);
+
+                    int minHops = Integer.MAX_VALUE;
+                    for (ParetoRoute route : front) {
+                        //Test that the stored totals match pathInformation
+                        double[] info = testRUMaps.pathInformation(route.getPath());
+                        assertEquals("Route length should match pathInformation", info[0], route.getLength(), 0.001);
+                        assertEquals("Route traffic should match pathInformation", info[2], route.getTraffic(), 0.001);
+                        assertEquals("Route hops should match path size", route.getPath().size() - 1, route.getHops());
+                        minHops = Math.min(minHops, route.getHops());
+
+                        //Test that no route dominates another
+                        for (ParetoRoute other : front) {
+                            if (other != route) {
+                                assertFalse("Pareto routes should not dominate each other",
+                                           other.getTraffic() <= route.getTraffic() && other.getLength() <= route.getLength()
+                                           && other.getHops() <= route.getHops());
+                            }
+                        }
+                    }
+
+                    //Test that the front contains a route with the least number of intersections
+                    assertEquals("Pareto front should contain a fewest-intersections route", minPath.size() - 1, minHops);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testKShortestPaths() {
+        RUMaps testRUMaps = new RUMaps(TEST_FILE);
+        Network testNetwork = testRUMaps.getRutgers();
+
+        Intersection[] intersections = testNetwork.getIntersections();
+
+        for (int i = 0; i < intersections.length; i++) {
+            for (int j = i + 1; j < intersections.length; j++) {
+                if (intersections[i] != null && intersections[j] != null) {
+                    ArrayList<ArrayList<Intersection>> paths = testRUMaps.kShortestPaths(intersections[i], intersections[j], 3);
+                    ArrayList<Intersection> fastPath = testRUMaps.fastestPath(intersections[i], intersections[j]);
+
+                    assertNotNull("K shortest paths should not be null", paths);
+                    assertTrue("Should have between 1 and 3 paths", paths.size() >= 1 && paths.size() <= 3);
+
+                    //Test that the first path is as fast as the fastest path
+                    assertEquals("First path should have the least traffic",
+                               testRUMaps.pathInformation(fastPath)[2], testRUMaps.pathInformation(paths.get(0))[2], 0.001);
+
+                    double previousTraffic = 0.0;
+                    for (ArrayList<Intersection> path : paths) {
+                        assertEquals("Path should start with source intersection", intersections[i], path.get(0));
+                        assertEquals("Path should end with destination intersection", intersections[j], path.get(path.size() - 1));
+                        assertEquals("Path should be loopless", path.size(), new java.util.HashSet<>(path).size());
+
+                        //Test that paths are in increasing order of traffic
+                        double traffic = testRUMaps.pathInformation(path)[2];
+                        assertTrue("Paths should be sorted by traffic", traffic >= previousTraffic - 0.001);
+                        previousTraffic = traffic;
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRouteConstraints() {
+        RUMaps testRUMaps = new RUMaps(TEST_FILE);
+        Network testNetwork = testRUMaps.getRutgers();
+
+        Intersection[] intersections = testNetwork.getIntersections();
+        RouteConstraints constraints = new RouteConstraints().avoidStreet("Sutphen Rd");
+
+        for (int i = 0; i < intersections.length; i++) {
+            //Test that no constraints give the same DFS order as reachableIntersections
+            assertEquals("Unconstrained DFS should match reachableIntersections",
+                       testRUMaps.reachableIntersections(intersections[i]), testRUMaps.reachableIntersections(intersections[i], null));
+
+            for (int j = i + 1; j < intersections.length; j++) {
+                ArrayList<Intersection> path = testRUMaps.fastestPath(intersections[i], intersections[j], constraints);
+                assertNotNull("Constrained path should not be null", path);
+
+                //Test that the path exists exactly when the DFS with the same constraints reaches the destination
+                assertEquals("Constrained path should exist iff the destination is reachable",
+                           testRUMaps.reachableIntersections(intersections[i], constraints).contains(intersections[j]), !path.isEmpty());
+
+                //Test that the path never uses the avoided street
+                for (int k = 0; k < path.size() - 1; k++) {
+                    Block block = testNetwork.adj(testNetwork.findIntersection(path.get(k).getCoordinate()));
+                    boolean allowed = false;
+                    while (block != null) {
+                        if (block.other(path.get(k)).equals(path.get(k + 1)) && !block.getStreetName().equals("Sutphen Rd")) {
+                            allowed = true;
+                        }
+                        block = block.getNext();
+                    }
+                    assertTrue("Constrained path should not use an avoided street", allowed);
+                }
+            }
+        }
+
+        //Test that an avoided block is only that block of that street
+        Block avoided = testNetwork.adj(0);
+        RouteConstraints oneBlock = new RouteConstraints().avoidBlock(avoided);
+        for (Block head : testNetwork.getAdjacencyList()) {
+            for (Block block = head; block != null; block = block.getNext()) {
+                boolean same = block.getStreetName().equals(avoided.getStreetName()) && block.getBlockNumber() == avoided.getBlockNumber();
+                assertEquals("Only the avoided block should be disallowed", !same, oneBlock.allows(block));
+            }
+        }
+        assertEquals("Constraints should not depend on the order they were added in",
+                   new RouteConstraints().avoidBlock("A", 1).avoidBlock("B", 2).avoidBlock("A", 3),
+                   new RouteConstraints().avoidBlock("A", 3).avoidBlock("B", 2).avoidBlock("A", 1));
+        assertNotEquals("Blocks of different streets should not be confused",
+                   new RouteConstraints().avoidBlock("A", 1), new RouteConstraints().avoidBlock("B", 1));
+        assertNull("Constraints avoiding nothing should block no edge", new RouteConstraints().blockedEdges(testRUMaps.getRoutingGraph()));
+    }
+
+    @Test
+    public void testReachableIntersectionsOrder() {
+        for (String file : new String[] {TEST_FILE, "AllCampuses.in"}) {
+            RUMaps testRUMaps = new RUMaps(file);
+            Network testNetwork = testRUMaps.getRutgers();
+
+            //Test that the iterative DFS visits intersections in the order of a recursive DFS
+            for (Intersection source : testNetwork.getIntersections()) {
+                ArrayList<Intersection> expected = new ArrayList<>();
+                recursiveDFS(testNetwork, testNetwork.findIntersection(source.getCoordinate()),
+                             new boolean[testNetwork.getIntersections().length], expected);
+                assertEquals("DFS order should match the recursive DFS on " + file, expected, testRUMaps.reachableIntersections(source));
+            }
+        }
+    }
+
+    @Test
+    public void testReachableIntersectionsLongChain() throws IOException {
+        //A chain far longer than a recursive DFS can follow on a default thread stack
+        int length = 50000;
+        File file = File.createTempFile("chain", ".in");
+        file.deleteOnExit();
+        NetworkGenerator.grid(length, 1, 0, file);
+        RUMaps testRUMaps = new RUMaps(file.getPath());
+        Network testNetwork = testRUMaps.getRutgers();
+
+        Intersection first = testNetwork.getIntersections()[testNetwork.findIntersection(0, 0)];
+        ArrayList<Intersection> reachable = testRUMaps.reachableIntersections(first);
+        assertEquals("Every intersection of the chain should be reachable", length, reachable.size());
+        for (int i = 0; i < length; i++) {
+            assertEquals("Chain should be visited in order", i * NetworkGenerator.SPACING, reachable.get(i).getCoordinate().getX());
+        }
+    }
+
+    @Test
+    public void testHopSearchMatchesBFS() throws IOException {
+        //A dense random network is crossed in few levels with wide frontiers, so the direction-optimizing BFS takes
+        //bottom-up steps, which it never does on the campus networks or on grids
+        StdRandom.setSeed(2024);
+        File file = File.createTempFile("geometric", ".in");
+        file.deleteOnExit();
+        NetworkGenerator.randomGeometric(4000, 24, file);
+        RUMaps testRUMaps = new RUMaps(file.getPath());
+        Network testNetwork = testRUMaps.getRutgers();
+        Intersection[] intersections = testNetwork.getIntersections();
+        HopSearch search = new HopSearch(testRUMaps.getRoutingGraph());
+
+        for (int s = 0; s < intersections.length; s += 400) {
+            int[] expected = bfsDistances(testNetwork, s);
+
+            //Test that the direction-optimizing BFS finds every hop count of a textbook BFS, with the marks of
+            //an earlier search that stopped early still in the reused search
+            search.bidirectional(s, (s + 1) % intersections.length, null);
+            search.search(s, -1, null);
+            for (int v = 0; v < intersections.length; v++) {
+                assertEquals("Hop count should match the BFS", expected[v], search.distance(v));
+            }
+
+            //Test that both modes of minimizeIntersections return paths with the least number of hops
+            for (int t = (s + 200) % intersections.length; t < intersections.length; t += 400) {
+                ArrayList<Intersection> path = testRUMaps.minimizeIntersections(intersections[s], intersections[t]);
+                ArrayList<Intersection> bidirectional = testRUMaps.minimizeIntersections(intersections[s], intersections[t], null, true);
+                assertEquals("Path should have the least number of hops", expected[t], path.size() - 1);
+                assertEquals("Bidirectional path should have the least number of hops", expected[t], bidirectional.size() - 1);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelHopSearch() throws IOException {
+        File file = File.createTempFile("grid", ".in");
+        file.deleteOnExit();
+        NetworkGenerator.grid(120, 120, 0, file);
+        RUMaps testRUMaps = new RUMaps(file.getPath());
+        Network testNetwork = testRUMaps.getRutgers();
+        RoutingGraph graph = testRUMaps.getRoutingGraph();
+        int source = testNetwork.findIntersection(60 * NetworkGenerator.SPACING, 60 * NetworkGenerator.SPACING);
+        int[] expected = bfsDistances(testNetwork, source);
+
+        //Frontiers of the grid stay below GRAIN, so this search runs on the calling thread only
+        ParallelHopSearch sequential = new ParallelHopSearch(graph);
+        sequential.search(source, null);
+
+        //A small grain splits every frontier of more than 16 intersections into parallel tasks
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(4);
+        try {
+            for (int run = 0; run < 5; run++) {
+                ParallelHopSearch parallel = new ParallelHopSearch(graph, pool, 16);
+                int[] dist = parallel.search(source, null);
+                for (int v = 0; v < graph.size(); v++) {
+                    //Test that distances match the sequential BFS
+                    assertEquals("Parallel hop count should match the BFS", expected[v], dist[v]);
+
+                    //Test that parents do not depend on which thread reached a vertex first
+                    assertEquals("Parallel parent should match the sequential one", sequential.parentEdge(v), parallel.parentEdge(v));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        //Test that every parent is the lowest edge from the previous level
+        for (int v = 0; v < graph.size(); v++) {
+            if (v == source) {
+                assertEquals("Source should have no parent", -1, sequential.parentEdge(v));
+                continue;
+            }
+            int lowest = -1;
+            for (int e = graph.firstEdge(v); e < graph.endEdge(v); e++) {
+                int in = graph.twin(e);
+                if (expected[graph.tail(in)] == expected[v] - 1 && (lowest == -1 || in < lowest)) lowest = in;
+            }
+            assertEquals("Parent should be the lowest edge from the previous level", lowest, sequential.parentEdge(v));
+        }
+    }
+
+    @Test
+    public void testBatchRouter() throws InterruptedException {
+        RUMaps testRUMaps = new RUMaps(TEST_FILE);
+        Intersection[] intersections = testRUMaps.getRutgers().getIntersections();
+        ArrayList<BatchRouter.Query> queries = new ArrayList<>();
+        for (Intersection start : intersections) {
+            for (Intersection end : intersections) {
+                queries.add(new BatchRouter.Query(queries.size(), start, end));
+            }
+        }
+        BatchRouter router = testRUMaps.batchRouter(null).setBatchSize(100).setQueueCapacity(16);
+
+        //Test that ordered results come out in query order with the fastest path
+        ArrayList<BatchRouter.Result> ordered = router.routeAll(queries);
+        assertEquals("Every query should have a result", queries.size(), ordered.size());
+        for (int i = 0; i < queries.size(); i++) {
+            BatchRouter.Result result = ordered.get(i);
+            assertSame("Results should be in query order", queries.get(i), result.getQuery());
+            Route route = testRUMaps.fastestRoute(result.getQuery().getStart(), result.getQuery().getEnd(), null);
+            assertEquals("Batch path should be the fastest path", route.getPath(), result.getPath());
+            assertEquals("Batch traffic should be the fastest path's", route.getTraffic(), result.getTraffic(), 0.001);
+        }
+
+        //Test that unordered results hold the same answers, each once
+        BatchRouter.Result[] byId = new BatchRouter.Result[queries.size()];
+        try (java.util.stream.Stream<BatchRouter.Result> results = router.route(queries.stream(), false)) {
+            results.forEach(result -> {
+                int id = (int) result.getQuery().getId();
+                assertNull("Every query should be answered once", byId[id]);
+                byId[id] = result;
+            });
+        }
+        for (int i = 0; i < queries.size(); i++) {
+            assertNotNull("Every query should be answered", byId[i]);
+            assertEquals("Unordered path should match the ordered one", ordered.get(i).getPath(), byId[i].getPath());
+        }
+
+        //Test that closing the results stops reading an endless stream of queries
+        for (boolean inOrder : new boolean[] {true, false}) {
+            java.util.concurrent.atomic.AtomicLong read = new java.util.concurrent.atomic.AtomicLong();
+            java.util.stream.Stream<BatchRouter.Query> endless = java.util.stream.Stream.iterate(0L, i -> i + 1)
+                .peek(i -> read.incrementAndGet())
+                .map(i -> new BatchRouter.Query(i, intersections[(int) (i % intersections.length)], intersections[(int) (i * 7 % intersections.length)]));
+            try (java.util.stream.Stream<BatchRouter.Result> results = router.route(endless, inOrder)) {
+                assertEquals("Results should be available before closing", 50, results.limit(50).count());
+            }
+            Thread.sleep(300);
+            long afterClose = read.get();
+            Thread.sleep(300);
+            assertEquals("No more queries should be read once the results are closed", afterClose, read.get());
+        }
+    }
+
+    @Test
+    public void testRoute() throws IOException {
+        RUMaps testRUMaps = new RUMaps(TEST_FILE);
+        RoutingGraph graph = testRUMaps.getRoutingGraph();
+        Intersection[] intersections = testRUMaps.getRutgers().getIntersections();
+
+        //Test that a route built from a path has the totals pathInformation computes for it
+        for (Intersection start : intersections) {
+            for (Intersection end : intersections) {
+                for (ArrayList<Intersection> path : Arrays.asList(testRUMaps.fastestPath(start, end), testRUMaps.minimizeIntersections(start, end))) {
+                    if (path.size() < 2) continue;
+                    Route route = Route.of(graph, path);
+                    assertEquals("Route should follow the path", path, route.getPath());
+                    assertEquals("Route should take one block per hop", path.size() - 1, route.getHops());
+                    assertArrayEquals("Route totals should match pathInformation", testRUMaps.pathInformation(path), route.getInformation(), 1e-9);
+                    assertEquals("Totals up to the last block should be the totals", route.getTraffic(), route.getTrafficTo(route.getHops()), 0.0);
+                }
+            }
+        }
+        assertSame("Empty path should give no route", Route.NONE, Route.of(graph, new ArrayList<Intersection>()));
+        try {
+            Route.of(graph, Arrays.asList(intersections[0], intersections[0]));
+            fail("Intersections without a block between them should be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        //Test that unreachable pairs give no route
+        RUMaps twoComponents = loadNetwork(TWO_COMPONENT_NETWORK);
+        Network network = twoComponents.getRutgers();
+        Intersection a = network.getIntersections()[network.findIntersection(0, 0)];
+        Intersection c = network.getIntersections()[network.findIntersection(20, 0)];
+        Intersection e = network.getIntersections()[network.findIntersection(60, 50)];
+        Intersection outside = new Intersection(new Coordinate(5, 5));
+        assertSame("Fastest route between components should be NONE", Route.NONE, twoComponents.fastestRoute(a, e, null));
+        assertSame("Hop route between components should be NONE", Route.NONE, twoComponents.minimizeIntersectionsRoute(a, e, null, false));
+        assertSame("Bidirectional hop route between components should be NONE", Route.NONE, twoComponents.minimizeIntersectionsRoute(a, e, null, true));
+        assertSame("Route from outside the network should be NONE", Route.NONE, twoComponents.fastestRoute(outside, c, null));
+        RouteConstraints closed = new RouteConstraints().avoidStreet("College Ave");
+        assertSame("Fastest route cut off by a closure should be NONE", Route.NONE, twoComponents.fastestRoute(a, c, closed));
+        assertSame("Hop route cut off by a closure should be NONE", Route.NONE, twoComponents.minimizeIntersectionsRoute(a, c, closed, false));
+        assertFalse("Reachable pair should still have a route", twoComponents.fastestRoute(a, c, null).isEmpty());
+        assertTrue("NONE should be empty", Route.NONE.isEmpty());
+        assertEquals("NONE should have no blocks", 0, Route.NONE.getHops());
+    }
+
+    @Test
+    public void testConnectedComponents() throws IOException {
+        RUMaps testRUMaps = loadNetwork(TWO_COMPONENT_NETWORK);
+        Network testNetwork = testRUMaps.getRutgers();
+        Intersection[] intersections = testNetwork.getIntersections();
+        Intersection a = intersections[testNetwork.findIntersection(0, 0)];
+        Intersection b = intersections[testNetwork.findIntersection(10, 0)];
+        Intersection c = intersections[testNetwork.findIntersection(20, 0)];
+        Intersection d = intersections[testNetwork.findIntersection(50, 50)];
+        Intersection e = intersections[testNetwork.findIntersection(60, 50)];
+
+        //Test that intersections share a label exactly when they are connected
+        assertEquals("Connected intersections should share a label", testRUMaps.componentOf(a), testRUMaps.componentOf(c));
+        assertEquals("Connected intersections should share a label", testRUMaps.componentOf(d), testRUMaps.componentOf(e));
+        assertNotEquals("Disconnected intersections should have different labels", testRUMaps.componentOf(a), testRUMaps.componentOf(d));
+        assertEquals("Intersection outside the network should have no label", -1, testRUMaps.componentOf(new Intersection(new Coordinate(5, 5))));
+        assertEquals("Every intersection slot should be counted", 2, testNetwork.getComponents().count());
+
+        assertTrue("Intersections on one street should be reachable", testRUMaps.isReachable(a, c));
+        assertFalse("Intersections on separate streets should not be reachable", testRUMaps.isReachable(a, e));
+
+        //Test that the reachable set is the component in index order
+        assertEquals("Reachable set should be the component of the source", Arrays.asList(a, b, c), testRUMaps.reachableSet(b));
+        assertEquals("Reachable set should be the component of the source", Arrays.asList(d, e), testRUMaps.reachableSet(e));
+
+        //Test that queries between components return empty paths
+        assertEquals("Unreachable minimize intersections path should be empty", new ArrayList<Intersection>(), testRUMaps.minimizeIntersections(a, e));
+        assertEquals("Unreachable fastest path should be empty", new ArrayList<Intersection>(), testRUMaps.fastestPath(a, e));
+        assertEquals("Reachable path should still be found", Arrays.asList(a, b, c), testRUMaps.minimizeIntersections(a, c));
+
+        //Test on Busch that the labels and reachable sets agree with the DFS
+        RUMaps busch = new RUMaps(TEST_FILE);
+        Intersection[] buschIntersections = busch.getRutgers().getIntersections();
+        for (Intersection source : buschIntersections) {
+            ArrayList<Intersection> reachable = busch.reachableIntersections(source);
+            assertEquals("Reachable set should hold what the DFS reaches",
+                       new java.util.HashSet<>(reachable), new java.util.HashSet<>(busch.reachableSet(source)));
+            for (Intersection target : buschIntersections) {
+                assertEquals("Labels should match reachability", reachable.contains(target), busch.componentOf(source) == busch.componentOf(target));
+                assertEquals("isReachable should match the DFS", reachable.contains(target), busch.isReachable(source, target));
+            }
+        }
+    }
+
+    @Test
+    public void testFindIntersectionWrittenToArray() {
+        RUMaps testRUMaps = new RUMaps(TEST_FILE);
+        Network testNetwork = testRUMaps.getRutgers();
+
+        //Test that an intersection written straight into the array is still found
+        Intersection added = new Intersection(new Coordinate(1, 2));
+        testNetwork.getIntersections()[3] = added;
+        assertEquals("Intersection written into the array should be found", 3, testNetwork.findIntersection(1, 2));
+        assertEquals("Missing intersection should not be found", -1, testNetwork.findIntersection(2, 1));
+    }
+
+    @Test
+    public void testTurnAwarePath() throws IOException {
+        RUMaps testRUMaps = loadNetwork(TURN_NETWORK);
+        Network testNetwork = testRUMaps.getRutgers();
+        Intersection[] intersections = testNetwork.getIntersections();
+        Intersection s = intersections[testNetwork.findIntersection(20, 60)];
+        Intersection b = intersections[testNetwork.findIntersection(20, 40)];
+        Intersection m = intersections[testNetwork.findIntersection(20, 20)];
+        Intersection t = intersections[testNetwork.findIntersection(0, 20)];
+
+        //Test that without turn costs the shorter path turning left at B is taken
+        assertEquals("Free turns should give the shortest path", Arrays.asList(s, b, t), testRUMaps.turnAwarePath(s, t, TurnCostModel.FREE));
+
+        //Test that the left turn (traffic 40 + 25) is avoided for the straight detour (traffic 60)
+        assertEquals("Left turn should be avoided for a cheaper straight detour", Arrays.asList(s, b, m, t), testRUMaps.turnAwarePath(s, t));
+
+        //Test that the router kept for the graph gives the same path again
+        assertEquals("Repeated query should give the same path", Arrays.asList(s, b, m, t), testRUMaps.turnAwarePath(s, t));
+    }
+
+    @Test
+    public void testUTurnsPenalized() {
+        RUMaps testRUMaps = new RUMaps(TEST_FILE);
+        RoutingGraph graph = testRUMaps.getRoutingGraph();
+        TurnAwareRouter router = new TurnAwareRouter(graph);
+
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            int twin = graph.twin(e);
+            if (twin == e) continue;
+            double uTurn = router.turnCost(e, twin);
+
+            //Test that turning back onto the same block costs more than any other move at its end
+            assertTrue("U-turn should have a cost", uTurn > 0);
+            int head = graph.target(e);
+            for (int out = graph.firstEdge(head); out < graph.endEdge(head); out++) {
+                if (out != twin) {
+                    assertTrue("U-turn should cost at least as much as any other turn", uTurn >= router.turnCost(e, out));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOptimizeStops() {
+        //Traffic factors are random; fix them so the heuristic is compared on known data whatever ran before
+        StdRandom.setSeed(2024);
+        RUMaps testRUMaps = new RUMaps(TEST_FILE);
+        Intersection[] intersections = testRUMaps.getRutgers().getIntersections();
+        int[][] stopSets = {{0, 5, 10, 15, 20, 25}, {3, 7, 11, 19, 23, 28, 1, 14}};
+
+        for (int[] stopSet : stopSets) {
+            ArrayList<Intersection> stops = new ArrayList<>();
+            for (int i : stopSet) stops.add(intersections[i]);
+
+            for (boolean returnToStart : new boolean[] {false, true}) {
+                MultiStopRoute exact = testRUMaps.optimizeStops(stops, returnToStart);
+                MultiStopRoute heuristic = new MultiStopOptimizer(testRUMaps.getRoutingGraph(), 0).optimize(stops, returnToStart);
+
+                //Test that nearest neighbour with 2-opt and Or-opt finds as fast an order as Held-Karp on a small set
+                assertEquals("Heuristic order should be as fast as the exact one", exact.getTraffic(), heuristic.getTraffic(), 0.001);
+
+                for (MultiStopRoute route : new MultiStopRoute[] {exact, heuristic}) {
+                    ArrayList<Intersection> path = route.getPath();
+
+                    //Test that every stop is visited once, starting at the first one
+                    assertEquals("Route should start at the first stop", stops.get(0), route.getStops().get(0));
+                    assertEquals("Route should visit every stop once", new java.util.HashSet<>(stops), new java.util.HashSet<>(route.getStops()));
+                    assertEquals("Route should visit every stop once", stops.size(), route.getStops().size());
+
+                    //Test that the stitched path passes the stops in the chosen order
+                    int position = 0;
+                    for (Intersection stop : route.getStops()) {
+                        while (position < path.size() && !path.get(position).equals(stop)) position++;
+                        assertTrue("Path should pass the stops in order", position < path.size());
+                    }
+                    assertEquals("Path should start at the first stop", stops.get(0), path.get(0));
+                    if (returnToStart) {
+                        assertEquals("Round trip should end at the first stop", stops.get(0), path.get(path.size() - 1));
+                    }
+
+                    //Test that the totals match pathInformation of the stitched path
+                    double[] info = testRUMaps.pathInformation(path);
+                    assertArrayEquals("Route totals should match pathInformation", info, route.getInformation(), 0.001);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSimplify() {
+        ArrayList<Coordinate> line = new ArrayList<>();
+        for (int x = 0; x <= 40; x += 10) line.add(new Coordinate(x, 2 * x));
+
+        //Test that points on the segment between the endpoints are dropped and the endpoints kept
+        ArrayList<double[]> points = pathPoints(TileRenderer.simplify(line, 0.5));
+        assertEquals("A straight line should keep only its endpoints", 2, points.size());
+        assertArrayEquals("First point should be kept", new double[] {0, 0}, points.get(0), 0);
+        assertArrayEquals("Last point should be kept", new double[] {40, 80}, points.get(1), 0);
+
+        //Test that a point is kept only while it is farther from the line than the tolerance
+        ArrayList<Coordinate> bent = new ArrayList<>(Arrays.asList(new Coordinate(0, 0), new Coordinate(10, 1),
+            new Coordinate(20, 3), new Coordinate(30, 1), new Coordinate(40, 0)));
+        assertEquals("Points within the tolerance should be dropped", 2, pathPoints(TileRenderer.simplify(bent, 3.5)).size());
+        points = pathPoints(TileRenderer.simplify(bent, 2.5));
+        assertEquals("Only the point beyond the tolerance should be kept", 3, points.size());
+        assertArrayEquals("Farthest point should be kept", new double[] {20, 3}, points.get(1), 0);
+        assertEquals("Every point should be kept below the smallest distance", 5, pathPoints(TileRenderer.simplify(bent, 0.25)).size());
+
+        //Test that a single point and an empty polyline are kept as they are
+        assertEquals("Single point should be kept", 1, pathPoints(TileRenderer.simplify(line.subList(0, 1), 0.5)).size());
+        assertEquals("Empty polyline should give an empty path", 0, pathPoints(TileRenderer.simplify(new ArrayList<Coordinate>(), 0.5)).size());
+    }
+
+    @Test
+    public void testTileKeys() {
+        int[] levels = {MapPanel.MIN_ZOOM_LEVEL, -1, 0, MapPanel.MAX_ZOOM_LEVEL};
+        int[] positions = {-(1 << 27), -100000, -1, 0, 1, 12345, (1 << 27) - 1};
+
+        //Test that the level, column and row come back from the key, negative ones included
+        for (int level : levels) {
+            for (int column : positions) {
+                for (int row : positions) {
+                    long key = TileRenderer.key(level, column, row);
+                    assertEquals("Level should round-trip", level, TileRenderer.level(key));
+                    assertEquals("Column should round-trip", column, TileRenderer.column(key));
+                    assertEquals("Row should round-trip", row, TileRenderer.row(key));
+                }
+            }
+        }
+        assertNotEquals("Neighbouring tiles should have different keys", TileRenderer.key(0, -1, 0), TileRenderer.key(0, 0, -1));
+    }
+
+    @Test
+    public void testParentTileFallback() throws InterruptedException {
+        RUMaps testRUMaps = new RUMaps(TEST_FILE);
+        ArrayList<Block> blocks = new ArrayList<>();
+        for (Block block : testRUMaps.getRutgers().getAdjacencyList()) {
+            for (Block ptr = block; ptr != null; ptr = ptr.getNext()) blocks.add(ptr);
+        }
+        java.util.concurrent.Semaphore ready = new java.util.concurrent.Semaphore(0);
+        TileRenderer renderer = new TileRenderer(ready::release, 16, 1);
+        try {
+            renderer.setContent(null, null, 0, 0, 0, java.awt.Color.WHITE, blocks, java.awt.Color.BLACK);
+
+            //Test that a tile is queued, not returned, until a worker has drawn it
+            assertNull("Tile should not be drawn yet", renderer.getTile(0, 0, 0));
+            assertTrue("Tile should be drawn", ready.tryAcquire(30, java.util.concurrent.TimeUnit.SECONDS));
+            java.awt.image.BufferedImage parent = renderer.peekTile(0, 0, 0);
+            assertNotNull("Drawn tile should be cached", parent);
+
+            //Test that the tile one level up that is not drawn yet is stood in for by the enlarged quarter of its parent
+            int size = TileRenderer.TILE_SIZE;
+            java.awt.image.BufferedImage view = new java.awt.image.BufferedImage(size, size, java.awt.image.BufferedImage.TYPE_INT_RGB);
+            java.awt.Graphics2D g2d = view.createGraphics();
+            assertTrue("Parent quarter should be drawn", renderer.drawTile(g2d, 1, 1, 1, 0, 0));
+            for (int y = 0; y < size; y += 7) {
+                for (int x = 0; x < size; x += 7) {
+                    assertEquals("Pixel should come from the parent's quarter", parent.getRGB(size / 2 + x / 2, size / 2 + y / 2), view.getRGB(x, y));
+                }
+            }
+
+            //Test that nothing is drawn when neither the tile nor its parent is ready
+            assertFalse("Nothing should be drawn without a cached parent", renderer.drawTile(g2d, 3, 0, 0, 0, 0));
+            g2d.dispose();
+        } finally {
+            renderer.shutdown();
+        }
+    }
+
+    @Test
+    public void testRouteCache() {
+        RUMaps testRUMaps = new RUMaps(TEST_FILE);
+        Network testNetwork = testRUMaps.getRutgers();
+        Intersection[] intersections = testNetwork.getIntersections();
+        Intersection a = intersections[0], b = intersections[1], c = intersections[2];
+        RouteCache<String> cache = new RouteCache<>(testNetwork, 2);
+        int[] computed = new int[1];
+        java.util.function.Supplier<String> compute = () -> "route " + ++computed[0];
+
+        //Test that a repeated query is answered from the cache and a different one is computed
+        assertEquals("Miss should compute the value", "route 1", cache.get(a, b, "fastestPath", null, compute));
+        assertEquals("Hit should return the cached value", "route 1", cache.get(a, b, "fastestPath", null, compute));
+        assertEquals("Other algorithm should miss", "route 2", cache.get(a, b, "minimizeIntersections", null, compute));
+        assertEquals("Hits should be counted", 1, cache.getHits());
+        assertEquals("Misses should be counted", 2, cache.getMisses());
+
+        //Test that the least recently used entry is evicted at capacity
+        cache.get(a, b, "fastestPath", null, compute);
+        assertEquals("Third entry should be computed", "route 3", cache.get(a, c, "fastestPath", null, compute));
+        assertEquals("Cache should stay at capacity", 2, cache.size());
+        assertEquals("One entry should be evicted", 1, cache.getEvictions());
+        assertEquals("Recently used entry should be kept", "route 1", cache.get(a, b, "fastestPath", null, compute));
+        assertEquals("Least recently used entry should be evicted", "route 4", cache.get(a, b, "minimizeIntersections", null, compute));
+
+        //Test that changing a constraints object after a query does not change the entry the query stored
+        RouteConstraints constraints = new RouteConstraints().avoidStreet("College Ave");
+        assertEquals("Constrained query should miss", "route 5", cache.get(a, b, "fastestPath", constraints, compute));
+        constraints.avoidStreet("Hill Ctr");
+        assertEquals("Changed constraints should miss", "route 6", cache.get(a, b, "fastestPath", constraints, compute));
+        assertEquals("Equal constraints should hit the entry of the unchanged ones", "route 5",
+            cache.get(a, b, "fastestPath", new RouteConstraints().avoidStreet("College Ave"), compute));
+
+        //Test that setting a block's traffic drops every entry
+        Block block = testNetwork.getAdjacencyList()[0];
+        block.setTraffic(block.getTraffic() + 1);
+        assertEquals("Query after a traffic change should miss", "route 7", cache.get(a, b, "fastestPath", constraints, compute));
+        assertEquals("Cache should be dropped once", 1, cache.getInvalidations());
+        assertEquals("Only the new entry should be left", 1, cache.size());
+
+        //Test that a value computed while the traffic changed is returned but not stored
+        String value = cache.get(a, c, "fastestPath", null, () -> {
+            block.setTraffic(block.getTraffic() + 1);
+            return compute.get();
+        });
+        assertEquals("Value should be returned", "route 8", value);
+        assertEquals("Value of an old epoch should not be stored", "route 9", cache.get(a, c, "fastestPath", null, compute));
+    }
+
+    @Test
+    public void testLatencyHistogram() {
+        //Test that each value is reported as the top of a bucket at most 1/16 above it: values below 16 exactly,
+        //and larger ones around the powers of two where the buckets change width
+        ArrayList<Long> values = new ArrayList<>();
+        for (long v = 0; v < 40; v++) values.add(v);
+        for (int exponent = 5; exponent < 62; exponent += 3) {
+            long power = 1L << exponent;
+            values.addAll(Arrays.asList(power - 1, power, power + 1, power + power / 16 - 1, power + power / 16, 3 * power / 2));
+        }
+        for (long value : values) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            histogram.record(Long.MAX_VALUE);
+            long reported = histogram.valueAtPercentile(50);
+            assertTrue("Bucket should hold the value " + value, reported >= value);
+            assertTrue("Bucket of " + value + " should be within 1/16", value < 16 ? reported == value : reported - value <= value / 16);
+        }
+
+        //Test that the percentiles of 1..10000 ns fall in the bucket of the exact percentile
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 10000; v >= 1; v--) histogram.record(v);
+        assertEquals("Every value should be counted", 10000, histogram.getCount());
+        assertEquals("Mean should be exact", 5000.5, histogram.getMean(), 1e-9);
+        assertEquals("Max should be exact", 10000, histogram.getMax());
+        long p50 = histogram.valueAtPercentile(50), p99 = histogram.valueAtPercentile(99);
+        assertTrue("p50 should be within 1/16 of 5000: " + p50, p50 >= 5000 && p50 <= 5000 + 5000 / 16);
+        assertTrue("p99 should be within 1/16 of 9900: " + p99, p99 >= 9900 && p99 <= 9900 + 9900 / 16);
+        assertEquals("p100 should be the max", 10000, histogram.valueAtPercentile(100));
+
+        //Test that reset forgets everything
+        histogram.reset();
+        assertEquals("Count should be cleared", 0, histogram.getCount());
+        assertEquals("Max should be cleared", 0, histogram.getMax());
+        assertEquals("Mean should be cleared", 0.0, histogram.getMean(), 0);
+        assertEquals("Percentiles should be cleared", 0, histogram.valueAtPercentile(50));
+    }
+
+    @Test
+    public void testRoutingMetrics() {
+        boolean wasEnabled = RoutingMetrics.isEnabled();
+        try {
+            //Test that a disabled query costs nothing: no flight recording is running, so begin gives no query
+            RoutingMetrics.setEnabled(false);
+            assertNull("Disabled metrics should not start a query", RoutingMetrics.begin("testMetrics", 0, 1));
+
+            //Test that enabled queries are counted per algorithm, and reset clears them
+            RoutingMetrics.setEnabled(true);
+            RoutingMetrics.reset();
+            for (int i = 0; i < 3; i++) {
+                RoutingMetrics.Query query = RoutingMetrics.begin("testMetrics");
+                assertNotNull("Enabled metrics should start a query", query);
+                query.end(10, 5, 5);
+            }
+            assertEquals("Queries should be counted", 3, RoutingMetrics.getQueryCount("testMetrics"));
+            assertTrue("Latency should be recorded", RoutingMetrics.getLatencyNanos("testMetrics", 100) > 0);
+            assertTrue("Report should list the algorithm", RoutingMetrics.dump().contains("testMetrics"));
+            RoutingMetrics.reset();
+            assertEquals("Reset should clear the counts", 0, RoutingMetrics.getQueryCount("testMetrics"));
+            assertEquals("Reset should clear the latencies", 0, RoutingMetrics.getLatencyNanos("testMetrics", 100));
+        } finally {
+            RoutingMetrics.setEnabled(wasEnabled);
+        }
+    }
+
+    @Test
+    public void testSearchTrace() {
+        SearchTrace trace = new SearchTrace(100);
+        assertEquals("Capacity should be rounded up to a power of two", 128, trace.capacity());
+        SearchTrace.Cursor cursor = trace.cursor();
+        long[] events = new long[1024];
+
+        //Test that each search claims a chunk of its own, so two searches can record at once
+        SearchTrace.Recorder first = trace.begin(7);
+        SearchTrace.Recorder second = trace.begin(8);
+        assertEquals("Each search should claim one chunk", 2 * SearchTrace.CHUNK, trace.getRecorded());
+        first.settle(5);
+        second.relax(9);
+        int count = cursor.poll(events, events.length);
+        assertEquals("Reading should stop at the first slot not written yet", 2, count);
+        assertEquals("First event should be the start", SearchTrace.START, SearchTrace.kind(events[0]));
+        assertEquals("Start should carry the source", 7, SearchTrace.vertex(events[0]));
+        assertEquals("Second event should be the settle", SearchTrace.SETTLE, SearchTrace.kind(events[1]));
+        assertEquals("Settle should carry the vertex", 5, SearchTrace.vertex(events[1]));
+        int firstId = SearchTrace.search(events[0]);
+        assertEquals("Events of a search should carry its id", firstId, SearchTrace.search(events[1]));
+
+        //Test that end() pads the rest of the chunk so the reader moves on to the next search
+        first.end();
+        count = cursor.poll(events, events.length);
+        assertEquals("Reader should pass the padding and read the second search", SearchTrace.CHUNK, count);
+        for (int i = 0; i < SearchTrace.CHUNK - 2; i++) {
+            assertEquals("Unused slots should be padded", SearchTrace.PAD, SearchTrace.kind(events[i]));
+        }
+        long start = events[SearchTrace.CHUNK - 2], relax = events[SearchTrace.CHUNK - 1];
+        assertEquals("Second search should start at its source", 8, SearchTrace.vertex(start));
+        assertNotEquals("Second search should have its own id", firstId, SearchTrace.search(start));
+        assertEquals("Second search should relax next", SearchTrace.RELAX, SearchTrace.kind(relax));
+        assertEquals("Relax should carry the vertex", 9, SearchTrace.vertex(relax));
+        second.end();
+        assertEquals("Padding of the second search should be read", SearchTrace.CHUNK - 2, cursor.poll(events, events.length));
+        assertEquals("Nothing should be left", 0, cursor.backlog());
+
+        //Test that a reader that falls more than the capacity behind skips to the oldest event kept and counts the rest
+        SearchTrace.Recorder third = trace.begin(1);
+        for (int v = 0; v < 1000; v++) third.settle(v);
+        third.end();
+        long written = trace.getRecorded() - 2 * SearchTrace.CHUNK;
+        assertEquals("Backlog should be at most the capacity", trace.capacity(), cursor.backlog());
+        count = cursor.poll(events, events.length);
+        assertEquals("Reader should get the events still kept", trace.capacity(), count);
+        assertEquals("Overwritten events should be counted as skipped", written - trace.capacity(), cursor.getSkipped());
+        assertEquals("Last event kept should be the padding", SearchTrace.PAD, SearchTrace.kind(events[count - 1]));
+        assertEquals("Reader should be caught up", 0, cursor.poll(events, events.length));
+    }
+
+    @Test
+    public void testSpatialGrid() {
+        //Boxes around the origin, many spanning several 32 pixel cells and negative coordinates
+        java.util.Random random = new java.util.Random(2024);
+        int items = 300;
+        double[][] boxes = new double[items][];
+        SpatialGrid grid = new SpatialGrid(SpatialGrid.DEFAULT_CELL_SIZE);
+        for (int id = 0; id < items; id++) {
+            double minX = random.nextDouble() * 1000 - 500, minY = random.nextDouble() * 1000 - 500;
+            boxes[id] = new double[] {minX, minY, minX + random.nextDouble() * 150, minY + random.nextDouble() * 150};
+            grid.add(id, boxes[id][0], boxes[id][1], boxes[id][2], boxes[id][3]);
+        }
+        assertEquals("Every item should be counted", items, grid.size());
+
+        for (int probe = 0; probe < 2000; probe++) {
+            double x = random.nextDouble() * 1200 - 600, y = random.nextDouble() * 1200 - 600;
+
+            //Test that a point query finds the same item as a scan of the list in id order
+            int expected = -1;
+            for (int id = 0; id < items && expected == -1; id++) {
+                if (overlaps(boxes[id], x, y, x, y)) expected = id;
+            }
+            assertEquals("Point query should match a linear scan", expected, grid.first(x, y, id -> overlaps(boxes[id], x, y, x, y)));
+
+            //Test that a rectangle query returns every overlapping item, sorted, and nothing more than a cell away
+            double maxX = x + random.nextDouble() * 100, maxY = y + random.nextDouble() * 100;
+            int[] found = grid.query(x, y, maxX, maxY);
+            for (int i = 1; i < found.length; i++) {
+                assertTrue("Candidates should be increasing", found[i - 1] < found[i]);
+            }
+            for (int id = 0; id < items; id++) {
+                boolean listed = Arrays.binarySearch(found, id) >= 0;
+                if (overlaps(boxes[id], x, y, maxX, maxY)) assertTrue("Overlapping item should be found", listed);
+                int cell = SpatialGrid.DEFAULT_CELL_SIZE;
+                if (listed) assertTrue("Candidate should be near the rectangle", overlaps(boxes[id], x - cell, y - cell, maxX + cell, maxY + cell));
+            }
+        }
+
+        //Test that an item is found in every cell it spans, on both sides of the origin
+        grid.clear();
+        grid.add(0, -70, -70, 40, 10);
+        assertEquals("Item should be found in its top left cell", 0, grid.first(-65, -65, id -> true));
+        assertEquals("Item should be found in its bottom right cell", 0, grid.first(35, 5, id -> true));
+        assertEquals("Item should not be found outside its cells", -1, grid.first(70, 5, id -> true));
+        assertArrayEquals("Rectangle across the item should find it once", new int[] {0}, grid.query(-100, -100, 100, 100));
+    }
+
+    @Test
+    public void testRoutingCli() throws IOException {
+        //A map whose fastest path search fails from intersection 7, as a bug in a search would
+        RUMaps testRUMaps = new RUMaps(TEST_FILE) {
+            @Override
+            public ArrayList<Intersection> fastestPath(Intersection start, Intersection end, RouteConstraints constraints) {
+                if (start == getRutgers().getIntersections()[7]) throw new IllegalStateException("Search failed");
+                return super.fastestPath(start, end, constraints);
+            }
+        };
+        Intersection[] intersections = testRUMaps.getRutgers().getIntersections();
+        ArrayList<Intersection> expected = testRUMaps.fastestPath(intersections[0], intersections[5]);
+        String queries = "# comment\nfastest 0 5\nminimize 0 5\n\nreachable 3\nteleport 0 5\nfastest 0\nfastest 0 100000\nfastest 7 5\n";
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(2);
+        try {
+            //Test that every query gets a line in input order, and a failing one an error line instead of ending the batch
+            RoutingCli ndjson = new RoutingCli(testRUMaps, false);
+            java.io.StringWriter out = new java.io.StringWriter();
+            assertEquals("Every query should be answered", 7, ndjson.run(new java.io.BufferedReader(new java.io.StringReader(queries)), out, pool));
+            assertEquals("Failed queries should be counted", 4, ndjson.getErrors());
+            String[] lines = out.toString().split("\n");
+            long[] lineNumbers = {2, 3, 5, 6, 7, 8, 9};
+            assertEquals("Each query should have one result line", lineNumbers.length, lines.length);
+            for (int i = 0; i < lines.length; i++) {
+                assertTrue("Result should name its input line: " + lines[i], lines[i].startsWith("{\"line\":" + lineNumbers[i] + ","));
+                assertEquals("Only the bad queries should be errors: " + lines[i], i >= 3, lines[i].contains("\"error\":"));
+            }
+            assertTrue("Route should have the fastest path", lines[0].contains("\"intersections\":" + expected.size() + ","));
+            assertTrue("Reachable should list intersections", lines[2].contains("\"result\":{\"count\":"));
+            assertTrue("Unknown algorithm should be reported", lines[3].contains("Unknown algorithm: teleport"));
+            assertTrue("Missing intersection should be reported", lines[5].contains("No such intersection: 100000"));
+            assertTrue("Failing search should be reported with its type", lines[6].contains("IllegalStateException: Search failed"));
+
+            //Test the same queries as CSV, after the header
+            RoutingCli csv = new RoutingCli(testRUMaps, true);
+            out = new java.io.StringWriter();
+            csv.run(new java.io.BufferedReader(new java.io.StringReader(queries)), out, pool);
+            lines = out.toString().split("\n");
+            assertEquals("CSV should have a header and a row per query", 1 + lineNumbers.length, lines.length);
+            assertTrue("Header should come first", lines[0].startsWith("line,algorithm,start,end,found"));
+            assertTrue("Route row should list its query", lines[1].startsWith("2,fastest,0,5," + !expected.isEmpty() + "," + expected.size() + ","));
+            assertTrue("Route row should have no error", lines[1].endsWith(","));
+            assertEquals("Error row should name its line and algorithm", "6,teleport,,,false,0,,,,,Unknown algorithm: teleport", lines[4]);
+            assertTrue("Failing search should be an error row", lines[7].startsWith("9,fastest,,,false,0,") && lines[7].endsWith("java.lang.IllegalStateException: Search failed"));
+            assertEquals("Failed queries should be counted", 4, csv.getErrors());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testRouteRenderer() throws IOException {
+        if (System.getProperty("java.awt.headless") == null) System.setProperty("java.awt.headless", "true");
+        RUMaps testRUMaps = new RUMaps(TEST_FILE);
+        Intersection[] intersections = testRUMaps.getRutgers().getIntersections();
+        RouteRenderer renderer = new RouteRenderer(testRUMaps, null, null, 0.125);
+        Route loop = renderer.route(Arrays.asList(intersections[0], intersections[5], intersections[0]));
+        Route pair = renderer.route(Arrays.asList(intersections[3], intersections[8]));
+        assertFalse("Test routes should have blocks", loop.isEmpty() || pair.isEmpty());
+        java.awt.Dimension size = new MapPanel(null, null, null, 0.125).getPreferredSize();
+        String routes = "# name and stops\nloop 0 5 0\n\nbad 0 100000\npair 3 8\n";
+        File directory = java.nio.file.Files.createTempDirectory("routes").toFile();
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(2);
+        java.io.PrintStream err = System.err;
+        java.io.ByteArrayOutputStream reported = new java.io.ByteArrayOutputStream();
+        try {
+            System.setErr(new java.io.PrintStream(reported, true));
+
+            //Test that each good line gets a PNG map of the panel size, and the bad one is reported without stopping the rest
+            assertEquals("Every route should be read", 3, renderer.run(new java.io.BufferedReader(new java.io.StringReader(routes)), directory, false, pool));
+            assertEquals("Bad route should be counted", 1, renderer.getErrors());
+            assertTrue("Bad route should be reported with its line", reported.toString().contains("Line 4: No such intersection: 100000"));
+            assertFalse("Bad route should not be drawn", new File(directory, "bad.png").exists());
+            for (String name : new String[] {"loop", "pair"}) {
+                java.awt.image.BufferedImage image = javax.imageio.ImageIO.read(new File(directory, name + ".png"));
+                assertNotNull("Map should be a PNG", image);
+                assertEquals("Map should be as wide as the panel", size.width, image.getWidth());
+                assertEquals("Map should be as high as the panel", size.height, image.getHeight());
+            }
+
+            //Test that each SVG map has one path per block of its route, over the shared background
+            renderer.run(new java.io.BufferedReader(new java.io.StringReader(routes)), directory, true, pool);
+            assertEquals("Bad route should be counted again", 2, renderer.getErrors());
+            assertEquals("Background should be drawn at the panel size", size.width, javax.imageio.ImageIO.read(new File(directory, RouteRenderer.BACKGROUND_FILE)).getWidth());
+            Route[] expected = {loop, pair};
+            String[] names = {"loop", "pair"};
+            for (int i = 0; i < names.length; i++) {
+                String svg = new String(java.nio.file.Files.readAllBytes(new File(directory, names[i] + ".svg").toPath()), "UTF-8");
+                assertTrue("SVG should reference the background", svg.contains("xlink:href=\"" + RouteRenderer.BACKGROUND_FILE + "\""));
+                assertTrue("SVG should be the panel size", svg.contains("width=\"" + size.width + "\" height=\"" + size.height + "\""));
+                assertEquals("SVG should have a path per block", expected[i].getHops(), svg.split("<path ", -1).length - 1);
+            }
+        } finally {
+            System.setErr(err);
+            pool.shutdown();
+            for (File file : directory.listFiles()) file.delete();
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testAlternativeRoutesReused() {
+        RUMaps testRUMaps = new RUMaps(TEST_FILE);
+        Intersection[] intersections = testRUMaps.getRutgers().getIntersections();
+
+        for (int i = 0; i < intersections.length; i += 3) {
+            for (int j = 1; j < intersections.length; j += 5) {
+                if (i == j) continue;
+
+                //Test that the generator kept between queries gives the same routes as a new one, so the penalties of
+                //earlier queries do not leak into later ones
+                ArrayList<Route> expected = new AlternativeRoutes(testRUMaps.getRoutingGraph()).penaltyAlternatives(intersections[i],
+                    intersections[j], 3, AlternativeRoutes.DEFAULT_PENALTY_FACTOR, AlternativeRoutes.DEFAULT_MAX_STRETCH, AlternativeRoutes.DEFAULT_MAX_OVERLAP);
+                ArrayList<Route> routes = testRUMaps.alternativeRouteList(intersections[i], intersections[j], 3);
+                assertEquals("Reused generator should find as many routes", expected.size(), routes.size());
+                for (int r = 0; r < routes.size(); r++) {
+                    assertEquals("Reused generator should find the same routes", expected.get(r).getPath(), routes.get(r).getPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * The recursive DFS reachableIntersections replaced, trying each intersection's blocks in adjacency list order.
+     */
+    private static void recursiveDFS(Network network, int index, boolean[] visited, ArrayList<Intersection> order) {
+        if (visited[index]) return;
+        visited[index] = true;
+        order.add(network.getIntersections()[index]);
+        for (Block block = network.adj(index); block != null; block = block.getNext()) {
+            int w = network.findIntersection(block.getLastEndpoint().getCoordinate());
+            if (!visited[w]) recursiveDFS(network, w, visited, order);
+        }
+    }
+
+    /**
+     * A textbook BFS over the network's adjacency lists.
+     * @return the number of blocks from the source to every intersection index, -1 where unreachable
+     */
+    private static int[] bfsDistances(Network network, int source) {
+        int[] dist = new int[network.getIntersections().length];
+        Arrays.fill(dist, -1);
+        int[] queue = new int[dist.length];
+        int head = 0, tail = 0;
+        dist[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int v = queue[head++];
+            for (Block block = network.adj(v); block != null; block = block.getNext()) {
+                int w = network.findIntersection(block.getLastEndpoint().getCoordinate());
+                if (dist[w] == -1) {
+                    dist[w] = dist[v] + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * @return the points of a path built from moveTo and lineTo, in order
+     */
+    private static ArrayList<double[]> pathPoints(java.awt.geom.Path2D path) {
+        ArrayList<double[]> points = new ArrayList<>();
+        for (java.awt.geom.PathIterator it = path.getPathIterator(null); !it.isDone(); it.next()) {
+            double[] coords = new double[6];
+            it.currentSegment(coords);
+            points.add(Arrays.copyOf(coords, 2));
+        }
+        return points;
+    }
+
+    /**
+     * @return true if a box {minX, minY, maxX, maxY} overlaps the rectangle, edges included
+     */
+    private static boolean overlaps(double[] box, double minX, double minY, double maxX, double maxY) {
+        return box[0] <= maxX && minX <= box[2] && box[1] <= maxY && minY <= box[3];
+    }
+
+    /**
+     * Loads a network from the contents of an input file, with every block's traffic equal to its length.
+     */
+    private static RUMaps loadNetwork(String contents) throws IOException {
+        File file = File.createTempFile("rumaps", ".in");
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(contents);
+        }
+        RUMaps testRUMaps = new RUMaps(file.getPath());
+        for (Block block : testRUMaps.getRutgers().getAdjacencyList()) {
+            for (Block ptr = block; ptr != null; ptr = ptr.getNext()) {
+                ptr.setTrafficFactor(1.0);
+                ptr.setTraffic(ptr.getLength());
+            }
+        }
+        return testRUMaps;
+    }
 }